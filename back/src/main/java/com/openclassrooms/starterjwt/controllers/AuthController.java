@@ -1,26 +1,40 @@
 package com.openclassrooms.starterjwt.controllers;
 
+import java.util.concurrent.RejectedExecutionException;
+
 import javax.validation.Valid;
 
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.openclassrooms.starterjwt.events.UserChangedEvent;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.payload.request.LoginRequest;
 import com.openclassrooms.starterjwt.payload.request.SignupRequest;
+import com.openclassrooms.starterjwt.payload.request.TokenRefreshRequest;
 import com.openclassrooms.starterjwt.payload.response.JwtResponse;
 import com.openclassrooms.starterjwt.payload.response.MessageResponse;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.jwt.TokenRevocationList;
+import com.openclassrooms.starterjwt.security.jwt.VerifiedJwt;
+import com.openclassrooms.starterjwt.security.services.PasswordHashingExecutor;
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
@@ -31,58 +45,148 @@ public class AuthController {
     private final JwtUtils jwtUtils;
     private final PasswordEncoder passwordEncoder;
     private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PasswordHashingExecutor passwordHashingExecutor;
+    private final UserDetailsService userDetailsService;
+    private final TokenRevocationList tokenRevocationList;
 
     AuthController(AuthenticationManager authenticationManager,
             PasswordEncoder passwordEncoder,
             JwtUtils jwtUtils,
-            UserRepository userRepository) {
+            UserRepository userRepository,
+            ApplicationEventPublisher eventPublisher,
+            PasswordHashingExecutor passwordHashingExecutor,
+            UserDetailsService userDetailsService,
+            TokenRevocationList tokenRevocationList) {
         this.authenticationManager = authenticationManager;
         this.jwtUtils = jwtUtils;
         this.passwordEncoder = passwordEncoder;
         this.userRepository = userRepository;
+        this.eventPublisher = eventPublisher;
+        this.passwordHashingExecutor = passwordHashingExecutor;
+        this.userDetailsService = userDetailsService;
+        this.tokenRevocationList = tokenRevocationList;
     }
 
     @PostMapping("/login")
     public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
 
-        Authentication authentication = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(loginRequest.getEmail(), loginRequest.getPassword()));
+        Authentication authentication;
+        try {
+            authentication = passwordHashingExecutor.execute(() -> authenticationManager.authenticate(
+                    new UsernamePasswordAuthenticationToken(loginRequest.getEmail(), loginRequest.getPassword())));
+        } catch (RejectedExecutionException e) {
+            return serviceUnavailable();
+        }
 
         SecurityContextHolder.getContext().setAuthentication(authentication);
         String jwt = jwtUtils.generateJwtToken(authentication);
         UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
 
-        boolean isAdmin = false;
-        User user = this.userRepository.findByEmail(userDetails.getUsername()).orElse(null);
-        if (user != null) {
-            isAdmin = user.isAdmin();
+        return ResponseEntity.ok(jwtResponse(jwt, userDetails));
+    }
+
+    /**
+     * Exchanges a refresh token for a new access token and a new refresh token. The user is
+     * reloaded so that the new tokens carry the current profile, and the presented refresh token
+     * is revoked: each one can be used only once.
+     */
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refreshToken(@Valid @RequestBody TokenRefreshRequest refreshRequest) {
+        VerifiedJwt verified = jwtUtils.verify(refreshRequest.getRefreshToken());
+        if (verified == null || !verified.isRefresh() || tokenRevocationList.isRevoked(verified)) {
+            return invalidRefreshToken();
         }
 
-        return ResponseEntity.ok(new JwtResponse(jwt,
-                userDetails.getId(),
-                userDetails.getUsername(),
-                userDetails.getFirstName(),
-                userDetails.getLastName(),
-                isAdmin));
+        UserDetailsImpl userDetails;
+        try {
+            userDetails = (UserDetailsImpl) userDetailsService.loadUserByUsername(verified.getSubject());
+        } catch (UsernameNotFoundException e) {
+            return invalidRefreshToken();
+        }
+
+        if (!tokenRevocationList.revoke(verified)) {
+            return invalidRefreshToken();
+        }
+
+        return ResponseEntity.ok(jwtResponse(jwtUtils.generateJwtToken(userDetails), userDetails));
+    }
+
+    /**
+     * Revokes the access token of the request and, when given, the refresh token of the session.
+     */
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout(@RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization,
+            @RequestBody(required = false) TokenRefreshRequest refreshRequest) {
+        if (authorization != null && authorization.startsWith("Bearer ")) {
+            revoke(authorization.substring(7));
+        }
+        if (refreshRequest != null && refreshRequest.getRefreshToken() != null) {
+            revoke(refreshRequest.getRefreshToken());
+        }
+
+        return ResponseEntity.ok(new MessageResponse("Logged out successfully!"));
     }
 
     @PostMapping("/register")
     public ResponseEntity<?> registerUser(@Valid @RequestBody SignupRequest signUpRequest) {
-        if (userRepository.existsByEmail(signUpRequest.getEmail())) {
-            return ResponseEntity
-                    .badRequest()
-                    .body(new MessageResponse("Error: Email is already taken!"));
+        String encodedPassword;
+        try {
+            encodedPassword = passwordHashingExecutor.execute(() -> passwordEncoder.encode(signUpRequest.getPassword()));
+        } catch (RejectedExecutionException e) {
+            return serviceUnavailable();
         }
 
         // Create new user's account
         User user = new User(signUpRequest.getEmail(),
                 signUpRequest.getLastName(),
                 signUpRequest.getFirstName(),
-                passwordEncoder.encode(signUpRequest.getPassword()),
+                encodedPassword,
                 false);
 
-        userRepository.save(user);
+        // The unique constraint uk_users_email rejects duplicates, no need for a prior lookup. It is added
+        // by migration V3: databases created from the former script.sql had it, but a database
+        // without it would accept the duplicate, so V3 must be applied before relying on this
+        try {
+            userRepository.save(user);
+        } catch (DataIntegrityViolationException e) {
+            return ResponseEntity
+                    .badRequest()
+                    .body(new MessageResponse("Error: Email is already taken!"));
+        }
+        eventPublisher.publishEvent(new UserChangedEvent(user.getId(), user.getEmail()));
 
         return ResponseEntity.ok(new MessageResponse("User registered successfully!"));
     }
-}
\ No newline at end of file
+
+    private JwtResponse jwtResponse(String jwt, UserDetailsImpl userDetails) {
+        JwtResponse response = new JwtResponse(jwt,
+                userDetails.getId(),
+                userDetails.getUsername(),
+                userDetails.getFirstName(),
+                userDetails.getLastName(),
+                Boolean.TRUE.equals(userDetails.getAdmin()));
+        response.setRefreshToken(jwtUtils.generateRefreshToken(userDetails));
+        return response;
+    }
+
+    private void revoke(String token) {
+        VerifiedJwt verified = jwtUtils.verify(token);
+        if (verified != null) {
+            tokenRevocationList.revoke(verified);
+        }
+    }
+
+    private ResponseEntity<MessageResponse> invalidRefreshToken() {
+        return ResponseEntity
+                .status(HttpStatus.UNAUTHORIZED)
+                .body(new MessageResponse("Error: Invalid refresh token"));
+    }
+
+    private ResponseEntity<MessageResponse> serviceUnavailable() {
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(passwordHashingExecutor.getRetryAfterSeconds()))
+                .body(new MessageResponse("Error: Too many authentication requests, please retry later"));
+    }
+}
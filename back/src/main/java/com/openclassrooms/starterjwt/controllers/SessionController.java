@@ -2,14 +2,29 @@ package com.openclassrooms.starterjwt.controllers;
 
 
 import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.exception.UnknownIdsException;
 import com.openclassrooms.starterjwt.mapper.SessionMapper;
 import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.payload.request.BulkParticipationRequest;
+import com.openclassrooms.starterjwt.payload.response.MessageResponse;
+import com.openclassrooms.starterjwt.payload.response.ParticipationResult;
+import com.openclassrooms.starterjwt.payload.response.SessionPage;
+import com.openclassrooms.starterjwt.payload.response.WaitlistPositionResponse;
+import com.openclassrooms.starterjwt.services.JsonBodyCache;
+import com.openclassrooms.starterjwt.services.ParticipationBatcher;
+import com.openclassrooms.starterjwt.services.ParticipationOutcome;
 import com.openclassrooms.starterjwt.services.SessionService;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
@@ -20,6 +35,14 @@ public class SessionController {
     private final SessionMapper sessionMapper;
     private final SessionService sessionService;
 
+    /** Present only in burst mode. */
+    @Autowired(required = false)
+    private ParticipationBatcher participationBatcher;
+
+    /** Present only when the encoded bodies are cached. */
+    @Autowired(required = false)
+    private JsonBodyCache jsonBodyCache;
+
 
     public SessionController(SessionService sessionService,
                              SessionMapper sessionMapper) {
@@ -28,35 +51,68 @@ public class SessionController {
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<?> findById(@PathVariable("id") String id) {
+    public ResponseEntity<?> findById(@PathVariable("id") String id,
+                                      @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
-            Session session = this.sessionService.getById(Long.valueOf(id));
+            if (this.jsonBodyCache != null) {
+                Long sessionId = Long.valueOf(id);
+                return this.jsonBodyCache.respond("session:" + sessionId, this.sessionService.contentVersion(),
+                        () -> this.sessionService.getDtoById(sessionId), acceptEncoding, ifNoneMatch);
+            }
+
+            SessionDto session = this.sessionService.getDtoById(Long.valueOf(id));
 
             if (session == null) {
                 return ResponseEntity.notFound().build();
             }
 
-            return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
+            return ResponseEntity.ok().body(session);
         } catch (NumberFormatException e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
     @GetMapping()
-    public ResponseEntity<?> findAll() {
-        List<Session> sessions = this.sessionService.findAll();
+    public ResponseEntity<?> findAll(@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                     @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        if (this.jsonBodyCache != null) {
+            return this.jsonBodyCache.respond("sessions", this.sessionService.contentVersion(),
+                    this.sessionService::findAllDto, acceptEncoding, ifNoneMatch);
+        }
 
-        return ResponseEntity.ok().body(this.sessionMapper.toDto(sessions));
+        List<SessionDto> sessions = this.sessionService.findAllDto();
+
+        return ResponseEntity.ok().body(sessions);
+    }
+
+    /**
+     * Sessions page by page, in date order. The unpaginated {@link #findAll(String, String)} stays for older clients.
+     */
+    @GetMapping("/page")
+    public ResponseEntity<?> findPage(@RequestParam(value = "cursor", required = false) String cursor,
+                                      @RequestParam(value = "size", defaultValue = "20") int size,
+                                      @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                      @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                      @RequestParam(value = "teacherId", required = false) Long teacherId,
+                                      @RequestParam(value = "freeSeats", defaultValue = "false") boolean freeSeats) {
+        SessionPage page = this.sessionService.findPage(cursor, size, from, to, teacherId, freeSeats);
+
+        return ResponseEntity.ok().body(page);
     }
 
     @PostMapping()
     public ResponseEntity<?> create(@Valid @RequestBody SessionDto sessionDto) {
         log.info(sessionDto);
 
-        Session session = this.sessionService.create(this.sessionMapper.toEntity(sessionDto));
+        try {
+            Session session = this.sessionService.create(this.sessionMapper.toEntity(sessionDto));
 
-        log.info(session);
-        return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
+            log.info(session);
+            return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
+        } catch (UnknownIdsException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Error: " + e.getMessage()));
+        }
     }
 
     @PutMapping("{id}")
@@ -67,6 +123,8 @@ public class SessionController {
             return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
         } catch (NumberFormatException e) {
             return ResponseEntity.badRequest().build();
+        } catch (UnknownIdsException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Error: " + e.getMessage()));
         }
     }
 
@@ -89,7 +147,11 @@ public class SessionController {
     @PostMapping("{id}/participate/{userId}")
     public ResponseEntity<?> participate(@PathVariable("id") String id, @PathVariable("userId") String userId) {
         try {
-            this.sessionService.participate(Long.parseLong(id), Long.parseLong(userId));
+            if (this.participationBatcher != null) {
+                this.participationBatcher.participate(Long.parseLong(id), Long.parseLong(userId));
+            } else {
+                this.sessionService.participate(Long.parseLong(id), Long.parseLong(userId));
+            }
 
             return ResponseEntity.ok().build();
         } catch (NumberFormatException e) {
@@ -97,6 +159,35 @@ public class SessionController {
         }
     }
 
+    /**
+     * Enrolls a group of users in one session, with a result for each user.
+     */
+    @PostMapping("{id}/participate")
+    @PreAuthorize("principal.admin == true")
+    public ResponseEntity<?> participateAll(@PathVariable("id") String id, @Valid @RequestBody BulkParticipationRequest request) {
+        try {
+            List<ParticipationOutcome> outcomes = this.sessionService.participateBatch(Long.parseLong(id), request.getIds());
+
+            return ResponseEntity.ok().body(results(request.getIds(), outcomes));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Books many sessions for one user, with a result for each session.
+     */
+    @PostMapping("participate/{userId}")
+    public ResponseEntity<?> participateInAll(@PathVariable("userId") String userId, @Valid @RequestBody BulkParticipationRequest request) {
+        try {
+            List<ParticipationOutcome> outcomes = this.sessionService.participateInSessions(Long.parseLong(userId), request.getIds());
+
+            return ResponseEntity.ok().body(results(request.getIds(), outcomes));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @DeleteMapping("{id}/participate/{userId}")
     public ResponseEntity<?> noLongerParticipate(@PathVariable("id") String id, @PathVariable("userId") String userId) {
         try {
@@ -107,4 +198,45 @@ public class SessionController {
             return ResponseEntity.badRequest().build();
         }
     }
+
+    @PostMapping("{id}/waitlist/{userId}")
+    public ResponseEntity<?> joinWaitlist(@PathVariable("id") String id, @PathVariable("userId") String userId) {
+        try {
+            long position = this.sessionService.joinWaitlist(Long.parseLong(id), Long.parseLong(userId));
+
+            return ResponseEntity.ok().body(new WaitlistPositionResponse(position));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("{id}/waitlist/{userId}")
+    public ResponseEntity<?> waitlistPosition(@PathVariable("id") String id, @PathVariable("userId") String userId) {
+        try {
+            long position = this.sessionService.getWaitlistPosition(Long.parseLong(id), Long.parseLong(userId));
+
+            return ResponseEntity.ok().body(new WaitlistPositionResponse(position));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @DeleteMapping("{id}/waitlist/{userId}")
+    public ResponseEntity<?> leaveWaitlist(@PathVariable("id") String id, @PathVariable("userId") String userId) {
+        try {
+            this.sessionService.leaveWaitlist(Long.parseLong(id), Long.parseLong(userId));
+
+            return ResponseEntity.ok().build();
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    private static List<ParticipationResult> results(List<Long> ids, List<ParticipationOutcome> outcomes) {
+        List<ParticipationResult> results = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            results.add(new ParticipationResult(ids.get(i), outcomes.get(i)));
+        }
+        return results;
+    }
 }
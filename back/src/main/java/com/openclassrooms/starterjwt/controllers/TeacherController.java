@@ -2,8 +2,12 @@ package com.openclassrooms.starterjwt.controllers;
 
 import com.openclassrooms.starterjwt.mapper.TeacherMapper;
 import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.services.JsonBodyCache;
 import com.openclassrooms.starterjwt.services.TeacherService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import java.util.List;
 
@@ -14,6 +18,9 @@ public class TeacherController {
     private final TeacherMapper teacherMapper;
     private final TeacherService teacherService;
 
+    /** Present only when the encoded bodies are cached. */
+    @Autowired(required = false)
+    private JsonBodyCache jsonBodyCache;
 
     public TeacherController(TeacherService teacherService,
                              TeacherMapper teacherMapper) {
@@ -22,8 +29,18 @@ public class TeacherController {
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<?> findById(@PathVariable("id") String id) {
+    public ResponseEntity<?> findById(@PathVariable("id") String id,
+                                      @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
+            if (this.jsonBodyCache != null) {
+                Long teacherId = Long.valueOf(id);
+                return this.jsonBodyCache.respond("teacher:" + teacherId, this.teacherService.version(), () -> {
+                    Teacher teacher = this.teacherService.findById(teacherId);
+                    return teacher != null ? this.teacherMapper.toDto(teacher) : null;
+                }, acceptEncoding, ifNoneMatch);
+            }
+
             Teacher teacher = this.teacherService.findById(Long.valueOf(id));
 
             if (teacher == null) {
@@ -37,9 +54,26 @@ public class TeacherController {
     }
 
     @GetMapping()
-    public ResponseEntity<?> findAll() {
+    public ResponseEntity<?> findAll(@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                     @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        if (this.jsonBodyCache != null) {
+            return this.jsonBodyCache.respond("teachers", this.teacherService.version(),
+                    () -> this.teacherMapper.toDto(this.teacherService.findAll()), acceptEncoding, ifNoneMatch);
+        }
+
         List<Teacher> teachers = this.teacherService.findAll();
 
         return ResponseEntity.ok().body(this.teacherMapper.toDto(teachers));
     }
+
+    /**
+     * Rebuilds the teacher snapshot of this instance right away, after TEACHERS was edited directly.
+     */
+    @PostMapping("/reload")
+    @PreAuthorize("principal.admin == true")
+    public ResponseEntity<?> reload() {
+        List<Teacher> teachers = this.teacherService.reload();
+
+        return ResponseEntity.ok().body(this.teacherMapper.toDto(teachers));
+    }
 }
@@ -2,13 +2,22 @@ package com.openclassrooms.starterjwt.controllers;
 
 import com.openclassrooms.starterjwt.mapper.UserMapper;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.services.SessionService;
+import com.openclassrooms.starterjwt.services.UserImportService;
 import com.openclassrooms.starterjwt.services.UserService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.Objects;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
@@ -17,12 +26,18 @@ import java.util.Objects;
 public class UserController {
     private final UserMapper userMapper;
     private final UserService userService;
+    private final UserImportService userImportService;
+    private final SessionService sessionService;
 
 
     public UserController(UserService userService,
-                             UserMapper userMapper) {
+                             UserMapper userMapper,
+                             UserImportService userImportService,
+                             SessionService sessionService) {
         this.userMapper = userMapper;
         this.userService = userService;
+        this.userImportService = userImportService;
+        this.sessionService = sessionService;
     }
 
     @GetMapping("/{id}")
@@ -40,6 +55,38 @@ public class UserController {
         }
     }
 
+    /**
+     * Sessions booked by the user, upcoming ones by default or past ones with past=true, page by page.
+     * Only the user and the admins can read them.
+     */
+    @GetMapping("/{id}/sessions")
+    public ResponseEntity<?> findSessions(@PathVariable("id") String id,
+                                          @RequestParam(value = "past", defaultValue = "false") boolean past,
+                                          @RequestParam(value = "cursor", required = false) String cursor,
+                                          @RequestParam(value = "size", defaultValue = "20") int size) {
+        try {
+            Long userId = Long.valueOf(id);
+            UserDetailsImpl userDetails = (UserDetailsImpl) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+
+            if (!Objects.equals(userDetails.getId(), userId) && !Boolean.TRUE.equals(userDetails.getAdmin())) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            }
+
+            return ResponseEntity.ok().body(this.sessionService.findSessionsOfUser(userId, past, cursor, size));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/me/sessions")
+    public ResponseEntity<?> findMySessions(@RequestParam(value = "past", defaultValue = "false") boolean past,
+                                            @RequestParam(value = "cursor", required = false) String cursor,
+                                            @RequestParam(value = "size", defaultValue = "20") int size) {
+        UserDetailsImpl userDetails = (UserDetailsImpl) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+
+        return ResponseEntity.ok().body(this.sessionService.findSessionsOfUser(userDetails.getId(), past, cursor, size));
+    }
+
     @DeleteMapping("{id}")
     public ResponseEntity<?> save(@PathVariable("id") String id) {
         try {
@@ -61,4 +108,20 @@ public class UserController {
             return ResponseEntity.badRequest().build();
         }
     }
+
+    @PostMapping(value = "/import", consumes = "text/csv")
+    @PreAuthorize("principal.admin == true")
+    public ResponseEntity<?> importCsv(InputStream body) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            return ResponseEntity.ok().body(this.userImportService.importCsv(reader));
+        }
+    }
+
+    @PostMapping(value = "/import", consumes = "application/x-ndjson")
+    @PreAuthorize("principal.admin == true")
+    public ResponseEntity<?> importNdjson(InputStream body) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            return ResponseEntity.ok().body(this.userImportService.importNdjson(reader));
+        }
+    }
 }
@@ -0,0 +1,19 @@
+package com.openclassrooms.starterjwt.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Published when the stored hash of a user is upgraded during a login. The password itself is
+ * unchanged, so only the cached principals holding the old hash are dropped: unlike a
+ * {@link UserChangedEvent}, the tokens of the user stay valid, including those of that login.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class PasswordRehashedEvent {
+    private final Long userId;
+
+    private final String email;
+}
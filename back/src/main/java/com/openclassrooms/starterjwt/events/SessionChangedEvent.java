@@ -0,0 +1,18 @@
+package com.openclassrooms.starterjwt.events;
+
+import java.util.Collection;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Published whenever sessions are created, updated or deleted, or their participants change, so
+ * that anything holding a copy of those sessions can drop it.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class SessionChangedEvent {
+    private final Collection<Long> sessionIds;
+}
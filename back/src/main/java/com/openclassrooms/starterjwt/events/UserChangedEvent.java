@@ -0,0 +1,18 @@
+package com.openclassrooms.starterjwt.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Published whenever a user account is created, updated or deleted, so that anything holding
+ * a copy of that user can drop it. Either the id or the email may be unknown to the publisher.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class UserChangedEvent {
+    private final Long userId;
+
+    private final String email;
+}
@@ -0,0 +1,29 @@
+package com.openclassrooms.starterjwt.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.Collection;
+
+/**
+ * A request references ids that do not exist, for example users added to a session.
+ */
+@ResponseStatus(value= HttpStatus.BAD_REQUEST)
+public class UnknownIdsException extends RuntimeException {
+    private final String entity;
+    private final Collection<Long> ids;
+
+    public UnknownIdsException(String entity, Collection<Long> ids) {
+        super("Unknown " + entity + " ids " + ids);
+        this.entity = entity;
+        this.ids = ids;
+    }
+
+    public String getEntity() {
+        return entity;
+    }
+
+    public Collection<Long> getIds() {
+        return ids;
+    }
+}
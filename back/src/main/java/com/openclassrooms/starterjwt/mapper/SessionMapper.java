@@ -1,19 +1,31 @@
 package com.openclassrooms.starterjwt.mapper;
 
 import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.exception.UnknownIdsException;
 import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.SessionSummary;
 import com.openclassrooms.starterjwt.services.TeacherService;
 import com.openclassrooms.starterjwt.services.UserService;
+import org.mapstruct.Context;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.Mappings;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Component
@@ -25,12 +37,39 @@ public abstract class SessionMapper implements EntityMapper<SessionDto, Session>
     @Autowired
     UserService userService;
 
+    /**
+     * Resolves the participants with a single query and the teacher once, then maps the DTO.
+     *
+     * @throws UnknownIdsException when the teacher or one of the users does not exist
+     */
+    @Override
+    public Session toEntity(SessionDto sessionDto) {
+        if (sessionDto == null) {
+            return null;
+        }
+        return toEntity(sessionDto, resolve(Collections.singletonList(sessionDto)));
+    }
+
+    /**
+     * Same as {@link #toEntity(SessionDto)}, with the users and teachers of every DTO resolved together.
+     */
+    @Override
+    public List<Session> toEntity(List<SessionDto> dtoList) {
+        if (dtoList == null) {
+            return null;
+        }
+
+        References references = resolve(dtoList);
+        return dtoList.stream().map(sessionDto -> toEntity(sessionDto, references)).collect(Collectors.toList());
+    }
+
     @Mappings({
-            @Mapping(source = "description", target = "description"),
-            @Mapping(target = "teacher", expression = "java(sessionDto.getTeacher_id() != null ? this.teacherService.findById(sessionDto.getTeacher_id()) : null)"),
-            @Mapping(target = "users", expression = "java(Optional.ofNullable(sessionDto.getUsers()).orElseGet(Collections::emptyList).stream().map(user_id -> { User user = this.userService.findById(user_id); if (user != null) { return user; } return null; }).collect(Collectors.toList()))"),
+            @Mapping(source = "sessionDto.description", target = "description"),
+            @Mapping(target = "teacher", expression = "java(references.teacher(sessionDto.getTeacher_id()))"),
+            @Mapping(target = "users", expression = "java(references.users(sessionDto.getUsers()))"),
+            @Mapping(target = "participantCount", ignore = true),
     })
-    public abstract Session toEntity(SessionDto sessionDto);
+    abstract Session toEntity(SessionDto sessionDto, @Context References references);
 
 
     @Mappings({
@@ -39,4 +78,68 @@ public abstract class SessionMapper implements EntityMapper<SessionDto, Session>
             @Mapping(target = "users", expression = "java(Optional.ofNullable(session.getUsers()).orElseGet(Collections::emptyList).stream().map(u -> u.getId()).collect(Collectors.toList()))"),
     })
     public abstract SessionDto toDto(Session session);
-}
\ No newline at end of file
+
+    @Mappings({
+            @Mapping(source = "summary.teacherId", target = "teacher_id"),
+            @Mapping(source = "users", target = "users"),
+    })
+    public abstract SessionDto toDto(SessionSummary summary, List<Long> users);
+
+    References resolve(List<SessionDto> dtoList) {
+        Set<Long> userIds = new LinkedHashSet<>();
+        Map<Long, Teacher> teachers = new HashMap<>();
+        for (SessionDto sessionDto : dtoList) {
+            if (sessionDto.getUsers() != null) {
+                sessionDto.getUsers().stream().filter(Objects::nonNull).forEach(userIds::add);
+            }
+            Long teacherId = sessionDto.getTeacher_id();
+            if (teacherId != null && !teachers.containsKey(teacherId)) {
+                teachers.put(teacherId, this.teacherService.findById(teacherId));
+            }
+        }
+
+        List<Long> unknownTeachers = teachers.entrySet().stream()
+                .filter(entry -> entry.getValue() == null)
+                .map(Map.Entry::getKey)
+                .sorted()
+                .collect(Collectors.toList());
+        if (!unknownTeachers.isEmpty()) {
+            throw new UnknownIdsException("teacher", unknownTeachers);
+        }
+
+        Map<Long, User> users = userIds.isEmpty()
+                ? Collections.emptyMap()
+                : this.userService.findAllById(userIds).stream().collect(Collectors.toMap(User::getId, Function.identity()));
+        List<Long> unknownUsers = userIds.stream().filter(id -> !users.containsKey(id)).collect(Collectors.toList());
+        if (!unknownUsers.isEmpty()) {
+            throw new UnknownIdsException("user", unknownUsers);
+        }
+
+        return new References(teachers, users);
+    }
+
+    /**
+     * Teachers and users resolved for one mapping call, looked up by id.
+     */
+    static final class References {
+        private final Map<Long, Teacher> teachers;
+        private final Map<Long, User> users;
+
+        References(Map<Long, Teacher> teachers, Map<Long, User> users) {
+            this.teachers = teachers;
+            this.users = users;
+        }
+
+        Teacher teacher(Long id) {
+            return id != null ? teachers.get(id) : null;
+        }
+
+        /** Keeps the order of the ids and lists a user only once. */
+        List<User> users(List<Long> ids) {
+            if (ids == null) {
+                return new ArrayList<>();
+            }
+            return ids.stream().filter(Objects::nonNull).distinct().map(users::get).collect(Collectors.toList());
+        }
+    }
+}
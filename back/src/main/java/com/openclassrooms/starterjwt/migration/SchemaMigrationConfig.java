@@ -0,0 +1,32 @@
+package com.openclassrooms.starterjwt.migration;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Migrates the schema before the entity manager factory, and so before any repository, is created.
+ * Turned off with oc.app.schemaMigrationEnabled=false when the schema is managed elsewhere.
+ */
+@Configuration
+@ConditionalOnProperty(name = "oc.app.schemaMigrationEnabled", havingValue = "true", matchIfMissing = true)
+public class SchemaMigrationConfig {
+  @Value("${oc.app.schemaBaselineVersion:1}")
+  private int schemaBaselineVersion;
+
+  @Bean
+  public SchemaMigrator schemaMigrator(DataSource dataSource) {
+    SchemaMigrator schemaMigrator = new SchemaMigrator(dataSource, schemaBaselineVersion);
+    schemaMigrator.migrate();
+    return schemaMigrator;
+  }
+
+  @Bean
+  public static EntityManagerFactoryDependsOnPostProcessor schemaMigratorDependency() {
+    return new EntityManagerFactoryDependsOnPostProcessor("schemaMigrator");
+  }
+}
@@ -0,0 +1,276 @@
+package com.openclassrooms.starterjwt.migration;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import javax.sql.DataSource;
+
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.EncodedResource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.util.StreamUtils;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Brings the schema to the latest version at startup, from the V&lt;version&gt;__&lt;description&gt;.sql
+ * scripts of db/migration, in version order.
+ *
+ * Applied versions are recorded in SCHEMA_VERSION with the checksum of their script, so a script
+ * runs once per database and cannot be edited after it was applied. A database that already has the
+ * SESSIONS table but no history, created from the former script.sql, is recorded at the baseline
+ * version without running it.
+ *
+ * Nodes starting together migrate one at a time: each first locks the single row of SCHEMA_LOCK
+ * with SELECT ... FOR UPDATE, on a connection of its own that runs no DDL, since MySQL commits the
+ * current transaction on every DDL statement. The history is only read once the lock is held, so
+ * the nodes that waited find the versions applied by the first one.
+ *
+ * A version whose script would fail halfway on existing data, which MySQL cannot roll back, is
+ * checked first and refused with the reason.
+ */
+@Log4j2
+public class SchemaMigrator {
+    static final String HISTORY_TABLE = "SCHEMA_VERSION";
+
+    static final String LOCK_TABLE = "SCHEMA_LOCK";
+
+    /** Total wait for the lock, across the lock timeouts of the database. */
+    private static final long LOCK_WAIT_MS = 600000;
+
+    /** Queries counting the rows that would make the script of a version fail. */
+    private static final Map<Integer, Precondition> PRECONDITIONS = Collections.singletonMap(3, new Precondition(
+            "SELECT COUNT(*) FROM (SELECT email FROM USERS GROUP BY email HAVING COUNT(*) > 1) duplicates",
+            "email(s) shared by several USERS rows, which the unique constraint uk_users_email would reject: "
+                    + "merge or rename those accounts first"));
+
+    private static final String LOCATION = "classpath:db/migration/V*__*.sql";
+
+    private static final Pattern SCRIPT_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final int baselineVersion;
+
+    public SchemaMigrator(DataSource dataSource, int baselineVersion) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.baselineVersion = baselineVersion;
+    }
+
+    /**
+     * @return the versions applied by this call
+     * @throws IllegalStateException when an applied script was changed
+     */
+    public List<Integer> migrate() {
+        List<Migration> migrations = findMigrations();
+
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + LOCK_TABLE + " (id INT PRIMARY KEY)");
+        try {
+            jdbcTemplate.update("INSERT INTO " + LOCK_TABLE + " (id) VALUES (1)");
+        } catch (DataIntegrityViolationException e) {
+            // Inserted by an earlier start, or by another node right now
+        }
+
+        Connection lock = lock();
+        try {
+            return migrate(migrations);
+        } finally {
+            unlock(lock);
+        }
+    }
+
+    private List<Integer> migrate(List<Migration> migrations) {
+        if (!tableExists(HISTORY_TABLE)) {
+            jdbcTemplate.execute("CREATE TABLE " + HISTORY_TABLE + " (version INT PRIMARY KEY, description VARCHAR(200) NOT NULL, "
+                    + "checksum BIGINT, installed_at TIMESTAMP NOT NULL)");
+            if (tableExists("SESSIONS")) {
+                log.info("Existing schema without history, recorded at version {}", baselineVersion);
+                record(baselineVersion, "baseline", null);
+            }
+        }
+
+        Map<Integer, Long> applied = new HashMap<>();
+        jdbcTemplate.query("SELECT version, checksum FROM " + HISTORY_TABLE, row -> {
+            Long checksum = row.getLong("checksum");
+            if (row.wasNull()) {
+                checksum = null;
+            }
+            applied.put(row.getInt("version"), checksum);
+        });
+        int current = applied.keySet().stream().mapToInt(Integer::intValue).max().orElse(0);
+
+        List<Integer> versions = new ArrayList<>();
+        for (Migration migration : migrations) {
+            if (migration.version <= current) {
+                // Versions below the baseline were never run here and have no checksum
+                Long checksum = applied.get(migration.version);
+                if (checksum != null && checksum != migration.checksum) {
+                    throw new IllegalStateException("Migration V" + migration.version + " was changed after it was applied");
+                }
+                continue;
+            }
+
+            check(migration);
+            log.info("Migrating schema to version {}: {}", migration.version, migration.description);
+            apply(migration);
+            record(migration.version, migration.description, migration.checksum);
+            versions.add(migration.version);
+        }
+        return versions;
+    }
+
+    /**
+     * Waits for the lock row, again after each lock timeout of the database, up to {@link #LOCK_WAIT_MS}.
+     *
+     * @return the connection holding the lock until its transaction ends
+     */
+    private Connection lock() {
+        long deadline = System.currentTimeMillis() + LOCK_WAIT_MS;
+        try {
+            Connection connection = dataSource.getConnection();
+            try {
+                connection.setAutoCommit(false);
+                while (true) {
+                    try (Statement statement = connection.createStatement()) {
+                        statement.executeQuery("SELECT id FROM " + LOCK_TABLE + " WHERE id = 1 FOR UPDATE").close();
+                        return connection;
+                    } catch (SQLException e) {
+                        if (System.currentTimeMillis() > deadline) {
+                            throw e;
+                        }
+                        log.info("Schema migration locked by another node, waiting");
+                        connection.rollback();
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                connection.close();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not lock " + LOCK_TABLE + " before migrating the schema", e);
+        }
+    }
+
+    private static void unlock(Connection connection) {
+        try {
+            connection.rollback();
+            connection.close();
+        } catch (SQLException e) {
+            // Closing the connection ends the transaction and its lock anyway
+            log.warn("Could not release the schema migration lock cleanly", e);
+        }
+    }
+
+    private void check(Migration migration) {
+        Precondition precondition = PRECONDITIONS.get(migration.version);
+        if (precondition == null) {
+            return;
+        }
+        Long violations = jdbcTemplate.queryForObject(precondition.query, Long.class);
+        if (violations != null && violations > 0) {
+            throw new IllegalStateException("Migration V" + migration.version + " cannot be applied: "
+                    + violations + " " + precondition.reason);
+        }
+    }
+
+    private void apply(Migration migration) {
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            ScriptUtils.executeSqlScript(connection, new EncodedResource(migration.resource, StandardCharsets.UTF_8));
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    private void record(int version, String description, Long checksum) {
+        jdbcTemplate.update("INSERT INTO " + HISTORY_TABLE + " (version, description, checksum, installed_at) VALUES (?, ?, ?, ?)",
+                version, description, checksum, new Timestamp(System.currentTimeMillis()));
+    }
+
+    private boolean tableExists(String table) {
+        Boolean exists = jdbcTemplate.execute((Connection connection) -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            for (String name : Arrays.asList(table, table.toLowerCase())) {
+                try (ResultSet tables = metaData.getTables(connection.getCatalog(), connection.getSchema(), name, new String[] {"TABLE"})) {
+                    if (tables.next()) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        });
+        return Boolean.TRUE.equals(exists);
+    }
+
+    private static List<Migration> findMigrations() {
+        try {
+            List<Migration> migrations = new ArrayList<>();
+            for (Resource resource : new PathMatchingResourcePatternResolver().getResources(LOCATION)) {
+                Matcher matcher = SCRIPT_NAME.matcher(resource.getFilename());
+                if (!matcher.matches()) {
+                    throw new IllegalStateException("Unexpected migration script name " + resource.getFilename());
+                }
+                migrations.add(new Migration(Integer.parseInt(matcher.group(1)), matcher.group(2).replace('_', ' '), resource));
+            }
+            migrations.sort(Comparator.comparingInt(migration -> migration.version));
+
+            for (int i = 1; i < migrations.size(); i++) {
+                if (migrations.get(i).version == migrations.get(i - 1).version) {
+                    throw new IllegalStateException("Two migration scripts for version " + migrations.get(i).version);
+                }
+            }
+            return migrations;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static final class Precondition {
+        private final String query;
+        private final String reason;
+
+        private Precondition(String query, String reason) {
+            this.query = query;
+            this.reason = reason;
+        }
+    }
+
+    private static final class Migration {
+        private final int version;
+        private final String description;
+        private final Resource resource;
+        private final long checksum;
+
+        private Migration(int version, String description, Resource resource) throws IOException {
+            this.version = version;
+            this.description = description;
+            this.resource = resource;
+
+            CRC32 crc = new CRC32();
+            crc.update(StreamUtils.copyToByteArray(resource.getInputStream()));
+            this.checksum = crc.getValue();
+        }
+    }
+}
@@ -10,13 +10,18 @@ import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 import javax.persistence.*;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
 import javax.validation.constraints.Size;
 import java.time.LocalDateTime;
 import java.util.Date;
 import java.util.List;
 
 @Entity
-@Table(name = "SESSIONS")
+@Table(name = "SESSIONS",
+        indexes = {
+                @Index(name = "idx_sessions_date_id", columnList = "date, id"),
+                @Index(name = "idx_sessions_teacher_date", columnList = "teacher_id, date, id")
+        })
 @EntityListeners(AuditingEntityListener.class)
 @Data
 @Accessors(chain = true)
@@ -41,11 +46,22 @@ public class Session {
     @Size(max = 2500)
     private String description;
 
+    /** Maximum number of participants, unlimited when null. */
+    @Positive
+    private Integer capacity;
+
+    /**
+     * Number of PARTICIPATE rows of the session. Seats are taken by a conditional update of this
+     * counter, never through the entity.
+     */
+    @Column(name = "participant_count", nullable = false, updatable = false)
+    private int participantCount;
+
     @OneToOne
     @JoinColumn(name = "teacher_id", referencedColumnName = "id")
     private Teacher teacher;
 
-    @ManyToMany(fetch = FetchType.EAGER)
+    @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(
             name = "PARTICIPATE",
             joinColumns = @JoinColumn( name = "session_id" ),
@@ -0,0 +1,19 @@
+package com.openclassrooms.starterjwt.payload.request;
+
+import java.util.List;
+
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+
+import lombok.Data;
+
+/**
+ * Ids of the users to enroll in a session, or of the sessions to book for a user.
+ */
+@Data
+public class BulkParticipationRequest {
+  @NotEmpty
+  @Size(max = 1000)
+  private List<@NotNull Long> ids;
+}
@@ -0,0 +1,14 @@
+package com.openclassrooms.starterjwt.payload.response;
+
+import com.openclassrooms.starterjwt.services.ParticipationOutcome;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class ParticipationResult {
+  /** The user or the session id of the request, depending on the endpoint. */
+  private Long id;
+  private ParticipationOutcome outcome;
+}
@@ -0,0 +1,15 @@
+package com.openclassrooms.starterjwt.payload.response;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class UserImportResponse {
+  private int total;
+  private int created;
+  private int rejected;
+  private List<UserImportRowResult> rows;
+}
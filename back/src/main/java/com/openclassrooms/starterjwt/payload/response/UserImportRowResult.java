@@ -0,0 +1,19 @@
+package com.openclassrooms.starterjwt.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class UserImportRowResult {
+  public enum Status {
+    CREATED,
+    INVALID,
+    DUPLICATE
+  }
+
+  private int line;
+  private String email;
+  private Status status;
+  private String message;
+}
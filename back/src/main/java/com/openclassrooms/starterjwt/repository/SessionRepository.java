@@ -1,9 +1,161 @@
 package com.openclassrooms.starterjwt.repository;
 
 import com.openclassrooms.starterjwt.models.Session;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface SessionRepository  extends JpaRepository<Session, Long> {
+    String SUMMARY_SELECT = "select s.id as id, s.name as name, s.date as date, s.description as description, "
+            + "t.id as teacherId, s.capacity as capacity, s.createdAt as createdAt, s.updatedAt as updatedAt "
+            + "from Session s left join s.teacher t";
+
+    String PARTICIPANT_SUMMARY_SELECT = "SELECT s.id AS id, s.name AS name, s.date AS date, s.description AS description, "
+            + "s.teacher_id AS teacherId, s.capacity AS capacity, s.created_at AS createdAt, s.updated_at AS updatedAt "
+            + "FROM PARTICIPATE p JOIN SESSIONS s ON s.id = p.session_id WHERE p.user_id = :userId ";
+
+    @Query(SUMMARY_SELECT + " order by s.id")
+    List<SessionSummary> findAllSummaries();
+
+    @Query(SUMMARY_SELECT + " where s.id = :id")
+    Optional<SessionSummary> findSummaryById(@Param("id") Long id);
+
+    /**
+     * One page of sessions in (date, id) order, starting right after the given position. The
+     * position is a range condition on the (date, id) index, so a deep page costs the same as the
+     * first one. Null filters and a null position are ignored.
+     */
+    @Query(SUMMARY_SELECT + " where (:from is null or s.date >= :from)"
+            + " and (:to is null or s.date < :to)"
+            + " and (:teacherId is null or t.id = :teacherId)"
+            + " and (:freeSeats = false or s.capacity is null or s.participantCount < s.capacity)"
+            + " and (:afterDate is null or (s.date >= :afterDate and (s.date > :afterDate or s.id > :afterId)))"
+            + " order by s.date, s.id")
+    List<SessionSummary> findSummaryPage(@Param("from") Date from,
+                                         @Param("to") Date to,
+                                         @Param("teacherId") Long teacherId,
+                                         @Param("freeSeats") boolean freeSeats,
+                                         @Param("afterDate") Date afterDate,
+                                         @Param("afterId") Long afterId,
+                                         Pageable pageable);
+
+    /**
+     * Sessions of one participant from the given position on, in (date, id) order. The rows are
+     * found through the (user_id, session_id) index of PARTICIPATE, so the cost follows the number
+     * of bookings of the user and not the size of the catalog.
+     */
+    @Query(value = PARTICIPANT_SUMMARY_SELECT + "AND s.date >= :afterDate AND (s.date > :afterDate OR s.id > :afterId) "
+            + "ORDER BY s.date, s.id", nativeQuery = true)
+    List<SessionSummary> findSummariesOfParticipantAfter(@Param("userId") Long userId,
+                                                         @Param("afterDate") Date afterDate,
+                                                         @Param("afterId") Long afterId,
+                                                         Pageable pageable);
+
+    /**
+     * Same as {@link #findSummariesOfParticipantAfter}, backwards: the sessions before the given
+     * position, most recent first.
+     */
+    @Query(value = PARTICIPANT_SUMMARY_SELECT + "AND s.date <= :beforeDate AND (s.date < :beforeDate OR s.id < :beforeId) "
+            + "ORDER BY s.date DESC, s.id DESC", nativeQuery = true)
+    List<SessionSummary> findSummariesOfParticipantBefore(@Param("userId") Long userId,
+                                                          @Param("beforeDate") Date beforeDate,
+                                                          @Param("beforeId") Long beforeId,
+                                                          Pageable pageable);
+
+    // Read straight from the join table so that no USERS row is touched
+    @Query(value = "SELECT session_id AS sessionId, user_id AS userId FROM PARTICIPATE", nativeQuery = true)
+    List<SessionParticipant> findAllParticipants();
+
+    @Query(value = "SELECT session_id AS sessionId, user_id AS userId FROM PARTICIPATE WHERE session_id = :sessionId", nativeQuery = true)
+    List<SessionParticipant> findParticipants(@Param("sessionId") Long sessionId);
+
+    @Query(value = "SELECT session_id AS sessionId, user_id AS userId FROM PARTICIPATE WHERE session_id IN (:sessionIds)", nativeQuery = true)
+    List<SessionParticipant> findParticipants(@Param("sessionIds") Collection<Long> sessionIds);
+
+    @Query(value = "SELECT COUNT(*) FROM PARTICIPATE WHERE session_id = :sessionId AND user_id = :userId", nativeQuery = true)
+    long countParticipations(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    default boolean isParticipant(Long sessionId, Long userId) {
+        return countParticipations(sessionId, userId) > 0;
+    }
+
+    // Writes a single PARTICIPATE row instead of re-saving the session with its participant list
+    @Modifying
+    @Query(value = "INSERT INTO PARTICIPATE (session_id, user_id) VALUES (:sessionId, :userId)", nativeQuery = true)
+    int addParticipant(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    // Same, but writes nothing when the user already participates, where a plain insert would fail the transaction
+    @Modifying
+    @Query(value = "INSERT INTO PARTICIPATE (session_id, user_id) SELECT :sessionId, :userId FROM DUAL WHERE NOT EXISTS "
+            + "(SELECT 1 FROM PARTICIPATE WHERE session_id = :sessionId AND user_id = :userId)", nativeQuery = true)
+    int addParticipantIfAbsent(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    @Modifying
+    @Query(value = "DELETE FROM PARTICIPATE WHERE session_id = :sessionId AND user_id = :userId", nativeQuery = true)
+    int removeParticipant(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    /**
+     * Takes a seat in one statement. The row lock of the update serializes concurrent joins on the
+     * session, so the count can never go past the capacity.
+     *
+     * @return 0 when the session is full or does not exist
+     */
+    @Modifying
+    @Query(value = "UPDATE SESSIONS SET participant_count = participant_count + 1 "
+            + "WHERE id = :sessionId AND (capacity IS NULL OR participant_count < capacity)", nativeQuery = true)
+    int reserveSeat(@Param("sessionId") Long sessionId);
+
+    @Modifying
+    @Query(value = "UPDATE SESSIONS SET participant_count = participant_count - 1 "
+            + "WHERE id = :sessionId AND participant_count > 0", nativeQuery = true)
+    int releaseSeat(@Param("sessionId") Long sessionId);
+
+    /**
+     * Locks the session row when it is full, without changing it. Joins and leaves also go through
+     * this row, so a seat cannot be freed between this check and the waitlist insert.
+     *
+     * @return 0 when seats are left or the session does not exist
+     */
+    @Modifying
+    @Query(value = "UPDATE SESSIONS SET participant_count = participant_count "
+            + "WHERE id = :sessionId AND capacity IS NOT NULL AND participant_count >= capacity", nativeQuery = true)
+    int lockIfFull(@Param("sessionId") Long sessionId);
+
+    @Query(value = "SELECT id AS id, capacity AS capacity, participant_count AS participantCount FROM SESSIONS "
+            + "WHERE id = :sessionId FOR UPDATE", nativeQuery = true)
+    Optional<SessionSeats> lockSeats(@Param("sessionId") Long sessionId);
+
+    // Locked in id order, so two bookings over the same sessions cannot deadlock
+    @Query(value = "SELECT id AS id, capacity AS capacity, participant_count AS participantCount FROM SESSIONS "
+            + "WHERE id IN (:sessionIds) ORDER BY id FOR UPDATE", nativeQuery = true)
+    List<SessionSeats> lockSeats(@Param("sessionIds") Collection<Long> sessionIds);
+
+    @Query("select s.id from Session s join s.users u where u.id = :userId and s.id in :sessionIds")
+    List<Long> findSessionIdsOfParticipant(@Param("userId") Long userId, @Param("sessionIds") Collection<Long> sessionIds);
+
+    @Query("select u.id from Session s join s.users u where s.id = :sessionId and u.id in :userIds")
+    List<Long> findParticipantIds(@Param("sessionId") Long sessionId, @Param("userIds") Collection<Long> userIds);
+
+    @Modifying
+    @Query(value = "UPDATE SESSIONS SET participant_count = participant_count + :seats WHERE id = :sessionId", nativeQuery = true)
+    int addSeats(@Param("sessionId") Long sessionId, @Param("seats") int seats);
+
+    @Modifying
+    @Query(value = "UPDATE SESSIONS SET participant_count = participant_count + 1 WHERE id IN (:sessionIds)", nativeQuery = true)
+    int addSeat(@Param("sessionIds") Collection<Long> sessionIds);
+
+    // Recounts after the participant list was written through the entity (create, update)
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE SESSIONS SET participant_count = "
+            + "(SELECT COUNT(*) FROM PARTICIPATE WHERE session_id = :sessionId) WHERE id = :sessionId", nativeQuery = true)
+    int syncParticipantCount(@Param("sessionId") Long sessionId);
 }
@@ -0,0 +1,12 @@
+package com.openclassrooms.starterjwt.repository;
+
+/**
+ * Capacity and seats taken of a session, read under a row lock.
+ */
+public interface SessionSeats {
+    Long getId();
+
+    Integer getCapacity();
+
+    Integer getParticipantCount();
+}
@@ -0,0 +1,25 @@
+package com.openclassrooms.starterjwt.repository;
+
+import java.time.LocalDateTime;
+import java.util.Date;
+
+/**
+ * Read-only view of a session row with its teacher id, without the teacher or participant entities.
+ */
+public interface SessionSummary {
+    Long getId();
+
+    String getName();
+
+    Date getDate();
+
+    String getDescription();
+
+    Long getTeacherId();
+
+    Integer getCapacity();
+
+    LocalDateTime getCreatedAt();
+
+    LocalDateTime getUpdatedAt();
+}
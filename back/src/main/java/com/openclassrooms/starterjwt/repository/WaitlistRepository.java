@@ -0,0 +1,38 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.models.WaitlistEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
+import java.util.Optional;
+
+@Repository
+public interface WaitlistRepository extends JpaRepository<WaitlistEntry, Long> {
+    /**
+     * Head of the queue: the first entry of the (session_id, id) index, read with FOR UPDATE. A locking
+     * read sees the latest committed entries rather than the snapshot of the transaction, so under
+     * REPEATABLE READ two transactions never promote the same head: the second one waits for the
+     * first and then reads the next entry.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<WaitlistEntry> findFirstBySessionIdOrderByIdAsc(Long sessionId);
+
+    /**
+     * 1-based position of the user, 0 when they are not waiting. Counts the entries ahead of the user
+     * on the (session_id, id) index without reading the table rows, so the cost grows with the
+     * position. A stored rank would be read in one lookup, but every leave or promotion would then
+     * renumber the entries behind it.
+     */
+    @Query("select count(w) from WaitlistEntry w where w.sessionId = :sessionId and w.id <= "
+            + "(select mine.id from WaitlistEntry mine where mine.sessionId = :sessionId and mine.userId = :userId)")
+    long findPosition(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    @Modifying
+    @Query("delete from WaitlistEntry w where w.sessionId = :sessionId and w.userId = :userId")
+    int deleteBySessionIdAndUserId(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+}
@@ -0,0 +1,130 @@
+package com.openclassrooms.starterjwt.security;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Builds the application {@link DelegatingPasswordEncoder} with a BCrypt cost measured on the
+ * current hardware, so that one hash costs roughly the configured target whatever the node.
+ *
+ * Only BCrypt is calibrated: its cost is stored in each hash, so hashes made by any node at any cost
+ * keep matching. {@link Pbkdf2PasswordEncoder} does not store its iteration count and checks every
+ * hash with its own, which therefore comes from oc.app.passwordPbkdf2Iterations and must stay the
+ * same on every node and across restarts.
+ *
+ * Hashes are stored with their {id} prefix. Legacy hashes without prefix are BCrypt and keep
+ * matching; they, and BCrypt hashes below the calibrated cost, are re-encoded on the next login.
+ */
+class PasswordEncoderCalibrator {
+  private static final Logger logger = LoggerFactory.getLogger(PasswordEncoderCalibrator.class);
+
+  static final String BCRYPT = "bcrypt";
+
+  static final String PBKDF2 = "pbkdf2";
+
+  static final String ARGON2 = "argon2";
+
+  private static final int BCRYPT_PROBE_COST = 8;
+
+  private static final int PBKDF2_HASH_WIDTH = 256;
+
+  private static final int PROBE_ROUNDS = 3;
+
+  private static final String PROBE_PASSWORD = "calibration-probe";
+
+  private final long targetMs;
+
+  private final int minCost;
+
+  private final int maxCost;
+
+  private final int pbkdf2Iterations;
+
+  PasswordEncoderCalibrator(long targetMs, int minCost, int maxCost, int pbkdf2Iterations) {
+    this.targetMs = targetMs;
+    this.minCost = minCost;
+    this.maxCost = maxCost;
+    this.pbkdf2Iterations = pbkdf2Iterations;
+  }
+
+  PasswordEncoder build(String idForEncode) {
+    return build(idForEncode, measureMs(BCryptPasswordEncoder::new, BCRYPT_PROBE_COST));
+  }
+
+  /**
+   * @param bcryptProbeMs time of one BCrypt hash at {@link #BCRYPT_PROBE_COST} on this node
+   */
+  PasswordEncoder build(String idForEncode, double bcryptProbeMs) {
+    Map<String, PasswordEncoder> encoders = new HashMap<>();
+
+    int cost = bcryptCost(targetMs, bcryptProbeMs, BCRYPT_PROBE_COST, minCost, maxCost);
+    BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(cost);
+    encoders.put(BCRYPT, bcrypt);
+
+    encoders.put(PBKDF2, pbkdf2(pbkdf2Iterations));
+
+    // Argon2 needs BouncyCastle, which the application does not ship by default
+    if (ClassUtils.isPresent("org.bouncycastle.crypto.params.Argon2Parameters", getClass().getClassLoader())) {
+      encoders.put(ARGON2, new Argon2PasswordEncoder());
+    }
+
+    if (!encoders.containsKey(idForEncode)) {
+      throw new IllegalStateException("Unknown password encoding: " + idForEncode + ", expected one of " + encoders.keySet());
+    }
+
+    logger.info("Password hashing calibrated for {} ms: bcrypt cost {}, pbkdf2 {} iterations (configured), encoding with {}",
+        targetMs, cost, pbkdf2Iterations, idForEncode);
+
+    DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder(idForEncode, encoders);
+    encoder.setDefaultPasswordEncoderForMatches(bcrypt);
+    return encoder;
+  }
+
+  /**
+   * BCrypt doubles its time with each cost step: pick the highest cost whose predicted time stays
+   * within the target, never below minCost nor above maxCost.
+   */
+  static int bcryptCost(long targetMs, double probeMs, int probeCost, int minCost, int maxCost) {
+    int cost = probeCost;
+    double predictedMs = Math.max(probeMs, 0.01);
+    while (cost < maxCost && predictedMs * 2 <= targetMs) {
+      predictedMs *= 2;
+      cost++;
+    }
+    while (cost > probeCost && predictedMs > targetMs) {
+      predictedMs /= 2;
+      cost--;
+    }
+    return Math.max(minCost, Math.min(maxCost, cost));
+  }
+
+  private static Pbkdf2PasswordEncoder pbkdf2(int iterations) {
+    Pbkdf2PasswordEncoder encoder = new Pbkdf2PasswordEncoder("", iterations, PBKDF2_HASH_WIDTH);
+    encoder.setAlgorithm(Pbkdf2PasswordEncoder.SecretKeyFactoryAlgorithm.PBKDF2WithHmacSHA256);
+    return encoder;
+  }
+
+  /** Best of a few rounds after one warm-up, to keep JIT and scheduling noise out of the figure. */
+  private static double measureMs(IntFunction<PasswordEncoder> factory, int workFactor) {
+    PasswordEncoder encoder = factory.apply(workFactor);
+    encoder.encode(PROBE_PASSWORD);
+
+    long best = Long.MAX_VALUE;
+    for (int i = 0; i < PROBE_ROUNDS; i++) {
+      long start = System.nanoTime();
+      encoder.encode(PROBE_PASSWORD);
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    return best / 1_000_000.0;
+  }
+}
@@ -1,6 +1,7 @@
 package com.openclassrooms.starterjwt.security;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -10,7 +11,6 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
@@ -33,6 +33,22 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
   @Autowired
   private AuthEntryPointJwt unauthorizedHandler;
 
+  @Value("${oc.app.passwordHashTargetMs:80}")
+  private long passwordHashTargetMs;
+
+  @Value("${oc.app.passwordHashMinCost:10}")
+  private int passwordHashMinCost;
+
+  @Value("${oc.app.passwordHashMaxCost:16}")
+  private int passwordHashMaxCost;
+
+  /** Fixed, not calibrated: PBKDF2 hashes do not record it and only verify with the same count. */
+  @Value("${oc.app.passwordPbkdf2Iterations:310000}")
+  private int passwordPbkdf2Iterations;
+
+  @Value("${oc.app.passwordEncoding:bcrypt}")
+  private String passwordEncoding;
+
   @Bean
   public AuthTokenFilter authenticationJwtTokenFilter() {
     return new AuthTokenFilter();
@@ -51,7 +67,9 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
 
   @Bean
   public PasswordEncoder passwordEncoder() {
-    return new BCryptPasswordEncoder();
+    return new PasswordEncoderCalibrator(passwordHashTargetMs, passwordHashMinCost, passwordHashMaxCost,
+        passwordPbkdf2Iterations)
+        .build(passwordEncoding);
   }
 
   @Override
@@ -1,7 +1,10 @@
 package com.openclassrooms.starterjwt.security.jwt;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
+import javax.annotation.PostConstruct;
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -10,10 +13,13 @@ import javax.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
 import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
@@ -28,6 +34,23 @@ public class AuthTokenFilter extends OncePerRequestFilter {
   @Autowired
   private UserDetailsServiceImpl userDetailsService;
 
+  @Autowired(required = false)
+  private TokenRevocationList revocationList;
+
+  /**
+   * When enabled the principal is rebuilt from the token claims instead of being loaded from the database.
+   */
+  @Value("${oc.app.jwtStatelessPrincipal:false}")
+  private boolean statelessPrincipal;
+
+  /**
+   * Requests that always re-check the user against the database, written as "METHOD /ant/pattern".
+   */
+  @Value("${oc.app.jwtFreshPrincipalPaths:}")
+  private String[] freshPrincipalPaths;
+
+  private List<RequestMatcher> freshPrincipalMatchers;
+
   private static final Logger logger = LoggerFactory.getLogger(AuthTokenFilter.class);
 
   @Override
@@ -35,10 +58,20 @@ public class AuthTokenFilter extends OncePerRequestFilter {
       throws ServletException, IOException {
     try {
       String jwt = parseJwt(request);
-      if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-        String username = jwtUtils.getUserNameFromJwtToken(jwt);
+      VerifiedJwt verified = jwt != null ? jwtUtils.verify(jwt) : null;
+      if (verified != null && isAccessToken(verified)) {
+        UserDetails userDetails = null;
+        if (requiresFreshPrincipal(request)) {
+          // Not from the user cache either, which may be minutes old
+          userDetails = userDetailsService.loadFreshUserByUsername(verified.getSubject());
+        } else if (statelessPrincipal) {
+          // Null for tokens issued without the principal claims, loaded below
+          userDetails = verified.toUserDetails();
+        }
+        if (userDetails == null) {
+          userDetails = userDetailsService.loadUserByUsername(verified.getSubject());
+        }
 
-        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
         UsernamePasswordAuthenticationToken authentication =
             new UsernamePasswordAuthenticationToken(
                 userDetails,
@@ -55,6 +88,41 @@ public class AuthTokenFilter extends OncePerRequestFilter {
     filterChain.doFilter(request, response);
   }
 
+  private boolean isAccessToken(VerifiedJwt verified) {
+    if (verified.isRefresh()) {
+      return false;
+    }
+    return revocationList == null || !revocationList.isRevoked(verified);
+  }
+
+  @PostConstruct
+  void initFreshPrincipalMatchers() {
+    List<RequestMatcher> matchers = new ArrayList<>();
+    if (freshPrincipalPaths != null) {
+      for (String path : freshPrincipalPaths) {
+        String[] parts = path.trim().split("\\s+", 2);
+        if (parts.length == 2) {
+          matchers.add(new AntPathRequestMatcher(parts[1], parts[0]));
+        } else if (!parts[0].isEmpty()) {
+          matchers.add(new AntPathRequestMatcher(parts[0]));
+        }
+      }
+    }
+    freshPrincipalMatchers = matchers;
+  }
+
+  private boolean requiresFreshPrincipal(HttpServletRequest request) {
+    if (freshPrincipalMatchers == null) {
+      return false;
+    }
+    for (RequestMatcher matcher : freshPrincipalMatchers) {
+      if (matcher.matches(request)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   private String parseJwt(HttpServletRequest request) {
     String headerAuth = request.getHeader("Authorization");
 
@@ -0,0 +1,192 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import io.jsonwebtoken.impl.TextCodec;
+
+/**
+ * Allocation-light verifier for the HS512 tokens issued by {@link JwtUtils}.
+ *
+ * The verifier only accepts tokens it can fully vouch for: the exact header we emit, a matching
+ * signature, an integral exp in the future and no nbf claim. For anything else it returns null and
+ * the caller falls back to the jjwt parser, which then produces the usual exception and log line.
+ * That keeps the outcome identical to jjwt on expired, malformed and tampered tokens.
+ */
+class Hs512JwtVerifier {
+  private static final String ALGORITHM = "HmacSHA512";
+
+  /** Base64url of {"alg":"HS512"}, the header jjwt writes for our tokens. */
+  private static final String EXPECTED_HEADER = "eyJhbGciOiJIUzUxMiJ9";
+
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  private static final Base64.Decoder BASE64_URL = Base64.getUrlDecoder();
+
+  private final SecretKeySpec key;
+
+  private final ThreadLocal<Mac> macs;
+
+  Hs512JwtVerifier(String secret) {
+    // jjwt treats a String signing key as Base64, so derive the key bytes the same way
+    this.key = new SecretKeySpec(TextCodec.BASE64.decode(secret), ALGORITHM);
+    this.macs = ThreadLocal.withInitial(this::newMac);
+  }
+
+  VerifiedJwt verify(String token) {
+    int firstDot = token.indexOf('.');
+    int secondDot = token.indexOf('.', firstDot + 1);
+    if (firstDot < 0 || secondDot < 0 || secondDot == token.length() - 1 || token.indexOf('.', secondDot + 1) >= 0) {
+      return null;
+    }
+
+    if (firstDot != EXPECTED_HEADER.length() || !token.startsWith(EXPECTED_HEADER)) {
+      return null;
+    }
+
+    try {
+      byte[] signature = BASE64_URL.decode(token.substring(secondDot + 1));
+
+      Mac mac = macs.get();
+      byte[] expected = mac.doFinal(token.substring(0, secondDot).getBytes(StandardCharsets.US_ASCII));
+      if (!MessageDigest.isEqual(expected, signature)) {
+        return null;
+      }
+
+      return readClaims(BASE64_URL.decode(token.substring(firstDot + 1, secondDot)));
+    } catch (IllegalArgumentException | IOException e) {
+      return null;
+    }
+  }
+
+  private VerifiedJwt readClaims(byte[] payload) throws IOException {
+    String subject = null;
+    long expirationMs = Long.MAX_VALUE;
+    Long id = null;
+    String firstName = null;
+    String lastName = null;
+    boolean admin = false;
+    String tokenId = null;
+    long issuedAtMs = 0;
+    long preciseIssuedAtMs = -1;
+    boolean refresh = false;
+
+    try (JsonParser parser = JSON_FACTORY.createParser(payload)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        return null;
+      }
+
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String name = parser.getCurrentName();
+        JsonToken value = parser.nextToken();
+
+        switch (name) {
+          case "sub":
+            if (value != JsonToken.VALUE_STRING && value != JsonToken.VALUE_NULL) {
+              return null;
+            }
+            subject = parser.getValueAsString();
+            break;
+          case "exp":
+            if (value != JsonToken.VALUE_NUMBER_INT || parser.getNumberType() == JsonParser.NumberType.BIG_INTEGER) {
+              return null;
+            }
+            long expirationSeconds = parser.getLongValue();
+            if (expirationSeconds < 0 || expirationSeconds > Long.MAX_VALUE / 1000) {
+              return null;
+            }
+            expirationMs = expirationSeconds * 1000;
+            break;
+          case "nbf":
+            return null;
+          case "iat":
+            if (value != JsonToken.VALUE_NUMBER_INT || parser.getNumberType() == JsonParser.NumberType.BIG_INTEGER) {
+              return null;
+            }
+            long issuedAtSeconds = parser.getLongValue();
+            if (issuedAtSeconds < 0 || issuedAtSeconds > Long.MAX_VALUE / 1000) {
+              return null;
+            }
+            issuedAtMs = issuedAtSeconds * 1000;
+            break;
+          case JwtUtils.CLAIM_ISSUED_AT_MS:
+            if (value != JsonToken.VALUE_NUMBER_INT || parser.getNumberType() == JsonParser.NumberType.BIG_INTEGER
+                || parser.getLongValue() < 0) {
+              return null;
+            }
+            preciseIssuedAtMs = parser.getLongValue();
+            break;
+          case "jti":
+            if (value != JsonToken.VALUE_STRING && value != JsonToken.VALUE_NULL) {
+              return null;
+            }
+            tokenId = parser.getValueAsString();
+            break;
+          case JwtUtils.CLAIM_TYPE:
+            refresh = value == JsonToken.VALUE_STRING && JwtUtils.TYPE_REFRESH.equals(parser.getText());
+            break;
+          case JwtUtils.CLAIM_ID:
+            if (value == JsonToken.VALUE_NULL) {
+              id = null;
+            } else if (value == JsonToken.VALUE_NUMBER_INT && parser.getNumberType() != JsonParser.NumberType.BIG_INTEGER) {
+              id = parser.getLongValue();
+            } else {
+              return null;
+            }
+            break;
+          case JwtUtils.CLAIM_FIRST_NAME:
+            if (value != JsonToken.VALUE_STRING && value != JsonToken.VALUE_NULL) {
+              return null;
+            }
+            firstName = parser.getValueAsString();
+            break;
+          case JwtUtils.CLAIM_LAST_NAME:
+            if (value != JsonToken.VALUE_STRING && value != JsonToken.VALUE_NULL) {
+              return null;
+            }
+            lastName = parser.getValueAsString();
+            break;
+          case JwtUtils.CLAIM_ADMIN:
+            admin = value == JsonToken.VALUE_TRUE;
+            break;
+          default:
+            parser.skipChildren();
+        }
+      }
+
+      if (parser.currentToken() != JsonToken.END_OBJECT || parser.nextToken() != null) {
+        return null;
+      }
+    }
+
+    if (System.currentTimeMillis() > expirationMs) {
+      return null;
+    }
+
+    if (preciseIssuedAtMs >= 0) {
+      issuedAtMs = preciseIssuedAtMs;
+    }
+
+    return new VerifiedJwt(subject, expirationMs, id, firstName, lastName, admin, tokenId, issuedAtMs, refresh);
+  }
+
+  private Mac newMac() {
+    try {
+      Mac mac = Mac.getInstance(ALGORITHM);
+      mac.init(key);
+      return mac;
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("Cannot initialise " + ALGORITHM, e);
+    }
+  }
+}
@@ -1,9 +1,11 @@
 package com.openclassrooms.starterjwt.security.jwt;
 
 import java.util.Date;
+import java.util.UUID;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
@@ -16,32 +18,109 @@ import io.jsonwebtoken.*;
 public class JwtUtils {
   private static final Logger logger = LoggerFactory.getLogger(JwtUtils.class);
 
+  static final String CLAIM_ID = "id";
+  static final String CLAIM_FIRST_NAME = "firstName";
+  static final String CLAIM_LAST_NAME = "lastName";
+  static final String CLAIM_ADMIN = "admin";
+  static final String CLAIM_TYPE = "typ";
+  static final String CLAIM_ISSUED_AT_MS = "iatMs";
+
+  static final String TYPE_REFRESH = "refresh";
+
   @Value("${oc.app.jwtSecret}")
   private String jwtSecret;
 
   @Value("${oc.app.jwtExpirationMs}")
   private int jwtExpirationMs;
 
+  @Value("${oc.app.jwtRefreshExpirationMs:604800000}")
+  private long jwtRefreshExpirationMs;
+
+  @Autowired(required = false)
+  private JwtVerificationCache verificationCache;
+
+  private volatile Hs512JwtVerifier hs512Verifier;
+
   public String generateJwtToken(Authentication authentication) {
+    return generateJwtToken((UserDetailsImpl) authentication.getPrincipal());
+  }
 
-    UserDetailsImpl userPrincipal = (UserDetailsImpl) authentication.getPrincipal();
+  public String generateJwtToken(UserDetailsImpl userPrincipal) {
+    Date now = new Date();
 
     return Jwts.builder()
         .setSubject((userPrincipal.getUsername()))
-        .setIssuedAt(new Date())
-        .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
+        .setId(UUID.randomUUID().toString())
+        .claim(CLAIM_ID, userPrincipal.getId())
+        .claim(CLAIM_FIRST_NAME, userPrincipal.getFirstName())
+        .claim(CLAIM_LAST_NAME, userPrincipal.getLastName())
+        .claim(CLAIM_ADMIN, userPrincipal.getAdmin())
+        .claim(CLAIM_ISSUED_AT_MS, now.getTime())
+        .setIssuedAt(now)
+        .setExpiration(new Date(now.getTime() + jwtExpirationMs))
+        .signWith(SignatureAlgorithm.HS512, jwtSecret)
+        .compact();
+  }
+
+  /**
+   * Long-lived token only accepted by /api/auth/refresh. It carries no profile claims, the
+   * user is reloaded when it is exchanged.
+   */
+  public String generateRefreshToken(UserDetailsImpl userPrincipal) {
+    Date now = new Date();
+
+    return Jwts.builder()
+        .setSubject(userPrincipal.getUsername())
+        .setId(UUID.randomUUID().toString())
+        .claim(CLAIM_ID, userPrincipal.getId())
+        .claim(CLAIM_TYPE, TYPE_REFRESH)
+        .claim(CLAIM_ISSUED_AT_MS, now.getTime())
+        .setIssuedAt(now)
+        .setExpiration(new Date(now.getTime() + jwtRefreshExpirationMs))
         .signWith(SignatureAlgorithm.HS512, jwtSecret)
         .compact();
   }
 
   public String getUserNameFromJwtToken(String token) {
-    return Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(token).getBody().getSubject();
+    VerifiedJwt verified = verify(token);
+    return verified != null ? verified.getSubject() : null;
+  }
+
+  /**
+   * Builds the principal straight from the signed claims, so that an authenticated request
+   * does not need to read the USERS table. Returns null for invalid tokens and for tokens issued
+   * without the principal claims, the caller then has to load the user from the database.
+   */
+  public UserDetailsImpl getUserDetailsFromJwtToken(String token) {
+    VerifiedJwt verified = verify(token);
+    return verified != null ? verified.toUserDetails() : null;
   }
 
   public boolean validateJwtToken(String authToken) {
+    VerifiedJwt verified = verify(authToken);
+    return verified != null && !verified.isRefresh();
+  }
+
+  /**
+   * Parses and checks the token once, returning its claims or null when the token is not valid.
+   * Successful verifications are served from the cache until the token expires or the TTL elapses.
+   */
+  public VerifiedJwt verify(String token) {
+    if (verificationCache == null) {
+      return parseAndVerify(token);
+    }
+    return verificationCache.get(token, this::parseAndVerify);
+  }
+
+  private VerifiedJwt parseAndVerify(String token) {
+    VerifiedJwt verified = hs512Verifier().verify(token);
+    if (verified != null) {
+      return verified;
+    }
+
+    // Anything the fast path cannot vouch for goes through jjwt, which decides and logs why
     try {
-      Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(authToken);
-      return true;
+      return VerifiedJwt.from(Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(token).getBody());
     } catch (SignatureException e) {
       logger.error("Invalid JWT signature: {}", e.getMessage());
     } catch (MalformedJwtException e) {
@@ -54,6 +133,15 @@ public class JwtUtils {
       logger.error("JWT claims string is empty: {}", e.getMessage());
     }
 
-    return false;
+    return null;
+  }
+
+  private Hs512JwtVerifier hs512Verifier() {
+    Hs512JwtVerifier verifier = hs512Verifier;
+    if (verifier == null) {
+      verifier = new Hs512JwtVerifier(jwtSecret);
+      hs512Verifier = verifier;
+    }
+    return verifier;
   }
 }
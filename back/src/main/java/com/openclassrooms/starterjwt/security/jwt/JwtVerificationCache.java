@@ -0,0 +1,94 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Remembers successfully verified tokens so that a token reused on every request is only
+ * parsed and HMAC-checked once per TTL. Entries are keyed by the SHA-256 digest of the token
+ * and never outlive the token's own expiration.
+ */
+@Component
+public class JwtVerificationCache implements MeterBinder {
+  private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  });
+
+  private final Cache<ByteBuffer, VerifiedJwt> cache;
+
+  public JwtVerificationCache(@Value("${oc.app.jwtVerificationCacheSize:10000}") long maximumSize,
+                              @Value("${oc.app.jwtVerificationCacheTtlMs:300000}") long ttlMs) {
+    long ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+
+    this.cache = Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfter(new Expiry<ByteBuffer, VerifiedJwt>() {
+          @Override
+          public long expireAfterCreate(ByteBuffer key, VerifiedJwt value, long currentTime) {
+            long untilExpiration = TimeUnit.MILLISECONDS.toNanos(value.getExpirationMs() - System.currentTimeMillis());
+            return Math.max(0, Math.min(ttlNanos, untilExpiration));
+          }
+
+          @Override
+          public long expireAfterUpdate(ByteBuffer key, VerifiedJwt value, long currentTime, long currentDuration) {
+            return currentDuration;
+          }
+
+          @Override
+          public long expireAfterRead(ByteBuffer key, VerifiedJwt value, long currentTime, long currentDuration) {
+            return currentDuration;
+          }
+        })
+        .recordStats()
+        .build();
+  }
+
+  /**
+   * Returns the cached verification of the token, or runs the verifier on a miss.
+   * A null result (invalid token) is never cached.
+   */
+  public VerifiedJwt get(String token, Function<String, VerifiedJwt> verifier) {
+    return cache.get(digest(token), key -> verifier.apply(token));
+  }
+
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  void cleanUp() {
+    cache.cleanUp();
+  }
+
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    CaffeineCacheMetrics.monitor(registry, cache, "jwtVerification");
+  }
+
+  private static ByteBuffer digest(String token) {
+    return ByteBuffer.wrap(SHA_256.get().digest(token.getBytes(StandardCharsets.US_ASCII)));
+  }
+}
@@ -0,0 +1,127 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.openclassrooms.starterjwt.events.UserChangedEvent;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Tokens that must be refused although their signature and expiration are fine.
+ *
+ * Two maps back the lookups, both O(1): revoked token ids (logout, used refresh tokens) and, per
+ * user, the instant before which every token is revoked (the user changed or was deleted). An entry
+ * is only kept while a token it covers can still be valid, and expired entries are pruned as new
+ * ones come in, so the memory stays bounded by the live tokens. Empty maps cost a single read on the
+ * filter path.
+ *
+ * The list lives in memory and is not shared between instances.
+ */
+@Component
+public class TokenRevocationList implements MeterBinder {
+  private static final long PRUNE_INTERVAL_MS = 60000;
+
+  /** Token id to the expiration of the token, in milliseconds. */
+  private final Map<String, Long> revokedTokens = new ConcurrentHashMap<>();
+
+  /** User id to the instant, in milliseconds, before which their tokens are revoked. */
+  private final Map<Long, Long> revokedUsers = new ConcurrentHashMap<>();
+
+  private final long maxTokenLifetimeMs;
+
+  private volatile long nextPruneMs;
+
+  public TokenRevocationList(@Value("${oc.app.jwtRefreshExpirationMs:604800000}") long refreshExpirationMs,
+                             @Value("${oc.app.jwtExpirationMs}") long expirationMs) {
+    this.maxTokenLifetimeMs = Math.max(refreshExpirationMs, expirationMs);
+  }
+
+  public boolean isRevoked(VerifiedJwt jwt) {
+    if (!revokedTokens.isEmpty() && jwt.getTokenId() != null && revokedTokens.containsKey(jwt.getTokenId())) {
+      return true;
+    }
+    if (!revokedUsers.isEmpty() && jwt.getId() != null) {
+      Long revokedBefore = revokedUsers.get(jwt.getId());
+      return revokedBefore != null && jwt.getIssuedAtMs() < revokedBefore;
+    }
+    return false;
+  }
+
+  /**
+   * Revokes one token until it expires.
+   *
+   * @return false when the token was already revoked, which lets a refresh token be used only once
+   */
+  public boolean revoke(VerifiedJwt jwt) {
+    if (jwt.getTokenId() == null) {
+      return !isRevoked(jwt);
+    }
+
+    pruneIfDue();
+    return revokedTokens.putIfAbsent(jwt.getTokenId(), jwt.getExpirationMs()) == null;
+  }
+
+  /**
+   * Revokes every token of the user issued before now, compared with the millisecond issue instant
+   * the tokens carry, so a token issued right after the change, by the login that made it for instance,
+   * stays valid. Tokens issued before that claim only have the second of their iat: those of the
+   * current second are revoked whether they came before or after the change.
+   */
+  public void revokeUser(Long userId) {
+    long now = System.currentTimeMillis();
+
+    pruneIfDue();
+    revokedUsers.put(userId, now);
+  }
+
+  /**
+   * Tokens embed the user's profile, so any change to the user, and its deletion, ends them.
+   */
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onUserChanged(UserChangedEvent event) {
+    if (event.getUserId() != null) {
+      revokeUser(event.getUserId());
+    }
+  }
+
+  public int size() {
+    return revokedTokens.size() + revokedUsers.size();
+  }
+
+  void prune(long now) {
+    revokedTokens.values().removeIf(expirationMs -> expirationMs <= now);
+    revokedUsers.values().removeIf(revokedBefore -> revokedBefore + maxTokenLifetimeMs <= now);
+  }
+
+  private void pruneIfDue() {
+    long now = System.currentTimeMillis();
+    if (now < nextPruneMs) {
+      return;
+    }
+
+    synchronized (this) {
+      if (now < nextPruneMs) {
+        return;
+      }
+      nextPruneMs = now + PRUNE_INTERVAL_MS;
+    }
+    prune(now);
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("jwt.revoked.tokens", revokedTokens, Map::size)
+        .description("Revoked tokens that have not expired yet")
+        .register(registry);
+    Gauge.builder("jwt.revoked.users", revokedUsers, Map::size)
+        .description("Users whose earlier tokens are revoked")
+        .register(registry);
+  }
+}
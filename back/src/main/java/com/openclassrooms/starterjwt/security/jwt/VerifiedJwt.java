@@ -0,0 +1,91 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.util.Date;
+
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+
+import io.jsonwebtoken.Claims;
+import lombok.Getter;
+
+/**
+ * The claims of a token whose signature and expiration have already been checked.
+ * Instances are immutable so that they can be shared by the verification cache.
+ */
+@Getter
+public class VerifiedJwt {
+  private final String subject;
+
+  private final long expirationMs;
+
+  private final Long id;
+
+  private final String firstName;
+
+  private final String lastName;
+
+  private final boolean admin;
+
+  /** The jti claim, null for tokens issued before revocation support. */
+  private final String tokenId;
+
+  /**
+   * The issue instant in milliseconds, 0 when absent. Taken from the iatMs claim, or from the
+   * iat claim, truncated to the second, for tokens issued before it.
+   */
+  private final long issuedAtMs;
+
+  private final boolean refresh;
+
+  VerifiedJwt(String subject, long expirationMs, Long id, String firstName, String lastName, boolean admin) {
+    this(subject, expirationMs, id, firstName, lastName, admin, null, 0, false);
+  }
+
+  VerifiedJwt(String subject, long expirationMs, Long id, String firstName, String lastName, boolean admin,
+              String tokenId, long issuedAtMs, boolean refresh) {
+    this.subject = subject;
+    this.expirationMs = expirationMs;
+    this.id = id;
+    this.firstName = firstName;
+    this.lastName = lastName;
+    this.admin = admin;
+    this.tokenId = tokenId;
+    this.issuedAtMs = issuedAtMs;
+    this.refresh = refresh;
+  }
+
+  static VerifiedJwt from(Claims claims) {
+    Object id = claims.get(JwtUtils.CLAIM_ID);
+    Date expiration = claims.getExpiration();
+    Date issuedAt = claims.getIssuedAt();
+    Object issuedAtMs = claims.get(JwtUtils.CLAIM_ISSUED_AT_MS);
+
+    return new VerifiedJwt(
+        claims.getSubject(),
+        expiration != null ? expiration.getTime() : Long.MAX_VALUE,
+        id instanceof Number ? ((Number) id).longValue() : null,
+        claims.get(JwtUtils.CLAIM_FIRST_NAME, String.class),
+        claims.get(JwtUtils.CLAIM_LAST_NAME, String.class),
+        Boolean.TRUE.equals(claims.get(JwtUtils.CLAIM_ADMIN)),
+        claims.getId(),
+        issuedAtMs instanceof Number ? ((Number) issuedAtMs).longValue() : issuedAt != null ? issuedAt.getTime() : 0,
+        JwtUtils.TYPE_REFRESH.equals(claims.get(JwtUtils.CLAIM_TYPE)));
+  }
+
+  /**
+   * Returns null for tokens issued without the principal claims and for refresh tokens.
+   */
+  public UserDetailsImpl toUserDetails() {
+    if (id == null || refresh) {
+      return null;
+    }
+
+    return UserDetailsImpl
+            .builder()
+            .id(id)
+            .username(subject)
+            .firstName(firstName)
+            .lastName(lastName)
+            .admin(admin)
+            .build();
+  }
+}
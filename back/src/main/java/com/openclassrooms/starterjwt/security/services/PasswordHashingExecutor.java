@@ -0,0 +1,133 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Runs password hashing and verification on a small dedicated pool with a bounded queue, so that a burst
+ * of logins cannot take every request thread. When the pool and its queue are full the work is refused
+ * straight away with a {@link RejectedExecutionException}; callers answer 503 and let the client retry.
+ *
+ * The calling request thread blocks until the hash is done, on purpose: the pool bounds the CPU spent on
+ * hashing, and its size plus the queue size bound the request threads that can be waiting on it, each
+ * for at most oc.app.passwordHashingTimeoutMs. Handing the result back asynchronously would free those
+ * threads too, but the login runs the authentication manager and its rehash transaction, which would
+ * then leave the request thread, for a gain limited to those few waiting threads.
+ */
+@Component
+public class PasswordHashingExecutor implements MeterBinder, DisposableBean {
+  private final ThreadPoolExecutor executor;
+
+  private final long timeoutMs;
+
+  private final long retryAfterSeconds;
+
+  private final LongAdder hashCount = new LongAdder();
+
+  private final LongAdder hashNanos = new LongAdder();
+
+  public PasswordHashingExecutor(@Value("${oc.app.passwordHashingThreads:0}") int threads,
+                                 @Value("${oc.app.passwordHashingQueueSize:64}") int queueSize,
+                                 @Value("${oc.app.passwordHashingTimeoutMs:10000}") long timeoutMs,
+                                 @Value("${oc.app.passwordHashingRetryAfterSeconds:1}") long retryAfterSeconds) {
+    int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueSize), new PasswordHashingThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
+    this.timeoutMs = timeoutMs;
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  /**
+   * Runs the task on the hashing pool and waits for its result on the calling thread.
+   * Runtime exceptions of the task, such as a failed authentication, are rethrown unchanged.
+   *
+   * @throws RejectedExecutionException when the pool is saturated or the task did not finish in time
+   */
+  public <T> T execute(Callable<T> task) {
+    Future<T> future = executor.submit(() -> {
+      long start = System.nanoTime();
+      try {
+        return task.call();
+      } finally {
+        hashNanos.add(System.nanoTime() - start);
+        hashCount.increment();
+      }
+    });
+
+    try {
+      return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException(cause);
+    } catch (TimeoutException e) {
+      future.cancel(true);
+      throw new RejectedExecutionException("Password hashing timed out after " + timeoutMs + " ms");
+    } catch (InterruptedException e) {
+      future.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new RejectedExecutionException("Interrupted while waiting for password hashing");
+    }
+  }
+
+  /** Seconds a refused client is asked to wait before retrying. */
+  public long getRetryAfterSeconds() {
+    return retryAfterSeconds;
+  }
+
+  public int getQueueDepth() {
+    return executor.getQueue().size();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("auth.password.hashing.queue", executor, e -> e.getQueue().size())
+        .description("Password hashing tasks waiting for a worker")
+        .register(registry);
+    Gauge.builder("auth.password.hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+        .description("Password hashing tasks being executed")
+        .register(registry);
+    FunctionTimer.builder("auth.password.hashing", this, e -> e.hashCount.sum(), e -> e.hashNanos.sum(), TimeUnit.NANOSECONDS)
+        .description("Time spent hashing or verifying passwords")
+        .register(registry);
+  }
+
+  @Override
+  public void destroy() {
+    executor.shutdownNow();
+  }
+
+  private static class PasswordHashingThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "password-hashing-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.openclassrooms.starterjwt.events.PasswordRehashedEvent;
+import com.openclassrooms.starterjwt.events.UserChangedEvent;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Size- and time-bounded cache of the principals loaded by {@link UserDetailsServiceImpl}, keyed by email.
+ * Entries are dropped as soon as a {@link UserChangedEvent} is committed, so a deleted user loses access right away,
+ * and when a {@link PasswordRehashedEvent} is, so no stale hash is upgraded a second time.
+ */
+@Component
+public class UserDetailsCache implements MeterBinder {
+  private final Cache<String, UserDetailsImpl> cache;
+
+  public UserDetailsCache(@Value("${oc.app.userDetailsCacheSize:10000}") long maximumSize,
+                          @Value("${oc.app.userDetailsCacheTtlMs:600000}") long ttlMs) {
+    this.cache = Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+        .recordStats()
+        .build();
+  }
+
+  public UserDetailsImpl get(String email, Function<String, UserDetailsImpl> loader) {
+    return cache.get(email, loader);
+  }
+
+  public void evict(String email) {
+    cache.invalidate(email);
+  }
+
+  public void evictUser(Long userId) {
+    cache.asMap().values().removeIf(userDetails -> userId.equals(userDetails.getId()));
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onUserChanged(UserChangedEvent event) {
+    if (event.getEmail() != null) {
+      evict(event.getEmail());
+    }
+    if (event.getUserId() != null) {
+      evictUser(event.getUserId());
+    }
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onPasswordRehashed(PasswordRehashedEvent event) {
+    if (event.getEmail() != null) {
+      evict(event.getEmail());
+    }
+    if (event.getUserId() != null) {
+      evictUser(event.getUserId());
+    }
+  }
+
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    CaffeineCacheMetrics.monitor(registry, cache, "userDetails");
+  }
+}
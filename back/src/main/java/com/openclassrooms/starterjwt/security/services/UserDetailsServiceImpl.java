@@ -1,37 +1,88 @@
 package com.openclassrooms.starterjwt.security.services;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.openclassrooms.starterjwt.events.PasswordRehashedEvent;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 
 
 @Service
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
   UserRepository userRepository;
 
-  UserDetailsServiceImpl(UserRepository userRepository) {
+  private final ApplicationEventPublisher eventPublisher;
+
+  @Autowired(required = false)
+  private UserDetailsCache userDetailsCache;
+
+  UserDetailsServiceImpl(UserRepository userRepository, ApplicationEventPublisher eventPublisher) {
     this.userRepository = userRepository;
+    this.eventPublisher = eventPublisher;
   }
 
+  /**
+   * Not transactional on purpose: a cache hit must not borrow a connection from the pool.
+   */
   @Override
-  @Transactional
   public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+    if (userDetailsCache == null) {
+      return load(username);
+    }
+    return userDetailsCache.get(username, this::load);
+  }
+
+  /**
+   * Reads the user from USERS whatever the cache holds, for the requests that must not act on a
+   * deleted or demoted account.
+   */
+  public UserDetails loadFreshUserByUsername(String username) throws UsernameNotFoundException {
+    return load(username);
+  }
+
+  /**
+   * Called by the authentication provider after a successful login when the stored hash uses an
+   * older cost or algorithm than the current encoder. The cached copies, here and on the other
+   * nodes, are dropped once the new hash is committed; the tokens of the user are kept, the
+   * password did not change.
+   */
+  @Override
+  @Transactional
+  public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+    User user = userRepository.findByEmail(userDetails.getUsername())
+        .orElseThrow(() -> new UsernameNotFoundException("User Not Found with email: " + userDetails.getUsername()));
+
+    user.setPassword(newPassword);
+    userRepository.save(user);
+    eventPublisher.publishEvent(new PasswordRehashedEvent(user.getId(), user.getEmail()));
+
+    return toUserDetails(user);
+  }
+
+  private UserDetailsImpl load(String username) {
     User user = userRepository.findByEmail(username)
         .orElseThrow(() -> new UsernameNotFoundException("User Not Found with email: " + username));
 
+    return toUserDetails(user);
+  }
+
+  private static UserDetailsImpl toUserDetails(User user) {
     return UserDetailsImpl
             .builder()
             .id(user.getId())
             .username(user.getEmail())
             .lastName(user.getLastName())
             .firstName(user.getFirstName())
+            .admin(user.isAdmin())
             .password(user.getPassword())
             .build();
   }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,298 @@
+package com.openclassrooms.starterjwt.services;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.openclassrooms.starterjwt.events.PasswordRehashedEvent;
+import com.openclassrooms.starterjwt.events.SessionChangedEvent;
+import com.openclassrooms.starterjwt.events.UserChangedEvent;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Keeps the in-process caches of several nodes coherent through the CACHE_CHANGE_LOG table,
+ * enabled with oc.app.cacheCoherenceEnabled=true.
+ *
+ * Each {@link SessionChangedEvent}, {@link UserChangedEvent} and {@link PasswordRehashedEvent} published
+ * inside a transaction adds one row per changed key in that same transaction, so a rolled back write
+ * leaves nothing behind.
+ * Events published outside a transaction are not logged: that is how the changes of the other nodes
+ * are replayed here, and how a new account is announced, which no cache can hold yet.
+ *
+ * Every node reads the rows added since its last poll, every oc.app.cacheCoherenceMaxStalenessMs,
+ * and publishes the changes of the other nodes as local events, so the caches drop the same keys as
+ * on the node that made the write. Ids are taken before the commit, so a row can become visible
+ * after a higher one: the missing ids are looked up again at each poll until they show up or are
+ * older than {@link #GAP_TIMEOUT_MS}, which a rolled back insert never stops being.
+ */
+@Log4j2
+@Component
+@ConditionalOnProperty(name = "oc.app.cacheCoherenceEnabled", havingValue = "true")
+public class CacheChangeLog implements SmartInitializingSingleton, MeterBinder, DisposableBean {
+  static final String SESSION = "SESSION";
+
+  static final String USER = "USER";
+
+  static final String PASSWORD = "PASSWORD";
+
+  private static final String INSERT_CHANGE =
+      "INSERT INTO CACHE_CHANGE_LOG (entity, entity_id, node_id, changed_at) VALUES (?, ?, ?, ?)";
+
+  private static final String SELECT_CHANGES = "SELECT id, entity, entity_id, node_id FROM CACHE_CHANGE_LOG";
+
+  private static final int POLL_LIMIT = 1000;
+
+  private static final int MAX_GAPS = 100;
+
+  static final long GAP_TIMEOUT_MS = 60000;
+
+  private static final long PRUNE_INTERVAL_MS = 60000;
+
+  private final JdbcTemplate jdbcTemplate;
+
+  private final ApplicationEventPublisher eventPublisher;
+
+  private final long maxStalenessMs;
+
+  private final long retentionMs;
+
+  private final String nodeId = UUID.randomUUID().toString();
+
+  private final ScheduledExecutorService poller;
+
+  /** Highest id read so far, null until the first poll. */
+  private Long highestId;
+
+  /** Ids below {@link #highestId} not read yet, to the time they were found missing. */
+  private final Map<Long, Long> missingIds = new LinkedHashMap<>();
+
+  private long nextPruneMs;
+
+  private volatile long lastPollMs = System.currentTimeMillis();
+
+  private final LongAdder appliedChanges = new LongAdder();
+
+  private final LongAdder skippedGaps = new LongAdder();
+
+  private final LongAdder failedPolls = new LongAdder();
+
+  public CacheChangeLog(JdbcTemplate jdbcTemplate,
+                        ApplicationEventPublisher eventPublisher,
+                        @Value("${oc.app.cacheCoherenceMaxStalenessMs:1000}") long maxStalenessMs,
+                        @Value("${oc.app.cacheChangeRetentionMs:3600000}") long retentionMs) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.eventPublisher = eventPublisher;
+    this.maxStalenessMs = maxStalenessMs;
+    this.retentionMs = retentionMs;
+    this.poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "cache-change-poller");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Starts polling once every bean, the schema migration included, is ready.
+   */
+  @Override
+  public void afterSingletonsInstantiated() {
+    poller.scheduleWithFixedDelay(this::pollQuietly, maxStalenessMs, maxStalenessMs, TimeUnit.MILLISECONDS);
+  }
+
+  @EventListener
+  public void onSessionChanged(SessionChangedEvent event) {
+    record(SESSION, event.getSessionIds());
+  }
+
+  @EventListener
+  public void onUserChanged(UserChangedEvent event) {
+    if (event.getUserId() != null) {
+      record(USER, Collections.singletonList(event.getUserId()));
+    }
+  }
+
+  @EventListener
+  public void onPasswordRehashed(PasswordRehashedEvent event) {
+    if (event.getUserId() != null) {
+      record(PASSWORD, Collections.singletonList(event.getUserId()));
+    }
+  }
+
+  private void record(String entity, Iterable<Long> ids) {
+    if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+      return;
+    }
+
+    Timestamp now = new Timestamp(System.currentTimeMillis());
+    List<Object[]> rows = new ArrayList<>();
+    for (Long id : ids) {
+      rows.add(new Object[]{entity, id, nodeId, now});
+    }
+    jdbcTemplate.batchUpdate(INSERT_CHANGE, rows);
+  }
+
+  private void pollQuietly() {
+    try {
+      poll();
+    } catch (RuntimeException e) {
+      // The next poll reads from the same position
+      failedPolls.increment();
+      log.warn("Could not read the cache change log", e);
+    }
+  }
+
+  /**
+   * Reads the rows added since the previous call and replays the changes made by other nodes.
+   */
+  synchronized void poll() {
+    long now = System.currentTimeMillis();
+    if (highestId == null) {
+      // The caches start empty, the changes made before do not matter
+      highestId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM CACHE_CHANGE_LOG", Long.class);
+      lastPollMs = now;
+      return;
+    }
+
+    List<Change> changes = new ArrayList<>();
+    if (!missingIds.isEmpty()) {
+      String ids = missingIds.keySet().stream().map(String::valueOf).collect(Collectors.joining(", "));
+      changes.addAll(jdbcTemplate.query(SELECT_CHANGES + " WHERE id IN (" + ids + ")", Change::read));
+    }
+    changes.addAll(jdbcTemplate.query(SELECT_CHANGES + " WHERE id > ? ORDER BY id LIMIT " + POLL_LIMIT,
+        Change::read, highestId));
+
+    for (Change change : changes) {
+      if (missingIds.remove(change.id) == null) {
+        // Only the last ids of a large jump are worth waiting for
+        long firstMissing = Math.max(highestId + 1, change.id - MAX_GAPS);
+        skippedGaps.add(firstMissing - highestId - 1);
+        for (long id = firstMissing; id < change.id; id++) {
+          missingIds.put(id, now);
+        }
+        highestId = change.id;
+      }
+    }
+    forgetOldGaps(now);
+    replay(changes);
+
+    if (now >= nextPruneMs) {
+      nextPruneMs = now + PRUNE_INTERVAL_MS;
+      jdbcTemplate.update("DELETE FROM CACHE_CHANGE_LOG WHERE changed_at < ?", new Timestamp(now - retentionMs));
+    }
+    lastPollMs = now;
+  }
+
+  private void forgetOldGaps(long now) {
+    Iterator<Map.Entry<Long, Long>> gaps = missingIds.entrySet().iterator();
+    while (gaps.hasNext()) {
+      Map.Entry<Long, Long> gap = gaps.next();
+      if (missingIds.size() > MAX_GAPS || now - gap.getValue() > GAP_TIMEOUT_MS) {
+        gaps.remove();
+        skippedGaps.increment();
+      }
+    }
+  }
+
+  private void replay(List<Change> changes) {
+    Set<Long> sessionIds = new LinkedHashSet<>();
+    Set<Long> userIds = new LinkedHashSet<>();
+    Set<Long> rehashedUserIds = new LinkedHashSet<>();
+    for (Change change : changes) {
+      if (nodeId.equals(change.nodeId)) {
+        continue;
+      }
+      if (SESSION.equals(change.entity)) {
+        sessionIds.add(change.entityId);
+      } else if (USER.equals(change.entity)) {
+        userIds.add(change.entityId);
+      } else if (PASSWORD.equals(change.entity)) {
+        rehashedUserIds.add(change.entityId);
+      }
+      appliedChanges.increment();
+    }
+
+    if (!sessionIds.isEmpty()) {
+      eventPublisher.publishEvent(new SessionChangedEvent(sessionIds));
+    }
+    for (Long userId : userIds) {
+      eventPublisher.publishEvent(new UserChangedEvent(userId, null));
+    }
+    rehashedUserIds.removeAll(userIds);
+    for (Long userId : rehashedUserIds) {
+      eventPublisher.publishEvent(new PasswordRehashedEvent(userId, null));
+    }
+  }
+
+  String getNodeId() {
+    return nodeId;
+  }
+
+  @Override
+  public void destroy() {
+    poller.shutdownNow();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder("cache.coherence.changes", appliedChanges, LongAdder::sum)
+        .description("Changes made by other nodes and replayed on this one")
+        .register(registry);
+    FunctionCounter.builder("cache.coherence.skipped", skippedGaps, LongAdder::sum)
+        .description("Change ids that never showed up, usually rolled back inserts")
+        .register(registry);
+    FunctionCounter.builder("cache.coherence.failures", failedPolls, LongAdder::sum)
+        .description("Polls of the change log that failed")
+        .register(registry);
+    Gauge.builder("cache.coherence.lag", this, changeLog -> System.currentTimeMillis() - changeLog.lastPollMs)
+        .description("Milliseconds since the last successful poll of the change log")
+        .baseUnit("milliseconds")
+        .register(registry);
+  }
+
+  private static final class Change {
+    private final long id;
+    private final String entity;
+    private final long entityId;
+    private final String nodeId;
+
+    private Change(long id, String entity, long entityId, String nodeId) {
+      this.id = id;
+      this.entity = entity;
+      this.entityId = entityId;
+      this.nodeId = nodeId;
+    }
+
+    private static Change read(ResultSet row, int rowNum) throws SQLException {
+      return new Change(row.getLong("id"), row.getString("entity"), row.getLong("entity_id"), row.getString("node_id"));
+    }
+  }
+}
@@ -0,0 +1,231 @@
+package com.openclassrooms.starterjwt.services;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Response bodies of the hot read endpoints, encoded once to UTF-8 JSON with the application's
+ * {@link ObjectMapper} and written as bytes, enabled with oc.app.jsonBodyCacheEnabled=true.
+ *
+ * Each body is kept with the version of the data it was encoded from, and encoded again when the
+ * caller passes another version: invalidation follows the caches that hand out those versions,
+ * {@link SessionDtoCache} and the teacher snapshot of {@link TeacherService}. A null version means
+ * the data is not cached and the body is encoded on every call.
+ *
+ * The same version makes the strong ETag of the response, so a matching If-None-Match is answered
+ * with 304 before anything is loaded or encoded. Versions start over with each process: the ETag
+ * also carries the start time of this one, and a client seeing another instance just gets a full
+ * response once.
+ */
+@Component
+@ConditionalOnProperty(name = "oc.app.jsonBodyCacheEnabled", havingValue = "true")
+public class JsonBodyCache implements MeterBinder {
+  private final ObjectMapper objectMapper;
+
+  private final Cache<String, Entry> bodies;
+
+  private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+  public JsonBodyCache(ObjectMapper objectMapper,
+                       @Value("${oc.app.jsonBodyCacheSize:1000}") long maximumSize) {
+    this.objectMapper = objectMapper;
+    this.bodies = Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .recordStats()
+        .build();
+  }
+
+  /**
+   * @param version the version of the data, read before calling the loader
+   * @param loader  the value to encode, or null when there is none
+   * @return the encoded body, or null when the loader returned null
+   */
+  public JsonBody get(String key, Long version, Supplier<?> loader) {
+    if (version != null) {
+      Entry entry = bodies.getIfPresent(key);
+      if (entry != null && entry.version == version) {
+        return entry.body;
+      }
+    }
+
+    Object value = loader.get();
+    if (value == null) {
+      return null;
+    }
+
+    JsonBody body = encode(value);
+    // A concurrent call may store another version: the next call with this one encodes it again
+    if (version != null) {
+      bodies.put(key, new Entry(version, body));
+    }
+    return body;
+  }
+
+  /**
+   * The response to a GET of the body stored under key: 304 when If-None-Match already holds the
+   * version, 404 when the loader returns null, the encoded body otherwise.
+   *
+   * @param acceptEncoding the Accept-Encoding header of the request, or null
+   * @param ifNoneMatch    the If-None-Match header of the request, or null
+   */
+  public ResponseEntity<byte[]> respond(String key, Long version, Supplier<?> loader,
+                                        String acceptEncoding, String ifNoneMatch) {
+    String etag = version != null ? epoch + "-" + version : null;
+    if (etag != null && ifNoneMatch != null) {
+      String match = match(ifNoneMatch, etag, acceptsGzip(acceptEncoding));
+      if (match != null) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(match).build();
+      }
+    }
+
+    JsonBody body = get(key, version, loader);
+    if (body == null) {
+      return ResponseEntity.notFound().build();
+    }
+    return body.toResponse(acceptEncoding, etag);
+  }
+
+  /**
+   * @return the tag of ifNoneMatch naming the current version in an encoding the client accepts, or null
+   */
+  private static String match(String ifNoneMatch, String etag, boolean gzip) {
+    for (String tag : ifNoneMatch.split(",")) {
+      tag = tag.trim();
+      if (tag.equals("*")) {
+        return quote(etag);
+      }
+      // If-None-Match uses the weak comparison
+      if (tag.startsWith("W/")) {
+        tag = tag.substring(2);
+      }
+      if (tag.equals(quote(etag)) || (gzip && tag.equals(quote(etag + JsonBody.GZIP_SUFFIX)))) {
+        return tag;
+      }
+    }
+    return null;
+  }
+
+  private static String quote(String etag) {
+    return "\"" + etag + "\"";
+  }
+
+  private static boolean acceptsGzip(String acceptEncoding) {
+    return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+  }
+
+  public JsonBody encode(Object value) {
+    try {
+      return new JsonBody(objectMapper.writeValueAsBytes(value));
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Could not encode " + value.getClass().getSimpleName(), e);
+    }
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    CaffeineCacheMetrics.monitor(registry, bodies, "jsonBody");
+  }
+
+  private static final class Entry {
+    private final long version;
+
+    private final JsonBody body;
+
+    private Entry(long version, JsonBody body) {
+      this.version = version;
+      this.body = body;
+    }
+  }
+
+  /**
+   * UTF-8 JSON bytes, with a gzip variant compressed on first use for bodies large enough to gain from it.
+   */
+  public static final class JsonBody {
+    static final int MIN_GZIP_SIZE = 1024;
+
+    /** Appended to the ETag of the gzip variant, which is another representation. */
+    static final String GZIP_SUFFIX = "-gzip";
+
+    private final byte[] json;
+
+    private volatile byte[] gzip;
+
+    JsonBody(byte[] json) {
+      this.json = json;
+    }
+
+    public byte[] getJson() {
+      return json;
+    }
+
+    public byte[] getGzip() {
+      byte[] compressed = gzip;
+      if (compressed == null) {
+        // Racing threads compress the same bytes, either result is fine
+        compressed = compress(json);
+        gzip = compressed;
+      }
+      return compressed;
+    }
+
+    /**
+     * @param acceptEncoding the Accept-Encoding header of the request, or null
+     */
+    public ResponseEntity<byte[]> toResponse(String acceptEncoding) {
+      return toResponse(acceptEncoding, null);
+    }
+
+    /**
+     * @param acceptEncoding the Accept-Encoding header of the request, or null
+     * @param etag           the unquoted ETag of the identity variant, or null for none
+     */
+    public ResponseEntity<byte[]> toResponse(String acceptEncoding, String etag) {
+      ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON);
+      if (json.length < MIN_GZIP_SIZE) {
+        return withETag(response, etag).body(json);
+      }
+
+      response.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+      if (acceptsGzip(acceptEncoding)) {
+        return withETag(response, etag != null ? etag + GZIP_SUFFIX : null)
+            .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+            .body(getGzip());
+      }
+      return withETag(response, etag).body(json);
+    }
+
+    private static ResponseEntity.BodyBuilder withETag(ResponseEntity.BodyBuilder response, String etag) {
+      return etag != null ? response.eTag(etag) : response;
+    }
+
+    private static byte[] compress(byte[] bytes) {
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4);
+      try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+        gzip.write(bytes);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return compressed.toByteArray();
+    }
+  }
+}
@@ -0,0 +1,309 @@
+package com.openclassrooms.starterjwt.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Burst mode for joins, enabled with oc.app.participationBurstMode=true.
+ *
+ * Each session gets its own queue and at most one writer at a time. The writer takes the requests
+ * queued so far, up to the batch size, resolves them with {@link SessionService#participateBatch}
+ * and answers every caller with its own outcome. Requests arriving during a commit form the next
+ * batch, so a booking rush becomes a few sequential commits on the session row instead of hundreds
+ * of transactions waiting for its lock.
+ *
+ * Writers come from a fixed pool of oc.app.participationWriterThreads threads, each holding a
+ * connection while it commits, so the pool must stay well below the connection pool. A lane is
+ * dropped once its writer finds its queue empty, so sessions no longer booked keep nothing.
+ *
+ * A request falls back to {@link SessionService#participate} when the queue of its session is full,
+ * when every writer is busy with other sessions, when no writer picked it up before the timeout, or
+ * when its batch failed.
+ */
+@Component
+@ConditionalOnProperty(name = "oc.app.participationBurstMode", havingValue = "true")
+public class ParticipationBatcher implements MeterBinder, DisposableBean {
+  private final SessionService sessionService;
+
+  private final int batchSize;
+
+  private final long timeoutMs;
+
+  private final int queueCapacity;
+
+  private final ThreadPoolExecutor writers;
+
+  private final Map<Long, Lane> lanes = new ConcurrentHashMap<>();
+
+  private final LongAdder batches = new LongAdder();
+
+  private final LongAdder batchedRequests = new LongAdder();
+
+  private final LongAdder fallbacks = new LongAdder();
+
+  public ParticipationBatcher(SessionService sessionService,
+                              @Value("${oc.app.participationBatchSize:100}") int batchSize,
+                              @Value("${oc.app.participationTimeoutMs:2000}") long timeoutMs,
+                              @Value("${oc.app.participationQueueCapacity:5000}") int queueCapacity,
+                              @Value("${oc.app.participationWriterThreads:4}") int writerThreads) {
+    this.sessionService = sessionService;
+    this.batchSize = batchSize;
+    this.timeoutMs = timeoutMs;
+    this.queueCapacity = queueCapacity;
+    // No backlog: a lane either gets a writer right away or its requests take the direct path
+    this.writers = new ThreadPoolExecutor(writerThreads, writerThreads, 60, TimeUnit.SECONDS,
+        new SynchronousQueue<>(), new WriterThreadFactory());
+    this.writers.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Same contract as {@link SessionService#participate}: returns once the join is committed and
+   * throws the same exceptions otherwise.
+   */
+  public void participate(Long id, Long userId) {
+    Request request = new Request(userId);
+    // Offers and removals of a lane are serialized by the map, so a request never lands in a dropped lane
+    lanes.compute(id, (key, lane) -> {
+      Lane target = lane != null ? lane : new Lane(key);
+      request.queued = target.offer(request);
+      return target.isIdle() ? null : target;
+    });
+    if (!request.queued) {
+      fallback(id, userId);
+      return;
+    }
+
+    ParticipationOutcome outcome;
+    try {
+      outcome = request.outcome.get(timeoutMs, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      if (request.cancel()) {
+        fallback(id, userId);
+        return;
+      }
+      // Already taken by a writer: the answer comes with its commit
+      outcome = request.outcome.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      if (request.cancel()) {
+        throw new IllegalStateException("Interrupted while waiting for the join to be processed", e);
+      }
+      outcome = request.outcome.join();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RejectedExecutionException) {
+        fallback(id, userId);
+        return;
+      }
+      throw rethrow(e.getCause());
+    }
+
+    outcome.raise();
+  }
+
+  int laneCount() {
+    return lanes.size();
+  }
+
+  int queueDepth(Long id) {
+    Lane lane = lanes.get(id);
+    return lane != null ? lane.size.get() : 0;
+  }
+
+  private void fallback(Long id, Long userId) {
+    fallbacks.increment();
+    sessionService.participate(id, userId);
+  }
+
+  private void write(Long sessionId, List<Request> batch) {
+    List<ParticipationOutcome> outcomes;
+    try {
+      outcomes = sessionService.participateBatch(sessionId, batch.stream().map(request -> request.userId).collect(Collectors.toList()));
+    } catch (RuntimeException e) {
+      // A direct join committed one of these rows meanwhile, or the batch hit another error:
+      // resolve the requests one by one so that each gets its own answer
+      for (Request request : batch) {
+        try {
+          sessionService.participate(sessionId, request.userId);
+          request.outcome.complete(ParticipationOutcome.JOINED);
+        } catch (RuntimeException failure) {
+          request.outcome.completeExceptionally(failure);
+        }
+      }
+      return;
+    }
+
+    batches.increment();
+    batchedRequests.add(batch.size());
+    for (int i = 0; i < batch.size(); i++) {
+      batch.get(i).outcome.complete(outcomes.get(i));
+    }
+  }
+
+  private static RuntimeException rethrow(Throwable cause) {
+    if (cause instanceof RuntimeException) {
+      return (RuntimeException) cause;
+    }
+    if (cause instanceof Error) {
+      throw (Error) cause;
+    }
+    return new IllegalStateException(cause);
+  }
+
+  @Override
+  public void destroy() {
+    writers.shutdownNow();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder("session.participation.batches", batches, LongAdder::sum)
+        .description("Batches of joins committed by the burst mode")
+        .register(registry);
+    FunctionCounter.builder("session.participation.batched", batchedRequests, LongAdder::sum)
+        .description("Joins resolved in a batch")
+        .register(registry);
+    FunctionCounter.builder("session.participation.fallbacks", fallbacks, LongAdder::sum)
+        .description("Joins sent to the direct path because the queue was full, no writer was free or the wait timed out")
+        .register(registry);
+  }
+
+  private static final class Request {
+    private final Long userId;
+
+    private final CompletableFuture<ParticipationOutcome> outcome = new CompletableFuture<>();
+
+    /** Set once, either by the writer that takes the request or by the caller giving up on it. */
+    private final AtomicBoolean claimed = new AtomicBoolean();
+
+    /** Set by the calling thread, under the lock of the lane entry. */
+    private boolean queued;
+
+    private Request(Long userId) {
+      this.userId = userId;
+    }
+
+    boolean cancel() {
+      return claimed.compareAndSet(false, true);
+    }
+  }
+
+  /**
+   * Queue of one session. The scheduled flag guarantees a single writer: it is only cleared once
+   * the queue was seen empty, and whoever sets it again submits the next run.
+   */
+  private final class Lane implements Runnable {
+    private final Long sessionId;
+
+    private final Queue<Request> queue = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private Lane(Long sessionId) {
+      this.sessionId = sessionId;
+    }
+
+    boolean offer(Request request) {
+      if (size.incrementAndGet() > queueCapacity) {
+        size.decrementAndGet();
+        return false;
+      }
+
+      queue.add(request);
+      schedule();
+      return true;
+    }
+
+    boolean isIdle() {
+      return !scheduled.get() && queue.isEmpty();
+    }
+
+    private void schedule() {
+      if (!scheduled.compareAndSet(false, true)) {
+        return;
+      }
+
+      try {
+        writers.execute(this);
+      } catch (RejectedExecutionException e) {
+        // Every writer is busy: send the waiting callers to the direct path now rather than at their timeout
+        scheduled.set(false);
+        Request request;
+        while ((request = queue.poll()) != null) {
+          size.decrementAndGet();
+          if (request.cancel()) {
+            request.outcome.completeExceptionally(e);
+          }
+        }
+      }
+    }
+
+    @Override
+    public void run() {
+      try {
+        List<Request> batch;
+        while (!(batch = poll()).isEmpty()) {
+          write(sessionId, batch);
+        }
+      } finally {
+        scheduled.set(false);
+      }
+
+      // A request may have been queued after the last poll but before the flag was cleared
+      if (!queue.isEmpty()) {
+        schedule();
+      }
+      lanes.computeIfPresent(sessionId, (key, lane) -> lane == this && isIdle() ? null : lane);
+    }
+
+    private List<Request> poll() {
+      List<Request> batch = new ArrayList<>();
+      Request request;
+      while (batch.size() < batchSize && (request = queue.poll()) != null) {
+        size.decrementAndGet();
+        // Skip the requests whose caller timed out and went to the direct path
+        if (request.cancel()) {
+          batch.add(request);
+        }
+      }
+      return batch;
+    }
+  }
+
+  private static class WriterThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "participation-writer-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -0,0 +1,31 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.ConflictException;
+import com.openclassrooms.starterjwt.exception.NotFoundException;
+
+/**
+ * Result of one join resolved in a batch, mirroring the exceptions of {@link SessionService#participate}.
+ */
+public enum ParticipationOutcome {
+    JOINED,
+    ALREADY_PARTICIPATING,
+    FULL,
+    NOT_FOUND;
+
+    /**
+     * Throws the exception the direct path would have thrown for this outcome.
+     */
+    public void raise() {
+        switch (this) {
+            case ALREADY_PARTICIPATING:
+                throw new BadRequestException();
+            case FULL:
+                throw new ConflictException();
+            case NOT_FOUND:
+                throw new NotFoundException();
+            default:
+                break;
+        }
+    }
+}
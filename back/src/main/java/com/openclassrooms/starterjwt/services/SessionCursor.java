@@ -0,0 +1,48 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Position of the last session of a page, in the (date, id) order of the listing. Clients get it as
+ * an opaque string and send it back unchanged to read the next page.
+ */
+final class SessionCursor {
+    private final Date date;
+    private final Long id;
+
+    SessionCursor(Date date, Long id) {
+        this.date = date;
+        this.id = id;
+    }
+
+    Date getDate() {
+        return date;
+    }
+
+    Long getId() {
+        return id;
+    }
+
+    String encode() {
+        String position = date.getTime() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws BadRequestException when the cursor was not produced by {@link #encode()}
+     */
+    static SessionCursor decode(String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = position.indexOf(':');
+            return new SessionCursor(new Date(Long.parseLong(position.substring(0, separator))),
+                    Long.valueOf(position.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new BadRequestException();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.openclassrooms.starterjwt.services;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.events.SessionChangedEvent;
+import com.openclassrooms.starterjwt.events.UserChangedEvent;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Size- and time-bounded cache of the sessions read by {@link SessionService#getDtoById} and
+ * {@link SessionService#findAllDto}, enabled with oc.app.sessionCacheEnabled=true.
+ *
+ * A committed {@link SessionChangedEvent} drops the changed sessions and the full list. Eviction
+ * waits for a load of the same entry in progress, so a value read before the commit never outlives
+ * it. Writes made around {@link SessionService}, straight through the repositories, are only seen
+ * once the entries expire.
+ *
+ * Events only reach the caches of this process: with several nodes, {@link CacheChangeLog} must be
+ * enabled too, which oc.app.cacheCoherenceEnabled does by default whenever this cache is.
+ *
+ * Cached sessions are shared between callers and must not be modified. {@link #version()} changes
+ * after every eviction, so copies derived from them, like encoded responses, can be checked against it.
+ */
+@Component
+@ConditionalOnProperty(name = "oc.app.sessionCacheEnabled", havingValue = "true")
+public class SessionDtoCache implements MeterBinder {
+  private static final String CATALOG_KEY = "all";
+
+  private final Cache<Long, SessionDto> sessions;
+
+  private final Cache<String, List<SessionDto>> catalog;
+
+  private final AtomicLong version = new AtomicLong();
+
+  public SessionDtoCache(@Value("${oc.app.sessionCacheSize:10000}") long maximumSize,
+                         @Value("${oc.app.sessionCacheTtlMs:300000}") long ttlMs) {
+    this.sessions = Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+        .recordStats()
+        .build();
+    this.catalog = Caffeine.newBuilder()
+        .maximumSize(1)
+        .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+        .recordStats()
+        .build();
+  }
+
+  /**
+   * @return the cached session, or the one returned by the loader; a null session is not cached
+   */
+  public SessionDto get(Long id, Function<Long, SessionDto> loader) {
+    return sessions.get(id, loader);
+  }
+
+  public List<SessionDto> getAll(Supplier<List<SessionDto>> loader) {
+    return catalog.get(CATALOG_KEY, key -> Collections.unmodifiableList(loader.get()));
+  }
+
+  public void evict(Iterable<Long> ids) {
+    sessions.invalidateAll(ids);
+    catalog.invalidate(CATALOG_KEY);
+    version.incrementAndGet();
+  }
+
+  public void clear() {
+    sessions.invalidateAll();
+    catalog.invalidateAll();
+    version.incrementAndGet();
+  }
+
+  /**
+   * Read it before the sessions: it is incremented once their eviction is done.
+   */
+  public long version() {
+    return version.get();
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onSessionChanged(SessionChangedEvent event) {
+    evict(event.getSessionIds());
+  }
+
+  /**
+   * A deleted user leaves the sessions they joined.
+   */
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onUserChanged(UserChangedEvent event) {
+    Long userId = event.getUserId();
+    if (userId == null) {
+      return;
+    }
+
+    sessions.asMap().values().removeIf(session -> session.getUsers() != null && session.getUsers().contains(userId));
+    catalog.asMap().values().removeIf(all -> all.stream()
+        .anyMatch(session -> session.getUsers() != null && session.getUsers().contains(userId)));
+    version.incrementAndGet();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    CaffeineCacheMetrics.monitor(registry, sessions, "sessionById");
+    CaffeineCacheMetrics.monitor(registry, catalog, "sessionCatalog");
+  }
+}
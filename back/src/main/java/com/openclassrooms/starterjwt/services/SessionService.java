@@ -1,33 +1,97 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.events.SessionChangedEvent;
 import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.ConflictException;
 import com.openclassrooms.starterjwt.exception.NotFoundException;
+import com.openclassrooms.starterjwt.mapper.SessionMapper;
 import com.openclassrooms.starterjwt.models.Session;
-import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.models.WaitlistEntry;
+import com.openclassrooms.starterjwt.payload.response.SessionPage;
+import com.openclassrooms.starterjwt.repository.SessionParticipant;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.SessionSeats;
+import com.openclassrooms.starterjwt.repository.SessionSummary;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.repository.WaitlistRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 public class SessionService {
+    private static final String INSERT_PARTICIPANT = "INSERT INTO PARTICIPATE (session_id, user_id) VALUES (?, ?)";
+
+    static final int MAX_PAGE_SIZE = 100;
+
     private final SessionRepository sessionRepository;
 
     private final UserRepository userRepository;
 
-    public SessionService(SessionRepository sessionRepository, UserRepository userRepository) {
+    private final WaitlistRepository waitlistRepository;
+
+    private final SessionMapper sessionMapper;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    /** Runs the reads behind the cache, so a cache hit does not take a connection. */
+    private final TransactionTemplate readTransaction;
+
+    @Autowired(required = false)
+    private SessionDtoCache sessionDtoCache;
+
+    public SessionService(SessionRepository sessionRepository,
+                          UserRepository userRepository,
+                          WaitlistRepository waitlistRepository,
+                          SessionMapper sessionMapper,
+                          JdbcTemplate jdbcTemplate,
+                          ApplicationEventPublisher eventPublisher,
+                          PlatformTransactionManager transactionManager) {
         this.sessionRepository = sessionRepository;
         this.userRepository = userRepository;
+        this.waitlistRepository = waitlistRepository;
+        this.sessionMapper = sessionMapper;
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
     }
 
+    @Transactional
     public Session create(Session session) {
-        return this.sessionRepository.save(session);
+        Session created = this.sessionRepository.save(session);
+        this.sessionRepository.syncParticipantCount(created.getId());
+        changed(created.getId());
+        return created;
     }
 
+    @Transactional
     public void delete(Long id) {
         this.sessionRepository.deleteById(id);
+        changed(id);
     }
 
     public List<Session> findAll() {
@@ -38,41 +102,356 @@ public class SessionService {
         return this.sessionRepository.findById(id).orElse(null);
     }
 
+    /**
+     * Sessions as exposed by the API, read with two statements whatever the number of sessions
+     * and participants: the session rows with their teacher id, then the PARTICIPATE rows.
+     * Served from the {@link SessionDtoCache} when it is enabled.
+     */
+    public List<SessionDto> findAllDto() {
+        if (this.sessionDtoCache != null) {
+            return this.sessionDtoCache.getAll(() -> this.readTransaction.execute(status -> readAllDto()));
+        }
+        return this.readTransaction.execute(status -> readAllDto());
+    }
+
+    private List<SessionDto> readAllDto() {
+        Map<Long, List<Long>> participants = new HashMap<>();
+        for (SessionParticipant participant : this.sessionRepository.findAllParticipants()) {
+            participants.computeIfAbsent(participant.getSessionId(), sessionId -> new ArrayList<>()).add(participant.getUserId());
+        }
+
+        return this.sessionRepository.findAllSummaries().stream()
+                .map(summary -> this.sessionMapper.toDto(summary, participants.getOrDefault(summary.getId(), Collections.emptyList())))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * One page of sessions in (date, id) order, read like {@link #findAllDto()} with two statements.
+     * The page starts right after the cursor, so its cost does not depend on how deep it is.
+     *
+     * @param cursor    the cursor returned with the previous page, null for the first one
+     * @param from      first day of the sessions, inclusive, or null
+     * @param to        last day of the sessions, inclusive, or null
+     * @param teacherId teacher of the sessions, or null
+     * @param freeSeats only the sessions with a seat left
+     * @throws BadRequestException when the cursor is malformed
+     */
+    @Transactional(readOnly = true)
+    public SessionPage findPage(String cursor, int size, LocalDate from, LocalDate to, Long teacherId, boolean freeSeats) {
+        int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        SessionCursor after = cursor != null && !cursor.isEmpty() ? SessionCursor.decode(cursor) : null;
+
+        List<SessionSummary> summaries = this.sessionRepository.findSummaryPage(
+                startOfDay(from),
+                to != null ? startOfDay(to.plusDays(1)) : null,
+                teacherId,
+                freeSeats,
+                after != null ? after.getDate() : null,
+                after != null ? after.getId() : null,
+                PageRequest.of(0, pageSize + 1));
+        return toPage(summaries, pageSize);
+    }
+
+    /**
+     * Sessions booked by a user, read from PARTICIPATE by user_id: the upcoming ones in date order,
+     * or the past ones from the most recent. Each page costs two statements whose work depends on the
+     * bookings of the user only.
+     *
+     * @param cursor the cursor returned with the previous page, null for the first one
+     * @throws BadRequestException when the cursor is malformed
+     */
+    @Transactional(readOnly = true)
+    public SessionPage findSessionsOfUser(Long userId, boolean past, String cursor, int size) {
+        int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        SessionCursor position = cursor != null && !cursor.isEmpty()
+                ? SessionCursor.decode(cursor)
+                // Upcoming sessions start at the current time included, past ones end right before
+                : new SessionCursor(new Date(), 0L);
+
+        PageRequest limit = PageRequest.of(0, pageSize + 1);
+        List<SessionSummary> summaries = past
+                ? this.sessionRepository.findSummariesOfParticipantBefore(userId, position.getDate(), position.getId(), limit)
+                : this.sessionRepository.findSummariesOfParticipantAfter(userId, position.getDate(), position.getId(), limit);
+        return toPage(summaries, pageSize);
+    }
+
+    /**
+     * Builds a page from up to pageSize + 1 summaries, the extra one only telling that a next page
+     * exists, and reads the participants of the page with one statement.
+     */
+    private SessionPage toPage(List<SessionSummary> summaries, int pageSize) {
+        boolean hasNext = summaries.size() > pageSize;
+        if (hasNext) {
+            summaries = summaries.subList(0, pageSize);
+        }
+
+        Map<Long, List<Long>> participants = new HashMap<>();
+        if (!summaries.isEmpty()) {
+            List<Long> sessionIds = summaries.stream().map(SessionSummary::getId).collect(Collectors.toList());
+            for (SessionParticipant participant : this.sessionRepository.findParticipants(sessionIds)) {
+                participants.computeIfAbsent(participant.getSessionId(), sessionId -> new ArrayList<>()).add(participant.getUserId());
+            }
+        }
+
+        List<SessionDto> sessions = summaries.stream()
+                .map(summary -> this.sessionMapper.toDto(summary, participants.getOrDefault(summary.getId(), Collections.emptyList())))
+                .collect(Collectors.toList());
+        SessionSummary last = hasNext ? summaries.get(summaries.size() - 1) : null;
+        return new SessionPage(sessions, last != null ? new SessionCursor(last.getDate(), last.getId()).encode() : null);
+    }
+
+    private static Date startOfDay(LocalDate day) {
+        return day != null ? Date.from(day.atStartOfDay(ZoneId.systemDefault()).toInstant()) : null;
+    }
+
+    /**
+     * Version of what {@link #findAllDto()} and {@link #getDtoById} return, to be read before them,
+     * or null when the sessions are not cached and may change at any time.
+     */
+    public Long contentVersion() {
+        return this.sessionDtoCache != null ? this.sessionDtoCache.version() : null;
+    }
+
+    /**
+     * One session as exposed by the API, served from the {@link SessionDtoCache} when it is enabled.
+     */
+    public SessionDto getDtoById(Long id) {
+        if (this.sessionDtoCache != null) {
+            return this.sessionDtoCache.get(id, key -> this.readTransaction.execute(status -> readDtoById(key)));
+        }
+        return this.readTransaction.execute(status -> readDtoById(id));
+    }
+
+    private SessionDto readDtoById(Long id) {
+        return this.sessionRepository.findSummaryById(id)
+                .map(summary -> this.sessionMapper.toDto(summary, this.sessionRepository.findParticipants(id).stream()
+                        .map(SessionParticipant::getUserId)
+                        .collect(Collectors.toList())))
+                .orElse(null);
+    }
+
+    @Transactional
     public Session update(Long id, Session session) {
         session.setId(id);
-        return this.sessionRepository.save(session);
+        Session updated = this.sessionRepository.save(session);
+        this.sessionRepository.syncParticipantCount(id);
+
+        // The capacity may have been raised: hand the new seats to the waitlist
+        while (promoteFromWaitlist(id)) {
+            // one waiting user per free seat
+        }
+        changed(id);
+        return updated;
     }
 
+    /**
+     * Adds one PARTICIPATE row. Every statement is a lookup by key, so the cost does not depend on
+     * the number of participants. The seat is taken first: its UPDATE locks the session row before the
+     * insert, whose foreign key check would otherwise take a shared lock on that row that two concurrent
+     * joins could not both upgrade. The rollback gives the seat back when the user joined concurrently.
+     */
+    @Transactional
     public void participate(Long id, Long userId) {
-        Session session = this.sessionRepository.findById(id).orElse(null);
-        User user = this.userRepository.findById(userId).orElse(null);
-        if (session == null || user == null) {
+        if (!this.sessionRepository.existsById(id) || !this.userRepository.existsById(userId)) {
             throw new NotFoundException();
         }
 
-        boolean alreadyParticipate = session.getUsers().stream().anyMatch(o -> o.getId().equals(userId));
-        if(alreadyParticipate) {
+        if (this.sessionRepository.isParticipant(id, userId)) {
+            throw new BadRequestException();
+        }
+
+        if (this.sessionRepository.reserveSeat(id) == 0) {
+            throw new ConflictException();
+        }
+
+        try {
+            this.sessionRepository.addParticipant(id, userId);
+        } catch (DataIntegrityViolationException e) {
+            // Joined concurrently, the primary key of PARTICIPATE rejected the second row
             throw new BadRequestException();
         }
+        changed(id);
+    }
+
+    /**
+     * Resolves many joins of one session in a single transaction: the session row is locked once,
+     * the users and existing participations are read with one query each, and the granted seats are
+     * written with one JDBC batch. Seats go to the users in list order. Used by the burst mode and
+     * by the group enrollment endpoint.
+     *
+     * @return the outcome of each user, in the order of the list
+     */
+    @Transactional
+    public List<ParticipationOutcome> participateBatch(Long id, List<Long> userIds) {
+        Optional<SessionSeats> seats = this.sessionRepository.lockSeats(id);
+        if (!seats.isPresent()) {
+            return new ArrayList<>(Collections.nCopies(userIds.size(), ParticipationOutcome.NOT_FOUND));
+        }
+
+        Set<Long> distinctIds = new HashSet<>(userIds);
+        Set<Long> existingUsers = new HashSet<>(this.userRepository.findExistingIds(distinctIds));
+        Set<Long> participants = new HashSet<>(this.sessionRepository.findParticipantIds(id, distinctIds));
 
-        session.getUsers().add(user);
+        Integer capacity = seats.get().getCapacity();
+        long freeSeats = capacity == null ? Long.MAX_VALUE : capacity - seats.get().getParticipantCount();
 
-        this.sessionRepository.save(session);
+        List<ParticipationOutcome> outcomes = new ArrayList<>(userIds.size());
+        List<Object[]> joined = new ArrayList<>();
+        for (Long userId : userIds) {
+            if (!existingUsers.contains(userId)) {
+                outcomes.add(ParticipationOutcome.NOT_FOUND);
+            } else if (!participants.add(userId)) {
+                outcomes.add(ParticipationOutcome.ALREADY_PARTICIPATING);
+            } else if (joined.size() >= freeSeats) {
+                outcomes.add(ParticipationOutcome.FULL);
+            } else {
+                joined.add(new Object[]{id, userId});
+                outcomes.add(ParticipationOutcome.JOINED);
+            }
+        }
+
+        if (!joined.isEmpty()) {
+            this.jdbcTemplate.batchUpdate(INSERT_PARTICIPANT, joined);
+            this.sessionRepository.addSeats(id, joined.size());
+            changed(id);
+        }
+        return outcomes;
     }
 
+    /**
+     * Books many sessions for one user in a single transaction, the counterpart of
+     * {@link #participateBatch} for a user booking a whole week.
+     *
+     * @return the outcome of each session, in the order of the list
+     */
+    @Transactional
+    public List<ParticipationOutcome> participateInSessions(Long userId, List<Long> sessionIds) {
+        if (!this.userRepository.existsById(userId)) {
+            return new ArrayList<>(Collections.nCopies(sessionIds.size(), ParticipationOutcome.NOT_FOUND));
+        }
+
+        Set<Long> distinctIds = new HashSet<>(sessionIds);
+        Map<Long, SessionSeats> seats = this.sessionRepository.lockSeats(distinctIds).stream()
+                .collect(Collectors.toMap(SessionSeats::getId, Function.identity()));
+        Set<Long> booked = new HashSet<>(this.sessionRepository.findSessionIdsOfParticipant(userId, distinctIds));
+
+        List<ParticipationOutcome> outcomes = new ArrayList<>(sessionIds.size());
+        List<Long> joined = new ArrayList<>();
+        for (Long sessionId : sessionIds) {
+            SessionSeats session = seats.get(sessionId);
+            if (session == null) {
+                outcomes.add(ParticipationOutcome.NOT_FOUND);
+            } else if (!booked.add(sessionId)) {
+                outcomes.add(ParticipationOutcome.ALREADY_PARTICIPATING);
+            } else if (session.getCapacity() != null && session.getParticipantCount() >= session.getCapacity()) {
+                outcomes.add(ParticipationOutcome.FULL);
+            } else {
+                joined.add(sessionId);
+                outcomes.add(ParticipationOutcome.JOINED);
+            }
+        }
+
+        if (!joined.isEmpty()) {
+            this.jdbcTemplate.batchUpdate(INSERT_PARTICIPANT, joined.stream()
+                    .map(sessionId -> new Object[]{sessionId, userId})
+                    .collect(Collectors.toList()));
+            this.sessionRepository.addSeat(joined);
+            this.eventPublisher.publishEvent(new SessionChangedEvent(joined));
+        }
+        return outcomes;
+    }
+
+    @Transactional
     public void noLongerParticipate(Long id, Long userId) {
-        Session session = this.sessionRepository.findById(id).orElse(null);
-        if (session == null) {
+        if (!this.sessionRepository.existsById(id)) {
+            throw new NotFoundException();
+        }
+
+        if (this.sessionRepository.removeParticipant(id, userId) == 0) {
+            throw new BadRequestException();
+        }
+
+        // The waitlist head is read with a lock, so concurrent leaves promote different users
+        this.sessionRepository.releaseSeat(id);
+        promoteFromWaitlist(id);
+        changed(id);
+    }
+
+    /**
+     * Queues the user for a full session.
+     *
+     * @return the 1-based position of the user in the waitlist
+     */
+    @Transactional
+    public long joinWaitlist(Long id, Long userId) {
+        if (!this.sessionRepository.existsById(id) || !this.userRepository.existsById(userId)) {
             throw new NotFoundException();
         }
 
-        boolean alreadyParticipate = session.getUsers().stream().anyMatch(o -> o.getId().equals(userId));
-        if(!alreadyParticipate) {
+        // Participants do not wait, and neither does anyone while seats are left
+        if (this.sessionRepository.isParticipant(id, userId) || this.sessionRepository.lockIfFull(id) == 0) {
+            throw new BadRequestException();
+        }
+
+        try {
+            this.waitlistRepository.saveAndFlush(new WaitlistEntry().setSessionId(id).setUserId(userId));
+        } catch (DataIntegrityViolationException e) {
+            // Already waiting for this session
             throw new BadRequestException();
         }
 
-        session.setUsers(session.getUsers().stream().filter(user -> !user.getId().equals(userId)).collect(Collectors.toList()));
+        return this.waitlistRepository.findPosition(id, userId);
+    }
+
+    @Transactional
+    public void leaveWaitlist(Long id, Long userId) {
+        if (this.waitlistRepository.deleteBySessionIdAndUserId(id, userId) == 0) {
+            throw new BadRequestException();
+        }
+    }
 
-        this.sessionRepository.save(session);
+    @Transactional(readOnly = true)
+    public long getWaitlistPosition(Long id, Long userId) {
+        long position = this.waitlistRepository.findPosition(id, userId);
+        if (position == 0) {
+            throw new NotFoundException();
+        }
+        return position;
+    }
+
+    /**
+     * Tells the caches about the change, once the transaction commits.
+     */
+    private void changed(Long id) {
+        this.eventPublisher.publishEvent(new SessionChangedEvent(Collections.singletonList(id)));
+    }
+
+    /**
+     * Moves the head of the waitlist into the session when a seat is free. Must run in the
+     * transaction that freed the seat. The head is locked before the seat is taken: a transaction
+     * promoting from the same session waits for this one, then sees the head gone. A head that
+     * joined the session meanwhile, by an update or a group enrollment, leaves the queue and the
+     * seat goes to the next one.
+     *
+     * @return false when nobody is waiting or the session is still full
+     */
+    private boolean promoteFromWaitlist(Long id) {
+        Optional<WaitlistEntry> next = this.waitlistRepository.findFirstBySessionIdOrderByIdAsc(id);
+        if (!next.isPresent() || this.sessionRepository.reserveSeat(id) == 0) {
+            return false;
+        }
+
+        while (true) {
+            this.waitlistRepository.delete(next.get());
+            if (this.sessionRepository.addParticipantIfAbsent(id, next.get().getUserId()) == 1) {
+                return true;
+            }
+
+            next = this.waitlistRepository.findFirstBySessionIdOrderByIdAsc(id);
+            if (!next.isPresent()) {
+                this.sessionRepository.releaseSeat(id);
+                return false;
+            }
+        }
     }
 }
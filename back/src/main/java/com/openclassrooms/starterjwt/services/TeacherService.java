@@ -2,23 +2,196 @@ package com.openclassrooms.starterjwt.services;
 
 import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Serves the teachers from an immutable in-memory snapshot, read once with a single query.
+ *
+ * Readers only dereference the current snapshot and never wait: once it is older than
+ * oc.app.teacherRefreshIntervalMs (0 to keep it until {@link #reload()}), the next read starts a
+ * rebuild in the background and keeps being served from the old snapshot until the new one replaces
+ * it. A teacher missing from the snapshot is looked up in TEACHERS, since it may have been added
+ * since, and starts a rebuild when found.
+ *
+ * Callers get their own copies and may change them freely.
+ */
+@Log4j2
 @Service
-public class TeacherService {
+public class TeacherService implements DisposableBean {
     private final TeacherRepository teacherRepository;
 
+    @Value("${oc.app.teacherRefreshIntervalMs:300000}")
+    private long refreshIntervalMs;
+
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "teacher-refresher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    private final AtomicLong versions = new AtomicLong();
+
+    private volatile Snapshot snapshot;
+
     public TeacherService(TeacherRepository teacherRepository) {
         this.teacherRepository = teacherRepository;
     }
 
     public List<Teacher> findAll() {
-        return this.teacherRepository.findAll();
+        Teacher[] teachers = current().teachers;
+        List<Teacher> copies = new ArrayList<>(teachers.length);
+        for (Teacher teacher : teachers) {
+            copies.add(copy(teacher));
+        }
+        return copies;
     }
 
     public Teacher findById(Long id) {
-        return this.teacherRepository.findById(id).orElse(null);
+        Snapshot current = current();
+        Integer position = current.index.get(id);
+        if (position != null) {
+            return copy(current.teachers[position]);
+        }
+
+        Teacher teacher = this.teacherRepository.findById(id).orElse(null);
+        if (teacher != null) {
+            refreshInBackground();
+        }
+        return teacher;
+    }
+
+    /**
+     * Version of the current snapshot, to be read before the teachers it describes.
+     */
+    public long version() {
+        return current().version;
+    }
+
+    /**
+     * Reads TEACHERS again and replaces the snapshot. Readers keep using the previous one meanwhile.
+     * The version only changes with the teachers, so the ETags and encoded bodies built on it
+     * outlive the periodic reloads that find nothing new.
+     *
+     * @return the teachers of the new snapshot
+     */
+    public List<Teacher> reload() {
+        Snapshot reloaded;
+        synchronized (this) {
+            List<Teacher> teachers = this.teacherRepository.findAll();
+            Snapshot previous = this.snapshot;
+            long version = previous != null && previous.holds(teachers) ? previous.version : this.versions.incrementAndGet();
+            reloaded = new Snapshot(teachers, version);
+            this.snapshot = reloaded;
+        }
+        log.info("Teacher snapshot reloaded with {} teachers", reloaded.teachers.length);
+        return findAll();
+    }
+
+    private Snapshot current() {
+        Snapshot current = this.snapshot;
+        if (current == null) {
+            // Nothing to serve yet: the first reader loads it
+            synchronized (this) {
+                if (this.snapshot == null) {
+                    this.snapshot = new Snapshot(this.teacherRepository.findAll(), this.versions.incrementAndGet());
+                }
+                return this.snapshot;
+            }
+        }
+
+        if (this.refreshIntervalMs > 0 && System.currentTimeMillis() - current.loadedAtMs > this.refreshIntervalMs) {
+            refreshInBackground();
+        }
+        return current;
+    }
+
+    private void refreshInBackground() {
+        if (!this.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+
+        this.refresher.execute(() -> {
+            try {
+                reload();
+            } catch (RuntimeException e) {
+                log.warn("Could not reload the teachers, keeping the current snapshot", e);
+            } finally {
+                this.refreshing.set(false);
+            }
+        });
+    }
+
+    private static Teacher copy(Teacher teacher) {
+        return Teacher.builder()
+                .id(teacher.getId())
+                .lastName(teacher.getLastName())
+                .firstName(teacher.getFirstName())
+                .createdAt(teacher.getCreatedAt())
+                .updatedAt(teacher.getUpdatedAt())
+                .build();
+    }
+
+    @Override
+    public void destroy() {
+        this.refresher.shutdownNow();
+    }
+
+    /**
+     * Teachers in the order of TEACHERS, with the position of each id in the array.
+     */
+    private static final class Snapshot {
+        private final Teacher[] teachers;
+
+        private final Map<Long, Integer> index;
+
+        private final long version;
+
+        private final long loadedAtMs = System.currentTimeMillis();
+
+        private Snapshot(List<Teacher> teachers, long version) {
+            this.version = version;
+            this.teachers = new Teacher[teachers.size()];
+            Map<Long, Integer> index = new HashMap<>();
+            for (int i = 0; i < teachers.size(); i++) {
+                this.teachers[i] = copy(teachers.get(i));
+                index.put(this.teachers[i].getId(), i);
+            }
+            this.index = Collections.unmodifiableMap(index);
+        }
+
+        /** Whether the teachers read from TEACHERS are those of this snapshot, field by field. */
+        private boolean holds(List<Teacher> teachers) {
+            if (teachers.size() != this.teachers.length) {
+                return false;
+            }
+            for (int i = 0; i < this.teachers.length; i++) {
+                Teacher mine = this.teachers[i];
+                Teacher other = teachers.get(i);
+                if (!Objects.equals(mine.getId(), other.getId())
+                        || !Objects.equals(mine.getLastName(), other.getLastName())
+                        || !Objects.equals(mine.getFirstName(), other.getFirstName())
+                        || !Objects.equals(mine.getCreatedAt(), other.getCreatedAt())
+                        || !Objects.equals(mine.getUpdatedAt(), other.getUpdatedAt())) {
+                    return false;
+                }
+            }
+            return true;
+        }
     }
 }
@@ -0,0 +1,362 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.payload.request.SignupRequest;
+import com.openclassrooms.starterjwt.payload.response.UserImportResponse;
+import com.openclassrooms.starterjwt.payload.response.UserImportRowResult;
+import com.openclassrooms.starterjwt.payload.response.UserImportRowResult.Status;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+/**
+ * Creates user accounts in bulk from a CSV or NDJSON stream.
+ *
+ * The input is read line by line and handled in chunks: rows are validated like a {@link SignupRequest},
+ * the passwords of a chunk are hashed in parallel on a dedicated fork-join pool, then the chunk is inserted
+ * with a single JDBC batch. Only the per-row report and the emails already seen are kept in memory.
+ *
+ * The import pool does not go through {@link com.openclassrooms.starterjwt.security.services.PasswordHashingExecutor},
+ * whose bounded queue would refuse a whole chunk, so it is kept to a quarter of the cores by default to leave
+ * the rest to logins and registrations.
+ */
+@Service
+public class UserImportService implements DisposableBean {
+    private static final String INSERT_USER = "INSERT INTO USERS (email, last_name, first_name, password, admin, created_at, updated_at) "
+            + "VALUES (?, ?, ?, ?, false, ?, ?)";
+
+    private static final String SELECT_EXISTING_EMAILS = "SELECT email FROM USERS WHERE email IN (:emails)";
+
+    private static final List<String> CSV_COLUMNS = Arrays.asList("email", "firstName", "lastName", "password");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PasswordEncoder passwordEncoder;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final ForkJoinPool hashingPool;
+    private final int batchSize;
+
+    public UserImportService(JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             PasswordEncoder passwordEncoder,
+                             Validator validator,
+                             ObjectMapper objectMapper,
+                             @Value("${oc.app.userImportBatchSize:500}") int batchSize,
+                             @Value("${oc.app.userImportParallelism:0}") int parallelism) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.passwordEncoder = passwordEncoder;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.hashingPool = new ForkJoinPool(poolSize(parallelism, Runtime.getRuntime().availableProcessors()));
+    }
+
+    static int poolSize(int parallelism, int processors) {
+        return parallelism > 0 ? parallelism : Math.max(1, processors / 4);
+    }
+
+    /**
+     * Imports rows of the form email,firstName,lastName,password. A first line naming these
+     * columns is treated as a header and may list them in any order.
+     */
+    public UserImportResponse importCsv(BufferedReader reader) {
+        return importRows(reader, new CsvRowParser());
+    }
+
+    /**
+     * Imports one JSON object per line, with the same fields as the register endpoint.
+     */
+    public UserImportResponse importNdjson(BufferedReader reader) {
+        return importRows(reader, (line, text) -> {
+            try {
+                SignupRequest request = objectMapper.readValue(text, SignupRequest.class);
+                return request != null ? new ImportRow(line, request) : ImportRow.invalid(line, null, "Expected a JSON object");
+            } catch (JsonProcessingException e) {
+                return ImportRow.invalid(line, null, "Malformed JSON");
+            }
+        });
+    }
+
+    private UserImportResponse importRows(BufferedReader reader, RowParser parser) {
+        List<UserImportRowResult> results = new ArrayList<>();
+        Set<String> seenEmails = new HashSet<>();
+        List<ImportRow> chunk = new ArrayList<>(batchSize);
+
+        try {
+            String text;
+            int line = 0;
+            while ((text = reader.readLine()) != null) {
+                line++;
+                if (text.trim().isEmpty()) {
+                    continue;
+                }
+
+                ImportRow row = parser.parse(line, text);
+                if (row == null) {
+                    continue;
+                }
+                chunk.add(row);
+
+                if (chunk.size() == batchSize) {
+                    importChunk(chunk, seenEmails, results);
+                    chunk.clear();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        importChunk(chunk, seenEmails, results);
+
+        int created = (int) results.stream().filter(result -> result.getStatus() == Status.CREATED).count();
+        return new UserImportResponse(results.size(), created, results.size() - created, results);
+    }
+
+    private void importChunk(List<ImportRow> chunk, Set<String> seenEmails, List<UserImportRowResult> results) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+
+        List<ImportRow> candidates = new ArrayList<>();
+        for (ImportRow row : chunk) {
+            if (row.result == null) {
+                validate(row);
+            }
+            if (row.result == null && !seenEmails.add(row.key())) {
+                row.reject(Status.DUPLICATE, "Email appears more than once in the import");
+            }
+            if (row.result == null) {
+                candidates.add(row);
+            }
+        }
+
+        if (!candidates.isEmpty()) {
+            rejectExistingEmails(candidates);
+            candidates.removeIf(row -> row.result != null);
+        }
+
+        if (!candidates.isEmpty()) {
+            hashPasswords(candidates);
+            insert(candidates);
+        }
+
+        for (ImportRow row : chunk) {
+            results.add(row.result);
+        }
+    }
+
+    private void validate(ImportRow row) {
+        Set<ConstraintViolation<SignupRequest>> violations = validator.validate(row.request);
+        if (!violations.isEmpty()) {
+            String message = violations.stream()
+                    .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", "));
+            row.reject(Status.INVALID, message);
+        }
+    }
+
+    private void rejectExistingEmails(List<ImportRow> candidates) {
+        List<String> emails = candidates.stream().map(row -> row.request.getEmail()).collect(Collectors.toList());
+        Set<String> existing = namedParameterJdbcTemplate
+                .queryForList(SELECT_EXISTING_EMAILS, Collections.singletonMap("emails", emails), String.class)
+                .stream()
+                .map(email -> email.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toSet());
+
+        for (ImportRow row : candidates) {
+            if (existing.contains(row.key())) {
+                row.reject(Status.DUPLICATE, "Email is already taken");
+            }
+        }
+    }
+
+    private void hashPasswords(List<ImportRow> candidates) {
+        try {
+            hashingPool.submit(() -> candidates.parallelStream()
+                    .forEach(row -> row.encodedPassword = passwordEncoder.encode(row.request.getPassword())))
+                    .get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing imported passwords", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to hash imported passwords", e.getCause());
+        }
+    }
+
+    private void insert(List<ImportRow> candidates) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_USER, candidates, candidates.size(),
+                    (statement, row) -> bind(statement, row, now)));
+            candidates.forEach(row -> row.accept());
+        } catch (DataIntegrityViolationException e) {
+            // An account was created concurrently: the batch was rolled back, insert the rows one by one
+            for (ImportRow row : candidates) {
+                try {
+                    jdbcTemplate.update(INSERT_USER, statement -> bind(statement, row, now));
+                    row.accept();
+                } catch (DataIntegrityViolationException duplicate) {
+                    row.reject(Status.DUPLICATE, "Email is already taken");
+                }
+            }
+        }
+    }
+
+    private static void bind(PreparedStatement statement, ImportRow row, Timestamp now) throws SQLException {
+        statement.setString(1, row.request.getEmail());
+        statement.setString(2, row.request.getLastName());
+        statement.setString(3, row.request.getFirstName());
+        statement.setString(4, row.encodedPassword);
+        statement.setTimestamp(5, now);
+        statement.setTimestamp(6, now);
+    }
+
+    @Override
+    public void destroy() {
+        hashingPool.shutdownNow();
+    }
+
+    @FunctionalInterface
+    private interface RowParser {
+        /** Returns the row for this line, or null when the line is not a data row. */
+        ImportRow parse(int line, String text);
+    }
+
+    private static final class CsvRowParser implements RowParser {
+        private List<String> columns = CSV_COLUMNS;
+        private boolean firstLine = true;
+
+        @Override
+        public ImportRow parse(int line, String text) {
+            List<String> fields = splitCsv(text);
+            if (firstLine) {
+                firstLine = false;
+                if (fields != null && CSV_COLUMNS.stream().anyMatch(column -> column.equalsIgnoreCase(fields.get(0).trim()))) {
+                    columns = fields.stream().map(String::trim).collect(Collectors.toList());
+                    return null;
+                }
+            }
+
+            if (fields == null || fields.size() != columns.size()) {
+                return ImportRow.invalid(line, null, "Expected " + columns.size() + " columns");
+            }
+
+            SignupRequest request = new SignupRequest();
+            for (int i = 0; i < columns.size(); i++) {
+                String value = fields.get(i);
+                switch (columns.get(i).toLowerCase(Locale.ROOT)) {
+                    case "email":
+                        request.setEmail(value);
+                        break;
+                    case "firstname":
+                        request.setFirstName(value);
+                        break;
+                    case "lastname":
+                        request.setLastName(value);
+                        break;
+                    case "password":
+                        request.setPassword(value);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return new ImportRow(line, request);
+        }
+
+        /** Splits one CSV record, honouring double-quoted fields. Returns null on an unterminated quote. */
+        static List<String> splitCsv(String text) {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (quoted) {
+                    if (c == '"' && i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        field.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+
+            if (quoted) {
+                return null;
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+
+    private static final class ImportRow {
+        private final int line;
+        private final SignupRequest request;
+        private String encodedPassword;
+        private UserImportRowResult result;
+
+        private ImportRow(int line, SignupRequest request) {
+            this.line = line;
+            this.request = request;
+        }
+
+        static ImportRow invalid(int line, String email, String message) {
+            ImportRow row = new ImportRow(line, null);
+            row.result = new UserImportRowResult(line, email, Status.INVALID, message);
+            return row;
+        }
+
+        String key() {
+            return request.getEmail().toLowerCase(Locale.ROOT);
+        }
+
+        void accept() {
+            result = new UserImportRowResult(line, request.getEmail(), Status.CREATED, null);
+        }
+
+        void reject(Status status, String message) {
+            result = new UserImportRowResult(line, request.getEmail(), status, message);
+        }
+    }
+}
@@ -1,22 +1,37 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.events.UserChangedEvent;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
 
 @Service
 public class UserService {
     private final UserRepository userRepository;
 
-    public UserService(UserRepository userRepository) {
+    private final ApplicationEventPublisher eventPublisher;
+
+    public UserService(UserRepository userRepository, ApplicationEventPublisher eventPublisher) {
         this.userRepository = userRepository;
+        this.eventPublisher = eventPublisher;
     }
 
+    @Transactional
     public void delete(Long id) {
         this.userRepository.deleteById(id);
+        this.eventPublisher.publishEvent(new UserChangedEvent(id, null));
     }
 
     public User findById(Long id) {
         return this.userRepository.findById(id).orElse(null);
     }
+
+    public List<User> findAllById(Collection<Long> ids) {
+        return this.userRepository.findAllById(ids);
+    }
 }
@@ -0,0 +1,21 @@
+-- PARTICIPATE had no key: duplicated rows are dropped while the table is rebuilt with a
+-- (session_id, user_id) primary key. The reverse index serves the lookups by user.
+
+CREATE TABLE PARTICIPATE_KEYED (
+  user_id INT NOT NULL,
+  session_id INT NOT NULL,
+  PRIMARY KEY (session_id, user_id)
+);
+
+INSERT INTO PARTICIPATE_KEYED (session_id, user_id)
+SELECT DISTINCT session_id, user_id FROM PARTICIPATE
+WHERE session_id IS NOT NULL AND user_id IS NOT NULL;
+
+DROP TABLE PARTICIPATE;
+
+ALTER TABLE PARTICIPATE_KEYED RENAME TO PARTICIPATE;
+
+CREATE INDEX idx_participate_user ON PARTICIPATE (user_id, session_id);
+
+ALTER TABLE PARTICIPATE ADD FOREIGN KEY (user_id) REFERENCES USERS (id);
+ALTER TABLE PARTICIPATE ADD FOREIGN KEY (session_id) REFERENCES SESSIONS (id);
@@ -0,0 +1,22 @@
+-- Unique emails, session capacity with its seat counter, and the waitlist of full sessions.
+
+ALTER TABLE USERS ADD CONSTRAINT uk_users_email UNIQUE (email);
+
+ALTER TABLE SESSIONS ADD COLUMN capacity INT;
+
+ALTER TABLE SESSIONS ADD COLUMN participant_count INT NOT NULL DEFAULT 0;
+
+UPDATE SESSIONS SET participant_count = (SELECT COUNT(*) FROM PARTICIPATE WHERE PARTICIPATE.session_id = SESSIONS.id);
+
+CREATE TABLE WAITLIST (
+  id BIGINT PRIMARY KEY AUTO_INCREMENT,
+  session_id INT NOT NULL,
+  user_id INT NOT NULL,
+  created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+  CONSTRAINT uk_waitlist_session_user UNIQUE (session_id, user_id)
+);
+
+CREATE INDEX idx_waitlist_session_order ON WAITLIST (session_id, id);
+
+ALTER TABLE WAITLIST ADD FOREIGN KEY (user_id) REFERENCES USERS (id) ON DELETE CASCADE;
+ALTER TABLE WAITLIST ADD FOREIGN KEY (session_id) REFERENCES SESSIONS (id) ON DELETE CASCADE;
@@ -0,0 +1,5 @@
+-- Session listings are read in (date, id) order, over a date range or for one teacher.
+
+CREATE INDEX idx_sessions_date_id ON SESSIONS (date, id);
+
+CREATE INDEX idx_sessions_teacher_date ON SESSIONS (teacher_id, date, id);
@@ -0,0 +1,12 @@
+-- Keys changed by each write, in commit order of their ids, so that every node can evict its own
+-- cached copies of the rows changed by the other nodes.
+
+CREATE TABLE CACHE_CHANGE_LOG (
+  id BIGINT PRIMARY KEY AUTO_INCREMENT,
+  entity VARCHAR(20) NOT NULL,
+  entity_id BIGINT NOT NULL,
+  node_id VARCHAR(36) NOT NULL,
+  changed_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX idx_cache_change_log_changed_at ON CACHE_CHANGE_LOG (changed_at);
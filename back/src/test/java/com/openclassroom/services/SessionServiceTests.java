@@ -5,12 +5,20 @@ import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.repository.WaitlistRepository;
+import com.openclassrooms.starterjwt.models.WaitlistEntry;
 import com.openclassrooms.starterjwt.services.SessionService;
 import com.openclassrooms.starterjwt.exception.NotFoundException;
 import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.ConflictException;
+import com.openclassrooms.starterjwt.events.SessionChangedEvent;
 
 import org.junit.jupiter.api.BeforeEach;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
@@ -41,6 +49,12 @@ public class SessionServiceTests {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private WaitlistRepository waitlistRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;  // Mock de la publication d'événements
+
     // Service à tester
     @InjectMocks
     private SessionService sessionService;
@@ -81,16 +95,26 @@ public class SessionServiceTests {
     @Test
     void testParticipateInSession_Success() {
         // Préparation des mocks
-        when(sessionRepository.findById(1L)).thenReturn(Optional.of(session));
-        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
-        session.setUsers(new ArrayList<>());
+        when(sessionRepository.existsById(1L)).thenReturn(true);
+        when(userRepository.existsById(1L)).thenReturn(true);
+        when(sessionRepository.isParticipant(1L, 1L)).thenReturn(false);
+        when(sessionRepository.reserveSeat(1L)).thenReturn(1);
 
         // Appel de la méthode
         sessionService.participate(1L, 1L);
 
-        // Vérifications
-        assertTrue(session.getUsers().contains(user), "L'utilisateur devrait être ajouté à la session");
-        verify(sessionRepository, times(1)).save(session);
+        // Vérifications : la place est réservée avant l'insertion, qui verrouillerait sinon la session en partage
+        InOrder order = inOrder(sessionRepository);
+        order.verify(sessionRepository, times(1)).reserveSeat(1L);
+        order.verify(sessionRepository, times(1)).addParticipant(1L, 1L);
+        // Une seule ligne insérée, ni la session ni l'utilisateur ne sont chargés
+        verify(sessionRepository, never()).findById(anyLong());
+        verify(sessionRepository, never()).save(any());
+
+        // Les caches oublient la session modifiée
+        ArgumentCaptor<SessionChangedEvent> event = ArgumentCaptor.forClass(SessionChangedEvent.class);
+        verify(eventPublisher, times(1)).publishEvent(event.capture());
+        assertIterableEquals(Arrays.asList(1L), event.getValue().getSessionIds());
     }
 
     /**
@@ -98,9 +122,10 @@ public class SessionServiceTests {
      */
     @Test
     void testParticipateInSession_SessionNotFound() {
-        when(sessionRepository.findById(1L)).thenReturn(Optional.empty());
+        when(sessionRepository.existsById(1L)).thenReturn(false);
 
         assertThrows(NotFoundException.class, () -> sessionService.participate(1L, 1L));
+        verify(sessionRepository, never()).addParticipant(anyLong(), anyLong());
     }
 
     /**
@@ -108,10 +133,11 @@ public class SessionServiceTests {
      */
     @Test
     void testParticipateInSession_UserNotFound() {
-        when(sessionRepository.findById(1L)).thenReturn(Optional.of(session));
-        when(userRepository.findById(1L)).thenReturn(Optional.empty());
+        when(sessionRepository.existsById(1L)).thenReturn(true);
+        when(userRepository.existsById(1L)).thenReturn(false);
 
         assertThrows(NotFoundException.class, () -> sessionService.participate(1L, 1L));
+        verify(sessionRepository, never()).addParticipant(anyLong(), anyLong());
     }
 
     /**
@@ -119,9 +145,39 @@ public class SessionServiceTests {
      */
     @Test
     void testParticipateInSession_AlreadyParticipating() {
-        session.setUsers(Arrays.asList(user));
-        when(sessionRepository.findById(1L)).thenReturn(Optional.of(session));
-        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(sessionRepository.existsById(1L)).thenReturn(true);
+        when(userRepository.existsById(1L)).thenReturn(true);
+        when(sessionRepository.isParticipant(1L, 1L)).thenReturn(true);
+
+        assertThrows(BadRequestException.class, () -> sessionService.participate(1L, 1L));
+        verify(sessionRepository, never()).addParticipant(anyLong(), anyLong());
+    }
+
+    /**
+     * Test : Session complète, aucune ligne n'est insérée
+     */
+    @Test
+    void testParticipateInSession_Full() {
+        when(sessionRepository.existsById(1L)).thenReturn(true);
+        when(userRepository.existsById(1L)).thenReturn(true);
+        when(sessionRepository.reserveSeat(1L)).thenReturn(0);
+
+        assertThrows(ConflictException.class, () -> sessionService.participate(1L, 1L));
+        verify(sessionRepository, times(1)).reserveSeat(1L);
+        verify(sessionRepository, never()).addParticipant(anyLong(), anyLong());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    /**
+     * Test : Inscription concurrente, la clé primaire de PARTICIPATE refuse la seconde ligne et
+     * l'exception annule la transaction, donc la place réservée
+     */
+    @Test
+    void testParticipateInSession_ConcurrentDuplicate() {
+        when(sessionRepository.existsById(1L)).thenReturn(true);
+        when(userRepository.existsById(1L)).thenReturn(true);
+        when(sessionRepository.reserveSeat(1L)).thenReturn(1);
+        when(sessionRepository.addParticipant(1L, 1L)).thenThrow(new DataIntegrityViolationException("duplicate"));
 
         assertThrows(BadRequestException.class, () -> sessionService.participate(1L, 1L));
     }
@@ -131,13 +187,15 @@ public class SessionServiceTests {
      */
     @Test
     void testNoLongerParticipate_Success() {
-        session.setUsers(Arrays.asList(user));
-        when(sessionRepository.findById(1L)).thenReturn(Optional.of(session));
+        when(sessionRepository.existsById(1L)).thenReturn(true);
+        when(sessionRepository.removeParticipant(1L, 1L)).thenReturn(1);
 
         sessionService.noLongerParticipate(1L, 1L);
 
-        assertFalse(session.getUsers().contains(user), "L'utilisateur devrait être retiré de la session");
-        verify(sessionRepository, times(1)).save(session);
+        verify(sessionRepository, times(1)).removeParticipant(1L, 1L);
+        verify(sessionRepository, times(1)).releaseSeat(1L);
+        verify(sessionRepository, never()).save(any());
+        verify(eventPublisher, times(1)).publishEvent(any(SessionChangedEvent.class));
     }
 
     /**
@@ -145,9 +203,10 @@ public class SessionServiceTests {
      */
     @Test
     void testNoLongerParticipate_SessionNotFound() {
-        when(sessionRepository.findById(1L)).thenReturn(Optional.empty());
+        when(sessionRepository.existsById(1L)).thenReturn(false);
 
         assertThrows(NotFoundException.class, () -> sessionService.noLongerParticipate(1L, 1L));
+        verify(sessionRepository, never()).removeParticipant(anyLong(), anyLong());
     }
 
     /**
@@ -155,10 +214,161 @@ public class SessionServiceTests {
      */
     @Test
     void testNoLongerParticipate_NotParticipating() {
-        session.setUsers(new ArrayList<>());
-        when(sessionRepository.findById(1L)).thenReturn(Optional.of(session));
+        when(sessionRepository.existsById(1L)).thenReturn(true);
+        when(sessionRepository.removeParticipant(1L, 1L)).thenReturn(0);
 
         assertThrows(BadRequestException.class, () -> sessionService.noLongerParticipate(1L, 1L));
+        verify(sessionRepository, never()).releaseSeat(anyLong());
+    }
+
+    /**
+     * Test : Quitter une session complète fait entrer le premier de la liste d'attente
+     */
+    @Test
+    void testNoLongerParticipate_PromotesHeadOfWaitlist() {
+        WaitlistEntry head = new WaitlistEntry().setId(10L).setSessionId(1L).setUserId(2L);
+        when(sessionRepository.existsById(1L)).thenReturn(true);
+        when(sessionRepository.removeParticipant(1L, 1L)).thenReturn(1);
+        when(waitlistRepository.findFirstBySessionIdOrderByIdAsc(1L)).thenReturn(Optional.of(head));
+        when(sessionRepository.reserveSeat(1L)).thenReturn(1);
+        when(sessionRepository.addParticipantIfAbsent(1L, 2L)).thenReturn(1);
+
+        sessionService.noLongerParticipate(1L, 1L);
+
+        verify(sessionRepository, times(1)).releaseSeat(1L);
+        verify(waitlistRepository, times(1)).delete(head);
+        verify(sessionRepository, times(1)).addParticipantIfAbsent(1L, 2L);
+    }
+
+    /**
+     * Test : Le premier de la liste, déjà inscrit entre-temps, en est retiré et le suivant prend la place
+     */
+    @Test
+    void testNoLongerParticipate_SkipsHeadAlreadyParticipating() {
+        WaitlistEntry head = new WaitlistEntry().setId(10L).setSessionId(1L).setUserId(2L);
+        WaitlistEntry second = new WaitlistEntry().setId(11L).setSessionId(1L).setUserId(3L);
+        when(sessionRepository.existsById(1L)).thenReturn(true);
+        when(sessionRepository.removeParticipant(1L, 1L)).thenReturn(1);
+        when(waitlistRepository.findFirstBySessionIdOrderByIdAsc(1L)).thenReturn(Optional.of(head), Optional.of(second));
+        when(sessionRepository.reserveSeat(1L)).thenReturn(1);
+        when(sessionRepository.addParticipantIfAbsent(1L, 2L)).thenReturn(0);
+        when(sessionRepository.addParticipantIfAbsent(1L, 3L)).thenReturn(1);
+
+        sessionService.noLongerParticipate(1L, 1L);
+
+        verify(waitlistRepository, times(1)).delete(head);
+        verify(waitlistRepository, times(1)).delete(second);
+        verify(sessionRepository, times(1)).reserveSeat(1L);
+        verify(sessionRepository, times(1)).releaseSeat(1L);
+    }
+
+    /**
+     * Test : Le seul en attente est déjà inscrit, il quitte la file et la place réservée pour lui est rendue
+     */
+    @Test
+    void testNoLongerParticipate_ReleasesSeatWhenOnlyHeadAlreadyParticipates() {
+        WaitlistEntry head = new WaitlistEntry().setId(10L).setSessionId(1L).setUserId(2L);
+        when(sessionRepository.existsById(1L)).thenReturn(true);
+        when(sessionRepository.removeParticipant(1L, 1L)).thenReturn(1);
+        when(waitlistRepository.findFirstBySessionIdOrderByIdAsc(1L)).thenReturn(Optional.of(head), Optional.empty());
+        when(sessionRepository.reserveSeat(1L)).thenReturn(1);
+        when(sessionRepository.addParticipantIfAbsent(1L, 2L)).thenReturn(0);
+
+        sessionService.noLongerParticipate(1L, 1L);
+
+        verify(waitlistRepository, times(1)).delete(head);
+        // Une fois pour le départ, une fois pour la place réservée au premier de la file
+        verify(sessionRepository, times(2)).releaseSeat(1L);
+    }
+
+    /**
+     * Test : La place libérée est reprise par une autre inscription, le premier de la liste garde sa place
+     */
+    @Test
+    void testNoLongerParticipate_NoPromotionWhenStillFull() {
+        WaitlistEntry head = new WaitlistEntry().setId(10L).setSessionId(1L).setUserId(2L);
+        when(sessionRepository.existsById(1L)).thenReturn(true);
+        when(sessionRepository.removeParticipant(1L, 1L)).thenReturn(1);
+        when(waitlistRepository.findFirstBySessionIdOrderByIdAsc(1L)).thenReturn(Optional.of(head));
+        when(sessionRepository.reserveSeat(1L)).thenReturn(0);
+
+        sessionService.noLongerParticipate(1L, 1L);
+
+        verify(waitlistRepository, never()).delete(any(WaitlistEntry.class));
+        verify(sessionRepository, never()).addParticipantIfAbsent(1L, 2L);
+    }
+
+    /**
+     * Test : Inscription en liste d'attente d'une session complète, la position est renvoyée
+     */
+    @Test
+    void testJoinWaitlist_Success() {
+        when(sessionRepository.existsById(1L)).thenReturn(true);
+        when(userRepository.existsById(1L)).thenReturn(true);
+        when(sessionRepository.lockIfFull(1L)).thenReturn(1);
+        when(waitlistRepository.findPosition(1L, 1L)).thenReturn(3L);
+
+        assertEquals(3L, sessionService.joinWaitlist(1L, 1L));
+        verify(waitlistRepository, times(1)).saveAndFlush(any(WaitlistEntry.class));
+    }
+
+    /**
+     * Test : Pas de liste d'attente tant qu'il reste des places
+     */
+    @Test
+    void testJoinWaitlist_SeatsLeft() {
+        when(sessionRepository.existsById(1L)).thenReturn(true);
+        when(userRepository.existsById(1L)).thenReturn(true);
+        when(sessionRepository.lockIfFull(1L)).thenReturn(0);
+
+        assertThrows(BadRequestException.class, () -> sessionService.joinWaitlist(1L, 1L));
+        verify(waitlistRepository, never()).saveAndFlush(any(WaitlistEntry.class));
+    }
+
+    /**
+     * Test : Un participant ne peut pas rejoindre la liste d'attente
+     */
+    @Test
+    void testJoinWaitlist_AlreadyParticipating() {
+        when(sessionRepository.existsById(1L)).thenReturn(true);
+        when(userRepository.existsById(1L)).thenReturn(true);
+        when(sessionRepository.isParticipant(1L, 1L)).thenReturn(true);
+
+        assertThrows(BadRequestException.class, () -> sessionService.joinWaitlist(1L, 1L));
+        verify(waitlistRepository, never()).saveAndFlush(any(WaitlistEntry.class));
+    }
+
+    /**
+     * Test : Déjà en liste d'attente, la contrainte d'unicité refuse la seconde entrée
+     */
+    @Test
+    void testJoinWaitlist_AlreadyWaiting() {
+        when(sessionRepository.existsById(1L)).thenReturn(true);
+        when(userRepository.existsById(1L)).thenReturn(true);
+        when(sessionRepository.lockIfFull(1L)).thenReturn(1);
+        when(waitlistRepository.saveAndFlush(any(WaitlistEntry.class))).thenThrow(new DataIntegrityViolationException("duplicate"));
+
+        assertThrows(BadRequestException.class, () -> sessionService.joinWaitlist(1L, 1L));
+    }
+
+    /**
+     * Test : Quitter une liste d'attente où l'utilisateur n'est pas inscrit
+     */
+    @Test
+    void testLeaveWaitlist_NotWaiting() {
+        when(waitlistRepository.deleteBySessionIdAndUserId(1L, 1L)).thenReturn(0);
+
+        assertThrows(BadRequestException.class, () -> sessionService.leaveWaitlist(1L, 1L));
+    }
+
+    /**
+     * Test : Position d'un utilisateur absent de la liste d'attente
+     */
+    @Test
+    void testGetWaitlistPosition_NotWaiting() {
+        when(waitlistRepository.findPosition(1L, 1L)).thenReturn(0L);
+
+        assertThrows(NotFoundException.class, () -> sessionService.getWaitlistPosition(1L, 1L));
     }
 
     // ============================
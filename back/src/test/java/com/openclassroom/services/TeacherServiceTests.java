@@ -11,8 +11,12 @@ import org.mockito.junit.jupiter.MockitoExtension;  // Import pour MockitoExtens
 import org.junit.jupiter.api.extension.ExtendWith;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 @ExtendWith(MockitoExtension.class)  // Utilisation de MockitoExtension pour les tests unitaires
 public class TeacherServiceTests {
@@ -28,6 +32,7 @@ public class TeacherServiceTests {
     @BeforeEach
     void setUp() {
         teacher = new Teacher();
+        teacher.setId(1L);
         teacher.setFirstName("John");
         teacher.setLastName("Doe");
     }
@@ -54,8 +59,8 @@ public class TeacherServiceTests {
 
     @Test
     void testFindById() {
-        // Mock de la méthode findById() du repository
-        when(teacherRepository.findById(1L)).thenReturn(Optional.of(teacher));
+        // Les enseignants sont lus une fois, puis servis depuis l'instantané
+        when(teacherRepository.findAll()).thenReturn(Arrays.asList(teacher));
 
         // Appel de la méthode à tester
         Teacher foundTeacher = teacherService.findById(1L);
@@ -65,23 +70,25 @@ public class TeacherServiceTests {
         assertEquals("John", foundTeacher.getFirstName());
         assertEquals("Doe", foundTeacher.getLastName());
 
-        // Vérification que la méthode findById() du repository a bien été appelée avec l'ID correct
-        verify(teacherRepository, times(1)).findById(1L);
+        // Vérification qu'aucune lecture par id n'a eu lieu
+        verify(teacherRepository, times(1)).findAll();
+        verify(teacherRepository, never()).findById(anyLong());
     }
 
     @Test
     void testFindById_NotFound() {
-        // Mock de la méthode findById() du repository pour un enseignant inexistant
-        when(teacherRepository.findById(1L)).thenReturn(Optional.empty());
+        // Absent de l'instantané : l'enseignant a peut-être été ajouté depuis, on le cherche en base
+        when(teacherRepository.findAll()).thenReturn(Arrays.asList(teacher));
+        when(teacherRepository.findById(2L)).thenReturn(Optional.empty());
 
         // Appel de la méthode à tester
-        Teacher foundTeacher = teacherService.findById(1L);
+        Teacher foundTeacher = teacherService.findById(2L);
 
         // Vérification que le résultat est null, car l'enseignant n'a pas été trouvé
         assertNull(foundTeacher);
 
         // Vérification que la méthode findById() du repository a bien été appelée avec l'ID correct
-        verify(teacherRepository, times(1)).findById(1L);
+        verify(teacherRepository, times(1)).findById(2L);
     }
 
     // --- Tests d'Intégration avec des Mocks ---
@@ -106,18 +113,73 @@ public class TeacherServiceTests {
 
     @Test
     void testFindById_IntegrationWithMock() {
-        // Mock de la méthode findById() du repository
-        when(teacherRepository.findById(1L)).thenReturn(Optional.of(teacher));
+        // Mock de la méthode findAll() du repository
+        when(teacherRepository.findAll()).thenReturn(Arrays.asList(teacher));
 
-        // Appel de la méthode findById() du service
+        // Les appelants reçoivent leur propre copie : la modifier ne touche pas l'instantané
+        teacherService.findById(1L).setFirstName("Jack");
         Teacher foundTeacher = teacherService.findById(1L);
 
         // Vérification des résultats
         assertNotNull(foundTeacher);
         assertEquals("John", foundTeacher.getFirstName());
         assertEquals("Doe", foundTeacher.getLastName());
+        verify(teacherRepository, times(1)).findAll();
+    }
+
+    // --- Rechargement de l'instantané ---
 
-        // Vérification que la méthode findById() a bien été appelée avec l'ID correct
-        verify(teacherRepository, times(1)).findById(1L);
+    @Test
+    void testReload_ReplacesSnapshot() {
+        Teacher jane = new Teacher().setId(2L).setFirstName("Jane").setLastName("Roe");
+        when(teacherRepository.findAll()).thenReturn(Arrays.asList(teacher), Arrays.asList(teacher, jane));
+        assertEquals(1, teacherService.findAll().size());
+
+        // Rechargement forcé : le nouvel enseignant est servi sans lecture par id
+        List<Teacher> teachers = teacherService.reload();
+
+        assertEquals(2, teachers.size());
+        assertEquals("Jane", teacherService.findById(2L).getFirstName());
+        verify(teacherRepository, never()).findById(anyLong());
+    }
+
+    // Un rechargement qui ne trouve rien de nouveau garde la version, donc les ETag et corps déjà encodés
+    @Test
+    void testReload_KeepsVersionWhenUnchanged() {
+        Teacher renamed = new Teacher().setId(1L).setFirstName("Johnny").setLastName("Doe");
+        when(teacherRepository.findAll()).thenReturn(
+                Arrays.asList(teacher), Arrays.asList(new Teacher().setId(1L).setFirstName("John").setLastName("Doe")),
+                Arrays.asList(renamed));
+        long version = teacherService.version();
+
+        teacherService.reload();
+        assertEquals(version, teacherService.version());
+
+        teacherService.reload();
+        assertNotEquals(version, teacherService.version());
+        assertEquals("Johnny", teacherService.findById(1L).getFirstName());
+    }
+
+    @Test
+    void testReload_ReadersDoNotWait() throws Exception {
+        CountDownLatch reloading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(teacherRepository.findAll())
+                .thenReturn(Arrays.asList(teacher))
+                .thenAnswer(invocation -> {
+                    reloading.countDown();
+                    release.await(5, TimeUnit.SECONDS);
+                    return Collections.emptyList();
+                });
+        teacherService.findAll();
+
+        // Un rechargement bloqué en base n'empêche pas de lire l'instantané courant
+        CompletableFuture<List<Teacher>> reload = CompletableFuture.supplyAsync(teacherService::reload);
+        assertTrue(reloading.await(5, TimeUnit.SECONDS));
+        assertEquals("John", teacherService.findById(1L).getFirstName());
+
+        release.countDown();
+        assertTrue(reload.get(5, TimeUnit.SECONDS).isEmpty());
+        assertTrue(teacherService.findAll().isEmpty());
     }
 }
@@ -2,6 +2,7 @@ package com.openclassroom.services;
 
 import com.openclassrooms.starterjwt.services.UserService;
 
+import com.openclassrooms.starterjwt.events.UserChangedEvent;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -10,7 +11,9 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.ArgumentCaptor;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.util.Optional;
 
@@ -22,6 +25,9 @@ public class UserServiceTests {
     @Mock
     private UserRepository userRepository;  // Mock du repository
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;  // Mock de la publication d'événements
+
     @InjectMocks
     private UserService userService;  // Service à tester
 
@@ -80,6 +86,16 @@ public class UserServiceTests {
         // Vérification que la méthode deleteById() a bien été appelée une fois avec l'ID correct
         verify(userRepository, times(1)).deleteById(1L);
     }
+
+    @Test
+    void testDelete_PublishesUserChangedEvent() {
+        userService.delete(1L);
+
+        // Vérification que la suppression est annoncée pour invalider les caches
+        ArgumentCaptor<UserChangedEvent> event = ArgumentCaptor.forClass(UserChangedEvent.class);
+        verify(eventPublisher, times(1)).publishEvent(event.capture());
+        assertEquals(1L, event.getValue().getUserId());
+    }
 // --- Tests d'intégration avec des mocks ---
     
     @Test
@@ -3,8 +3,10 @@ package com.openclassrooms.controllers;
 import com.openclassrooms.starterjwt.controllers.SessionController;
 import com.openclassrooms.starterjwt.dto.SessionDto;
 import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.UnknownIdsException;
 import com.openclassrooms.starterjwt.mapper.SessionMapper;
 import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.services.ParticipationOutcome;
 import com.openclassrooms.starterjwt.services.SessionService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -51,16 +53,11 @@ class SessionControllerTest {
     // Test unitaire : Vérifie la réponse d'une requête GET pour un session valide, en utilisant un mock du service.
     @Test
     void testFindById_Success() throws Exception {
-        Session session = new Session();
-        session.setId(1L);
-        session.setName("Test Session");
-
         SessionDto sessionDto = new SessionDto();
         sessionDto.setId(1L);
         sessionDto.setName("Test Session");
 
-        when(sessionService.getById(anyLong())).thenReturn(session); // Mock du service
-        when(sessionMapper.toDto(session)).thenReturn(sessionDto); // Mock du mapper
+        when(sessionService.getDtoById(anyLong())).thenReturn(sessionDto); // Mock du service
 
         mockMvc.perform(get("/api/session/{id}", 1L))
                 .andExpect(status().isOk())
@@ -71,7 +68,7 @@ class SessionControllerTest {
     // Test unitaire : Vérifie la réponse d'une requête GET pour un session qui n'existe pas, avec un mock du service.
     @Test
     void testFindById_NotFound() throws Exception {
-        when(sessionService.getById(anyLong())).thenReturn(null); // Mock du service pour simuler une session non trouvée
+        when(sessionService.getDtoById(anyLong())).thenReturn(null); // Mock du service pour simuler une session non trouvée
 
         mockMvc.perform(get("/api/session/{id}", 999L))
                 .andExpect(status().isNotFound());
@@ -87,14 +84,6 @@ class SessionControllerTest {
     // Test d'intégration : Vérifie la récupération de toutes les sessions via le contrôleur et la transformation via le service et le mapper
     @Test
     void testFindAll() throws Exception {
-        Session session1 = new Session();
-        session1.setId(1L);
-        session1.setName("Session 1");
-
-        Session session2 = new Session();
-        session2.setId(2L);
-        session2.setName("Session 2");
-
         SessionDto sessionDto1 = new SessionDto();
         sessionDto1.setId(1L);
         sessionDto1.setName("Session 1");
@@ -103,11 +92,9 @@ class SessionControllerTest {
         sessionDto2.setId(2L);
         sessionDto2.setName("Session 2");
 
-        List<Session> sessions = Arrays.asList(session1, session2);
         List<SessionDto> sessionDtos = Arrays.asList(sessionDto1, sessionDto2);
 
-        when(sessionService.findAll()).thenReturn(sessions); // Mock du service
-        when(sessionMapper.toDto(sessions)).thenReturn(sessionDtos); // Mock du mapper
+        when(sessionService.findAllDto()).thenReturn(sessionDtos); // Mock du service
 
         mockMvc.perform(get("/api/session"))
                 .andExpect(status().isOk())
@@ -136,6 +123,18 @@ class SessionControllerTest {
                 .andExpect(status().isOk());
     }
 
+    // Test unitaire : Des utilisateurs inconnus dans la session créée sont signalés dans une réponse 400
+    @Test
+    void testCreate_UnknownUsers() throws Exception {
+        when(sessionMapper.toEntity(any(SessionDto.class))).thenThrow(new UnknownIdsException("user", Arrays.asList(7L, 9L)));
+
+        mockMvc.perform(post("/api/session")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Yoga\",\"date\":\"2024-01-01\",\"teacher_id\":1,\"description\":\"Yoga\",\"users\":[7,9]}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Error: Unknown user ids [7, 9]"));
+    }
+
     // Test d'intégration : Vérifie la suppression d'une session via le contrôleur, avec un service simulé
     @Test
     void testDelete_Success() throws Exception {
@@ -191,4 +190,73 @@ class SessionControllerTest {
         // Vérifier que la méthode noLongerParticipate a bien été appelée avec les bons paramètres
         verify(sessionService, times(1)).noLongerParticipate(1L, 1L); // Vérification de l'appel du service
     }
+
+    // Test unitaire : Inscription en liste d'attente, la position est renvoyée
+    @Test
+    void testJoinWaitlist_Success() throws Exception {
+        when(sessionService.joinWaitlist(1L, 2L)).thenReturn(4L); // Mock du service
+
+        mockMvc.perform(post("/api/session/{id}/waitlist/{userId}", 1L, 2L))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.position").value(4));
+    }
+
+    // Test unitaire : Position dans la liste d'attente, et identifiant invalide
+    @Test
+    void testWaitlistPosition() throws Exception {
+        when(sessionService.getWaitlistPosition(1L, 2L)).thenReturn(1L); // Mock du service
+
+        mockMvc.perform(get("/api/session/{id}/waitlist/{userId}", 1L, 2L))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.position").value(1));
+
+        mockMvc.perform(get("/api/session/{id}/waitlist/{userId}", "abc", 2L))
+                .andExpect(status().isBadRequest());
+    }
+
+    // Test unitaire : Quitter la liste d'attente
+    @Test
+    void testLeaveWaitlist_Success() throws Exception {
+        doNothing().when(sessionService).leaveWaitlist(anyLong(), anyLong()); // Mock du service
+
+        mockMvc.perform(delete("/api/session/{id}/waitlist/{userId}", 1L, 2L))
+                .andExpect(status().isOk());
+
+        verify(sessionService, times(1)).leaveWaitlist(1L, 2L);
+    }
+
+    // Test unitaire : Inscription d'un groupe, un résultat par utilisateur dans l'ordre de la requête
+    @Test
+    void testParticipateAll_ReturnsOutcomePerUser() throws Exception {
+        when(sessionService.participateBatch(1L, Arrays.asList(2L, 3L, 4L))).thenReturn(Arrays.asList(
+                ParticipationOutcome.JOINED, ParticipationOutcome.ALREADY_PARTICIPATING, ParticipationOutcome.FULL)); // Mock du service
+
+        mockMvc.perform(post("/api/session/{id}/participate", 1L)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ids\":[2,3,4]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(2))
+                .andExpect(jsonPath("$[0].outcome").value("JOINED"))
+                .andExpect(jsonPath("$[1].outcome").value("ALREADY_PARTICIPATING"))
+                .andExpect(jsonPath("$[2].outcome").value("FULL"));
+    }
+
+    // Test unitaire : Réservation de plusieurs sessions pour un utilisateur, et liste vide refusée
+    @Test
+    void testParticipateInAll() throws Exception {
+        when(sessionService.participateInSessions(2L, Arrays.asList(1L, 9L))).thenReturn(Arrays.asList(
+                ParticipationOutcome.JOINED, ParticipationOutcome.NOT_FOUND)); // Mock du service
+
+        mockMvc.perform(post("/api/session/participate/{userId}", 2L)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ids\":[1,9]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[1].id").value(9))
+                .andExpect(jsonPath("$[1].outcome").value("NOT_FOUND"));
+
+        mockMvc.perform(post("/api/session/participate/{userId}", 2L)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ids\":[]}"))
+                .andExpect(status().isBadRequest());
+    }
 }
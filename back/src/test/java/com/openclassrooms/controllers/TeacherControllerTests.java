@@ -5,6 +5,7 @@ import com.openclassrooms.starterjwt.SpringBootSecurityJwtApplication;
 import com.openclassrooms.starterjwt.dto.TeacherDto;
 import com.openclassrooms.starterjwt.mapper.TeacherMapper;
 import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 import com.openclassrooms.starterjwt.services.TeacherService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -20,13 +21,15 @@ import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
 
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import org.springframework.security.test.context.support.WithMockUser;
 
-@SpringBootTest(classes = SpringBootSecurityJwtApplication.class) // Démarre le contexte Spring pour le test
+@SpringBootTest(classes = SpringBootSecurityJwtApplication.class, properties = {"oc.app.schemaMigrationEnabled=false", "oc.app.cacheCoherenceEnabled=false", "oc.app.jsonBodyCacheEnabled=false"}) // Démarre le contexte Spring pour le test
 @AutoConfigureMockMvc // Active la configuration de MockMvc pour les tests d'API
 public class TeacherControllerTests {
 
@@ -105,4 +108,38 @@ public class TeacherControllerTests {
                 .andExpect(status().isOk()) // Vérifie que le statut est 200 OK
                 .andExpect(content().json(objectMapper.writeValueAsString(teacherDtos))); // Vérifie le contenu de la réponse
     }
-}
\ No newline at end of file
+
+    // Test d'intégration : un administrateur force le rechargement de l'instantané des enseignants
+    @Test
+    void testReload() throws Exception {
+        List<Teacher> teachers = Arrays.asList(teacher);
+        List<TeacherDto> teacherDtos = Arrays.asList(new TeacherDto(1L, "Doe", "John", LocalDateTime.now(), LocalDateTime.now()));
+
+        Mockito.when(teacherService.reload()).thenReturn(teachers);
+        Mockito.when(teacherMapper.toDto(teachers)).thenReturn(teacherDtos);
+
+        mockMvc.perform(post("/api/teacher/reload").with(user(principal(true))))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(teacherDtos)));
+        Mockito.verify(teacherService).reload();
+    }
+
+    // Test d'intégration : le rechargement est réservé aux administrateurs
+    @Test
+    void testReload_Forbidden() throws Exception {
+        mockMvc.perform(post("/api/teacher/reload").with(user(principal(false))))
+                .andExpect(status().isForbidden());
+        Mockito.verify(teacherService, Mockito.never()).reload();
+    }
+
+    private UserDetailsImpl principal(boolean admin) {
+        return UserDetailsImpl.builder()
+                .id(1L)
+                .username("yoga@studio.com")
+                .firstName("Admin")
+                .lastName("Admin")
+                .admin(admin)
+                .password("test!1234")
+                .build();
+    }
+}
@@ -4,6 +4,9 @@ import com.openclassrooms.starterjwt.controllers.UserController;
 import com.openclassrooms.starterjwt.dto.UserDto;
 import com.openclassrooms.starterjwt.mapper.UserMapper;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.payload.response.UserImportResponse;
+import com.openclassrooms.starterjwt.payload.response.UserImportRowResult;
+import com.openclassrooms.starterjwt.services.UserImportService;
 import com.openclassrooms.starterjwt.services.UserService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -18,11 +21,13 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.security.core.userdetails.UserDetails;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 import java.util.ArrayList;
+import java.util.Collections;
 
 import static org.mockito.Mockito.doNothing;
 
@@ -34,6 +39,9 @@ class UserControllerTest {
     @Mock
     private UserMapper userMapper; // Mapper mocké pour la conversion entre entité et DTO
 
+    @Mock
+    private UserImportService userImportService; // Service mocké pour l'import en masse
+
     @InjectMocks
     private UserController userController; // Contrôleur à tester
 
@@ -117,4 +125,34 @@ class UserControllerTest {
         mockMvc.perform(delete("/api/user/{id}", "invalid"))  // Effectue une requête DELETE avec un ID invalide
                 .andExpect(status().isBadRequest());  // Vérifie le statut HTTP (400 Bad Request)
     }
+
+    // Test d'intégration : Vérifie que l'import CSV renvoie le rapport ligne par ligne
+    @Test
+    void testImportCsv() throws Exception {
+        UserImportResponse report = new UserImportResponse(1, 1, 0, Collections.singletonList(
+                new UserImportRowResult(1, "jane@example.com", UserImportRowResult.Status.CREATED, null)));
+        when(userImportService.importCsv(any())).thenReturn(report);
+
+        mockMvc.perform(post("/api/user/import")
+                        .contentType("text/csv")
+                        .content("jane@example.com,Jane,Doe,test!1234\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(1))
+                .andExpect(jsonPath("$.rows[0].status").value("CREATED"));
+    }
+
+    // Test d'intégration : Vérifie que l'import NDJSON est routé selon le type de contenu
+    @Test
+    void testImportNdjson() throws Exception {
+        UserImportResponse report = new UserImportResponse(1, 0, 1, Collections.singletonList(
+                new UserImportRowResult(1, null, UserImportRowResult.Status.INVALID, "Malformed JSON")));
+        when(userImportService.importNdjson(any())).thenReturn(report);
+
+        mockMvc.perform(post("/api/user/import")
+                        .contentType("application/x-ndjson")
+                        .content("{not json\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.rows[0].message").value("Malformed JSON"));
+    }
 }
@@ -0,0 +1,111 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+
+/**
+ * Budget de requêtes de la connexion et de l'inscription, mesuré avec les statistiques Hibernate sur une base H2.
+ * La connexion ne doit lire la table USERS qu'une seule fois, l'inscription n'exécute que l'INSERT.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect"
+})
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+public class AuthControllerQueryBudgetTests {
+
+    private static final long LOGIN_QUERY_BUDGET = 1;
+
+    private static final long REGISTER_QUERY_BUDGET = 1;
+
+    private static final String SIGNUP = "{\"email\":\"signup@example.com\",\"firstName\":\"Jane\",\"lastName\":\"Doe\",\"password\":\"test!1234\"}";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    // Connexion d'un administrateur : une seule requête et le statut admin est renvoyé
+    @Test
+    void login_ShouldStayWithinQueryBudget() throws Exception {
+        userRepository.save(new User("budget@example.com", "Doe", "John", passwordEncoder.encode("test!1234"), true));
+        statistics.clear();
+
+        mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"budget@example.com\",\"password\":\"test!1234\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.admin").value(true));
+
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(LOGIN_QUERY_BUDGET);
+    }
+
+    // Inscription : un seul INSERT, sans vérification préalable de l'email
+    @Test
+    void register_ShouldStayWithinQueryBudget() throws Exception {
+        statistics.clear();
+
+        mockMvc.perform(post("/api/auth/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(SIGNUP))
+                .andExpect(status().isOk());
+
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(REGISTER_QUERY_BUDGET);
+        assertThat(userRepository.findByEmail("signup@example.com")).isPresent();
+    }
+
+    // Email déjà pris : la contrainte d'unicité est traduite en réponse 400 habituelle
+    @Test
+    void register_ShouldReportTakenEmail_FromUniqueConstraint() throws Exception {
+        mockMvc.perform(post("/api/auth/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(SIGNUP))
+                .andExpect(status().isOk());
+        statistics.clear();
+
+        mockMvc.perform(post("/api/auth/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(SIGNUP))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().json("{\"message\":\"Error: Email is already taken!\"}"));
+
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(REGISTER_QUERY_BUDGET);
+        assertThat(userRepository.count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,148 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+
+/**
+ * Tests d'intégration des jetons de rafraîchissement et de la déconnexion sur une base H2.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect"
+})
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+public class AuthControllerTokenTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+        user = userRepository.save(new User("token@example.com", "Doe", "John", passwordEncoder.encode("test!1234"), false));
+    }
+
+    private JsonNode login() throws Exception {
+        String body = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"token@example.com\",\"password\":\"test!1234\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.refreshToken").isString())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body);
+    }
+
+    private String refreshBody(String refreshToken) {
+        return "{\"refreshToken\":\"" + refreshToken + "\"}";
+    }
+
+    // Le jeton de rafraîchissement donne de nouveaux jetons et ne sert qu'une fois
+    @Test
+    void refresh_ShouldRotateTokens() throws Exception {
+        JsonNode session = login();
+        String refreshToken = session.get("refreshToken").asText();
+
+        String body = mockMvc.perform(post("/api/auth/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(refreshBody(refreshToken)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.username").value("token@example.com"))
+                .andReturn().getResponse().getContentAsString();
+        JsonNode refreshed = objectMapper.readTree(body);
+
+        mockMvc.perform(get("/api/user/{id}", user.getId())
+                        .header("Authorization", "Bearer " + refreshed.get("token").asText()))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/api/auth/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(refreshBody(refreshToken)))
+                .andExpect(status().isUnauthorized());
+    }
+
+    // Un jeton de rafraîchissement n'ouvre pas l'API et un jeton d'accès ne rafraîchit pas
+    @Test
+    void tokens_ShouldNotBeInterchangeable() throws Exception {
+        JsonNode session = login();
+
+        mockMvc.perform(get("/api/user/{id}", user.getId())
+                        .header("Authorization", "Bearer " + session.get("refreshToken").asText()))
+                .andExpect(status().isUnauthorized());
+
+        mockMvc.perform(post("/api/auth/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(refreshBody(session.get("token").asText())))
+                .andExpect(status().isUnauthorized());
+    }
+
+    // Une connexion qui réécrit un ancien hachage BCrypt sans préfixe ne révoque pas les jetons qu'elle renvoie
+    @Test
+    void login_WithLegacyHash_ShouldKeepItsTokens() throws Exception {
+        user.setPassword(new BCryptPasswordEncoder(4).encode("test!1234"));
+        userRepository.save(user);
+
+        JsonNode session = login();
+        assertThat(userRepository.findByEmail("token@example.com").get().getPassword()).startsWith("{bcrypt}");
+
+        mockMvc.perform(get("/api/user/{id}", user.getId())
+                        .header("Authorization", "Bearer " + session.get("token").asText()))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/api/auth/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(refreshBody(session.get("refreshToken").asText())))
+                .andExpect(status().isOk());
+    }
+
+    // Après la déconnexion, ni le jeton d'accès ni le jeton de rafraîchissement ne sont acceptés
+    @Test
+    void logout_ShouldRevokeTokens() throws Exception {
+        JsonNode session = login();
+        String accessToken = session.get("token").asText();
+
+        mockMvc.perform(post("/api/auth/logout")
+                        .header("Authorization", "Bearer " + accessToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(refreshBody(session.get("refreshToken").asText())))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/user/{id}", user.getId())
+                        .header("Authorization", "Bearer " + accessToken))
+                .andExpect(status().isUnauthorized());
+
+        mockMvc.perform(post("/api/auth/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(refreshBody(session.get("refreshToken").asText())))
+                .andExpect(status().isUnauthorized());
+    }
+}
@@ -0,0 +1,185 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.SessionParticipant;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+
+/**
+ * Inscriptions groupées sur une base H2 : un groupe dans une session, une semaine de sessions pour un utilisateur.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect"
+})
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+public class SessionBulkParticipationTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private TeacherRepository teacherRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    private Teacher teacher;
+
+    private List<User> users;
+
+    @BeforeEach
+    void setUp() {
+        tearDown();
+
+        teacher = teacherRepository.save(new Teacher().setFirstName("Margot").setLastName("DELAHAYE"));
+        List<User> staff = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            staff.add(new User("staff" + i + "@example.com", "Doe", "John", "hash", false));
+        }
+        users = userRepository.saveAll(staff);
+    }
+
+    @AfterEach
+    void tearDown() {
+        sessionRepository.deleteAll();
+        userRepository.deleteAll();
+        teacherRepository.deleteAll();
+    }
+
+    // Un groupe dans une session de trois places dont une est prise : résultat par utilisateur
+    @Test
+    void participateAll_ShouldReportOutcomePerUser() throws Exception {
+        Session session = session(3, users.get(0));
+
+        mockMvc.perform(post("/api/session/{id}/participate", session.getId())
+                        .header("Authorization", "Bearer " + token(true))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(ids(users.get(0).getId(), users.get(1).getId(), 999999L, users.get(1).getId(), users.get(2).getId(), users.get(3).getId())))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].outcome").value("ALREADY_PARTICIPATING"))
+                .andExpect(jsonPath("$[1].outcome").value("JOINED"))
+                .andExpect(jsonPath("$[2].outcome").value("NOT_FOUND"))
+                .andExpect(jsonPath("$[3].outcome").value("ALREADY_PARTICIPATING"))
+                .andExpect(jsonPath("$[4].outcome").value("JOINED"))
+                .andExpect(jsonPath("$[5].outcome").value("FULL"));
+
+        assertThat(participantIds(session)).containsExactlyInAnyOrder(users.get(0).getId(), users.get(1).getId(), users.get(2).getId());
+        assertThat(participantCount(session)).isEqualTo(3);
+    }
+
+    // L'inscription d'un groupe est réservée aux administrateurs
+    @Test
+    void participateAll_ShouldRequireAdmin() throws Exception {
+        Session session = session(null);
+
+        mockMvc.perform(post("/api/session/{id}/participate", session.getId())
+                        .header("Authorization", "Bearer " + token(false))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(ids(users.get(1).getId())))
+                .andExpect(status().isForbidden());
+
+        assertThat(participantIds(session)).isEmpty();
+    }
+
+    // Une semaine de sessions pour un utilisateur : déjà inscrit, complète, inconnue et libres
+    @Test
+    void participateInAll_ShouldReportOutcomePerSession() throws Exception {
+        User user = users.get(4);
+        Session booked = session(null, user);
+        Session full = session(1, users.get(0));
+        Session monday = session(null);
+        Session friday = session(10);
+
+        mockMvc.perform(post("/api/session/participate/{userId}", user.getId())
+                        .header("Authorization", "Bearer " + token(false))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(ids(monday.getId(), booked.getId(), full.getId(), 999999L, friday.getId())))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].outcome").value("JOINED"))
+                .andExpect(jsonPath("$[1].outcome").value("ALREADY_PARTICIPATING"))
+                .andExpect(jsonPath("$[2].outcome").value("FULL"))
+                .andExpect(jsonPath("$[3].outcome").value("NOT_FOUND"))
+                .andExpect(jsonPath("$[4].id").value(friday.getId().intValue()))
+                .andExpect(jsonPath("$[4].outcome").value("JOINED"));
+
+        assertThat(participantIds(monday)).containsExactly(user.getId());
+        assertThat(participantIds(friday)).containsExactly(user.getId());
+        assertThat(participantIds(full)).containsExactly(users.get(0).getId());
+        assertThat(participantCount(monday)).isEqualTo(1);
+        assertThat(participantCount(friday)).isEqualTo(1);
+    }
+
+    private Session session(Integer capacity, User... participants) {
+        Session session = sessionRepository.save(new Session()
+                .setName("Session")
+                .setDate(new Date())
+                .setDescription("Yoga")
+                .setCapacity(capacity)
+                .setTeacher(teacher)
+                .setUsers(new ArrayList<>(Arrays.asList(participants))));
+        jdbcTemplate.update("UPDATE SESSIONS SET participant_count = ? WHERE id = ?", participants.length, session.getId());
+        return session;
+    }
+
+    private String token(boolean admin) {
+        return jwtUtils.generateJwtToken(UserDetailsImpl.builder()
+                .id(users.get(0).getId())
+                .username(users.get(0).getEmail())
+                .firstName("John")
+                .lastName("Doe")
+                .admin(admin)
+                .build());
+    }
+
+    private static String ids(Long... ids) {
+        return "{\"ids\":[" + Arrays.stream(ids).map(String::valueOf).collect(Collectors.joining(",")) + "]}";
+    }
+
+    private List<Long> participantIds(Session session) {
+        return sessionRepository.findParticipants(session.getId()).stream()
+                .map(SessionParticipant::getUserId)
+                .collect(Collectors.toList());
+    }
+
+    private int participantCount(Session session) {
+        return jdbcTemplate.queryForObject("SELECT participant_count FROM SESSIONS WHERE id = ?", Integer.class, session.getId());
+    }
+}
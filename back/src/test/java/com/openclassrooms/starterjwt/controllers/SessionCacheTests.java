@@ -0,0 +1,268 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.repository.WaitlistRepository;
+import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.services.JsonBodyCache;
+import com.openclassrooms.starterjwt.services.SessionDtoCache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Cache des sessions lues par l'API sur une base H2 : les lectures répétées ne coûtent plus de
+ * requête, et chaque écriture est visible dès la lecture suivante.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect"
+})
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+public class SessionCacheTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private TeacherRepository teacherRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private WaitlistRepository waitlistRepository;
+
+    @Autowired
+    private SessionDtoCache sessionDtoCache;
+
+    @Autowired
+    private JsonBodyCache jsonBodyCache;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Teacher teacher;
+
+    private User john;
+
+    private Session session;
+
+    private String token;
+
+    @BeforeEach
+    void setUp() {
+        tearDown();
+
+        teacher = teacherRepository.save(new Teacher().setFirstName("Margot").setLastName("DELAHAYE"));
+        john = userRepository.save(new User("john@example.com", "Doe", "John", "hash", false));
+        session = sessionRepository.save(new Session()
+                .setName("Yoga")
+                .setDate(new Date())
+                .setDescription("Yoga")
+                .setTeacher(teacher)
+                .setUsers(Collections.emptyList()));
+        sessionRepository.save(new Session()
+                .setName("Pilates")
+                .setDate(new Date())
+                .setDescription("Pilates")
+                .setTeacher(teacher)
+                .setUsers(Collections.emptyList()));
+
+        token = jwtUtils.generateJwtToken(UserDetailsImpl.builder()
+                .id(john.getId())
+                .username(john.getEmail())
+                .firstName("John")
+                .lastName("Doe")
+                .admin(true)
+                .build());
+    }
+
+    // Les entrées du cache ne survivent pas aux données écrites directement par les repositories
+    @AfterEach
+    void tearDown() {
+        sessionDtoCache.clear();
+        waitlistRepository.deleteAll();
+        sessionRepository.deleteAll();
+        userRepository.deleteAll();
+        teacherRepository.deleteAll();
+    }
+
+    // Seule la première lecture interroge la base
+    @Test
+    void repeatedReads_ShouldBeServedFromCache() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        mockMvc.perform(get("/api/session").header("Authorization", "Bearer " + token)).andExpect(status().isOk());
+        mockMvc.perform(get("/api/session/{id}", session.getId()).header("Authorization", "Bearer " + token)).andExpect(status().isOk());
+
+        statistics.clear();
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(get("/api/session").header("Authorization", "Bearer " + token))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$", hasSize(2)));
+            mockMvc.perform(get("/api/session/{id}", session.getId()).header("Authorization", "Bearer " + token))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.name").value("Yoga"));
+        }
+
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+    }
+
+    // Le client qui renvoie l'ETag reçoit 304 sans requête, jusqu'à la prochaine écriture
+    @Test
+    void revalidation_ShouldAnswerNotModifiedUntilNextWrite() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        String etag = readAll().andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(etag).isNotNull();
+
+        statistics.clear();
+        mockMvc.perform(get("/api/session").header("Authorization", "Bearer " + token).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag));
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+
+        mockMvc.perform(post("/api/session/{id}/participate/{userId}", session.getId(), john.getId())
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+
+        String changed = mockMvc.perform(get("/api/session").header("Authorization", "Bearer " + token).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.id == " + session.getId() + ")].users[0]").value(john.getId().intValue()))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(changed).isNotEqualTo(etag);
+    }
+
+    // Inscription puis désinscription : la liste et la session lues juste après sont à jour
+    @Test
+    void participation_ShouldBeVisibleOnNextRead() throws Exception {
+        readAll();
+        read();
+
+        mockMvc.perform(post("/api/session/{id}/participate/{userId}", session.getId(), john.getId())
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+
+        read().andExpect(jsonPath("$.users", contains(john.getId().intValue())));
+        readAll().andExpect(jsonPath("$[?(@.id == " + session.getId() + ")].users[0]").value(john.getId().intValue()));
+
+        mockMvc.perform(delete("/api/session/{id}/participate/{userId}", session.getId(), john.getId())
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+
+        read().andExpect(jsonPath("$.users", empty()));
+    }
+
+    // Modification, création et suppression : jamais de lecture périmée
+    @Test
+    void writes_ShouldBeVisibleOnNextRead() throws Exception {
+        readAll();
+        read();
+
+        SessionDto update = dto("Yoga du soir");
+        mockMvc.perform(put("/api/session/{id}", session.getId())
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(update)))
+                .andExpect(status().isOk());
+        read().andExpect(jsonPath("$.name").value("Yoga du soir"));
+
+        SessionDto created = dto("Stretching");
+        mockMvc.perform(post("/api/session")
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(created)))
+                .andExpect(status().isOk());
+        readAll().andExpect(jsonPath("$", hasSize(3)));
+
+        mockMvc.perform(delete("/api/session/{id}", session.getId()).header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/session/{id}", session.getId()).header("Authorization", "Bearer " + token))
+                .andExpect(status().isNotFound());
+        readAll().andExpect(jsonPath("$", hasSize(2)));
+    }
+
+    // Une métrique par cache ; une lecture répétée est servie par le corps JSON déjà encodé
+    @Test
+    void bindTo_ShouldRegisterOneMetricPerCache() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        sessionDtoCache.bindTo(registry);
+        jsonBodyCache.bindTo(registry);
+
+        read();
+        double hits = registry.get("cache.gets").tag("cache", "jsonBody").tag("result", "hit").functionCounter().count();
+        read();
+
+        assertThat(registry.get("cache.gets").tag("cache", "jsonBody").tag("result", "hit").functionCounter().count())
+                .isEqualTo(hits + 1);
+        assertThat(registry.get("cache.size").tag("cache", "sessionById").gauge()).isNotNull();
+        assertThat(registry.get("cache.size").tag("cache", "sessionCatalog").gauge()).isNotNull();
+    }
+
+    private SessionDto dto(String name) {
+        SessionDto dto = new SessionDto();
+        dto.setName(name);
+        dto.setDate(new Date());
+        dto.setTeacher_id(teacher.getId());
+        dto.setDescription(name);
+        dto.setUsers(new ArrayList<>());
+        return dto;
+    }
+
+    private ResultActions read() throws Exception {
+        return mockMvc.perform(get("/api/session/{id}", session.getId()).header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+    }
+
+    private ResultActions readAll() throws Exception {
+        return mockMvc.perform(get("/api/session").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+    }
+}
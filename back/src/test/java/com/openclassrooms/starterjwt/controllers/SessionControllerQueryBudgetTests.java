@@ -0,0 +1,231 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.services.SessionDtoCache;
+
+/**
+ * Budget de requêtes de la lecture des sessions, mesuré avec les statistiques Hibernate sur une base H2.
+ * Le nombre de requêtes ne dépend ni du nombre de sessions ni du nombre de participants,
+ * et aucune entité User n'est chargée.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect"
+})
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+public class SessionControllerQueryBudgetTests {
+
+    private static final long FIND_ALL_QUERY_BUDGET = 2;
+
+    private static final long FIND_BY_ID_QUERY_BUDGET = 2;
+
+    private static final long PARTICIPATE_QUERY_BUDGET = 5;
+
+    private static final long NO_LONGER_PARTICIPATE_QUERY_BUDGET = 4;
+
+    private static final int LARGE_CLASS_SIZE = 300;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private TeacherRepository teacherRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired(required = false)
+    private SessionDtoCache sessionDtoCache;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    private String token;
+
+    private List<Session> sessions;
+
+    private List<User> users;
+
+    @BeforeEach
+    void setUp() {
+        sessionRepository.deleteAll();
+        userRepository.deleteAll();
+        teacherRepository.deleteAll();
+
+        Teacher teacher = teacherRepository.save(new Teacher().setFirstName("Margot").setLastName("DELAHAYE"));
+
+        users = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            users.add(userRepository.save(new User("user" + i + "@example.com", "Doe", "John", "hash", false)));
+        }
+
+        sessions = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            sessions.add(sessionRepository.save(new Session()
+                    .setName("Session " + i)
+                    .setDate(new Date())
+                    .setDescription("Yoga")
+                    .setTeacher(teacher)
+                    .setUsers(i == 0 ? Collections.emptyList() : new ArrayList<>(users.subList(0, i + 1)))));
+        }
+
+        token = jwtUtils.generateJwtToken(UserDetailsImpl.builder()
+                .id(users.get(0).getId())
+                .username(users.get(0).getEmail())
+                .firstName("John")
+                .lastName("Doe")
+                .admin(false)
+                .build());
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    // Les autres tests partagent la base H2 : on ne laisse pas de participations derrière nous
+    @AfterEach
+    void tearDown() {
+        if (sessionDtoCache != null) {
+            sessionDtoCache.clear();
+        }
+        sessionRepository.deleteAll();
+        userRepository.deleteAll();
+        teacherRepository.deleteAll();
+    }
+
+    // Toutes les sessions : deux requêtes, aucune entité chargée
+    @Test
+    void findAll_ShouldStayWithinQueryBudget() throws Exception {
+        mockMvc.perform(get("/api/session").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(4)))
+                .andExpect(jsonPath("$[0].users", hasSize(0)))
+                .andExpect(jsonPath("$[3].users", hasSize(4)))
+                .andExpect(jsonPath("$[3].teacher_id").value(sessions.get(3).getTeacher().getId().intValue()));
+
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(FIND_ALL_QUERY_BUDGET);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    // Une session : deux requêtes, aucune entité chargée
+    @Test
+    void findById_ShouldStayWithinQueryBudget() throws Exception {
+        Session session = sessions.get(2);
+
+        mockMvc.perform(get("/api/session/{id}", session.getId()).header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Session 2"))
+                .andExpect(jsonPath("$.users", containsInAnyOrder(
+                        users.get(0).getId().intValue(), users.get(1).getId().intValue(), users.get(2).getId().intValue())));
+
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(FIND_BY_ID_QUERY_BUDGET);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    // Session inconnue : 404 sans lecture des participants
+    @Test
+    void findById_NotFound() throws Exception {
+        mockMvc.perform(get("/api/session/{id}", 999999L).header("Authorization", "Bearer " + token))
+                .andExpect(status().isNotFound());
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    // Inscription à une session de 300 participants : le coût ne dépend pas de la taille du cours
+    @Test
+    void participate_ShouldNotDependOnClassSize() throws Exception {
+        Session session = largeClass();
+        User newcomer = userRepository.save(new User("newcomer@example.com", "Doe", "Jane", "hash", false));
+        statistics.clear();
+
+        mockMvc.perform(post("/api/session/{id}/participate/{userId}", session.getId(), newcomer.getId())
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(PARTICIPATE_QUERY_BUDGET);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+        assertThat(sessionRepository.findParticipants(session.getId())).hasSize(LARGE_CLASS_SIZE + 1);
+
+        // Une seconde inscription est refusée sans ajouter de ligne
+        mockMvc.perform(post("/api/session/{id}/participate/{userId}", session.getId(), newcomer.getId())
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isBadRequest());
+        assertThat(sessionRepository.findParticipants(session.getId())).hasSize(LARGE_CLASS_SIZE + 1);
+    }
+
+    // Désinscription d'une session de 300 participants : une seule ligne supprimée
+    @Test
+    void noLongerParticipate_ShouldNotDependOnClassSize() throws Exception {
+        Session session = largeClass();
+        Long leaverId = session.getUsers().get(0).getId();
+        statistics.clear();
+
+        mockMvc.perform(delete("/api/session/{id}/participate/{userId}", session.getId(), leaverId)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(NO_LONGER_PARTICIPATE_QUERY_BUDGET);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+        assertThat(sessionRepository.findParticipants(session.getId())).hasSize(LARGE_CLASS_SIZE - 1);
+
+        mockMvc.perform(delete("/api/session/{id}/participate/{userId}", session.getId(), leaverId)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isBadRequest());
+    }
+
+    private Session largeClass() {
+        List<User> participants = new ArrayList<>();
+        for (int i = 0; i < LARGE_CLASS_SIZE; i++) {
+            participants.add(new User("student" + i + "@example.com", "Doe", "John", "hash", false));
+        }
+
+        return sessionRepository.save(new Session()
+                .setName("Large class")
+                .setDate(new Date())
+                .setDescription("Yoga")
+                .setTeacher(sessions.get(0).getTeacher())
+                .setUsers(userRepository.saveAll(participants)));
+    }
+}
@@ -0,0 +1,233 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.repository.WaitlistRepository;
+import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.services.SessionDtoCache;
+
+/**
+ * Liste paginée des sessions par curseur, sur une base H2 : ordre (date, id), filtres et coût
+ * constant d'une page quelle que soit sa profondeur.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect"
+})
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+public class SessionPaginationTests {
+
+    private static final int SESSIONS = 45;
+
+    private static final LocalDate FIRST_DAY = LocalDate.of(2024, 1, 1);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private TeacherRepository teacherRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private WaitlistRepository waitlistRepository;
+
+    @Autowired(required = false)
+    private SessionDtoCache sessionDtoCache;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Teacher margot;
+
+    private List<Session> sessions;
+
+    private String token;
+
+    @BeforeEach
+    void setUp() {
+        tearDown();
+
+        margot = teacherRepository.save(new Teacher().setFirstName("Margot").setLastName("DELAHAYE"));
+        Teacher helene = teacherRepository.save(new Teacher().setFirstName("Hélène").setLastName("THIERCELIN"));
+
+        // Trois sessions par jour, créées dans le désordre ; une session sur trois est complète
+        List<Session> candidates = new ArrayList<>();
+        for (int i = SESSIONS - 1; i >= 0; i--) {
+            boolean full = i % 3 == 0;
+            candidates.add(new Session()
+                    .setName("Session " + i)
+                    .setDate(day(FIRST_DAY.plusDays(i / 3)))
+                    .setDescription("Yoga")
+                    .setCapacity(full ? 1 : 10)
+                    .setParticipantCount(full ? 1 : 0)
+                    .setTeacher(i % 2 == 0 ? margot : helene)
+                    .setUsers(Collections.emptyList()));
+        }
+        sessions = sessionRepository.saveAll(candidates);
+        sessions.sort(Comparator.comparing(Session::getDate).thenComparing(Session::getId));
+
+        token = jwtUtils.generateJwtToken(UserDetailsImpl.builder()
+                .id(1L)
+                .username("yoga@studio.com")
+                .firstName("Admin")
+                .lastName("Admin")
+                .admin(true)
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (sessionDtoCache != null) {
+            sessionDtoCache.clear();
+        }
+        waitlistRepository.deleteAll();
+        sessionRepository.deleteAll();
+        userRepository.deleteAll();
+        teacherRepository.deleteAll();
+    }
+
+    // Parcours de toutes les pages : chaque session apparaît une fois, dans l'ordre (date, id)
+    @Test
+    void pages_ShouldListEverySessionOnceInDateOrder() throws Exception {
+        LinkedMultiValueMap<String, String> params = new LinkedMultiValueMap<>();
+        params.add("size", "10");
+
+        assertThat(readAllPages(params))
+                .containsExactlyElementsOf(ids(sessions));
+    }
+
+    // Filtres combinés : période, enseignant et places libres
+    @Test
+    void pages_ShouldApplyFilters() throws Exception {
+        LocalDate from = FIRST_DAY.plusDays(2);
+        LocalDate to = FIRST_DAY.plusDays(9);
+
+        List<Session> expected = sessions.stream()
+                .filter(session -> !session.getDate().before(day(from)) && session.getDate().before(day(to.plusDays(1))))
+                .filter(session -> session.getTeacher().getId().equals(margot.getId()))
+                .filter(session -> session.getParticipantCount() < session.getCapacity())
+                .collect(Collectors.toList());
+
+        LinkedMultiValueMap<String, String> params = new LinkedMultiValueMap<>();
+        params.add("size", "3");
+        params.add("from", from.toString());
+        params.add("to", to.toString());
+        params.add("teacherId", margot.getId().toString());
+        params.add("freeSeats", "true");
+
+        assertThat(expected).isNotEmpty();
+        assertThat(readAllPages(params)).containsExactlyElementsOf(ids(expected));
+    }
+
+    // Une page profonde coûte autant que la première : deux requêtes, sans décalage
+    @Test
+    void deepPage_ShouldStayWithinQueryBudget() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        String cursor = null;
+
+        for (int page = 0; page < 4; page++) {
+            MockHttpServletRequestBuilder request = get("/api/session/page").param("size", "10");
+            if (cursor != null) {
+                request.param("cursor", cursor);
+            }
+
+            statistics.clear();
+            JsonNode body = read(request);
+            assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(2);
+            cursor = body.get("nextCursor").asText();
+        }
+    }
+
+    // Un curseur illisible est refusé
+    @Test
+    void malformedCursor_ShouldBeRejected() throws Exception {
+        mockMvc.perform(get("/api/session/page").param("cursor", "not-a-cursor").header("Authorization", "Bearer " + token))
+                .andExpect(status().isBadRequest());
+    }
+
+    // L'ancienne liste complète reste disponible
+    @Test
+    void unpaginatedList_ShouldStillReturnEverySession() throws Exception {
+        mockMvc.perform(get("/api/session").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(SESSIONS));
+    }
+
+    private List<Long> readAllPages(MultiValueMap<String, String> params) throws Exception {
+        List<Long> ids = new ArrayList<>();
+        MockHttpServletRequestBuilder request = get("/api/session/page").params(params);
+        while (true) {
+            JsonNode body = read(request);
+            body.get("sessions").forEach(session -> ids.add(session.get("id").asLong()));
+
+            JsonNode cursor = body.get("nextCursor");
+            if (cursor.isNull()) {
+                return ids;
+            }
+            request = get("/api/session/page").params(params).param("cursor", cursor.asText());
+        }
+    }
+
+    private JsonNode read(MockHttpServletRequestBuilder request) throws Exception {
+        String body = mockMvc.perform(request.header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body);
+    }
+
+    private static List<Long> ids(List<Session> sessions) {
+        return sessions.stream().map(Session::getId).collect(Collectors.toList());
+    }
+
+    private static Date day(LocalDate day) {
+        return Date.from(day.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+}
@@ -0,0 +1,200 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.openclassrooms.starterjwt.exception.ConflictException;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.services.ParticipationBatcher;
+import com.openclassrooms.starterjwt.services.SessionService;
+
+/**
+ * Inscriptions simultanées sur une seule session très demandée, sur une base H2, par le chemin direct
+ * et en mode burst. La session ne doit jamais dépasser sa capacité, quel que soit l'ordre d'arrivée des requêtes.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect"
+})
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+public class SessionParticipationStressTests {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionParticipationStressTests.class);
+
+    private static final int CAPACITY = 50;
+
+    private static final int CANDIDATES = 400;
+
+    private static final int THREADS = 32;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private TeacherRepository teacherRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private SessionService sessionService;
+
+    private Session session;
+
+    private List<User> candidates;
+
+    private String token;
+
+    @BeforeEach
+    void setUp() {
+        sessionRepository.deleteAll();
+        userRepository.deleteAll();
+        teacherRepository.deleteAll();
+
+        Teacher teacher = teacherRepository.save(new Teacher().setFirstName("Margot").setLastName("DELAHAYE"));
+        session = sessionRepository.save(new Session()
+                .setName("Hot session")
+                .setDate(new Date())
+                .setDescription("Yoga")
+                .setCapacity(CAPACITY)
+                .setTeacher(teacher)
+                .setUsers(Collections.emptyList()));
+
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < CANDIDATES; i++) {
+            users.add(new User("candidate" + i + "@example.com", "Doe", "John", "hash", false));
+        }
+        candidates = userRepository.saveAll(users);
+
+        token = jwtUtils.generateJwtToken(UserDetailsImpl.builder()
+                .id(candidates.get(0).getId())
+                .username(candidates.get(0).getEmail())
+                .firstName("John")
+                .lastName("Doe")
+                .admin(false)
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        sessionRepository.deleteAll();
+        userRepository.deleteAll();
+        teacherRepository.deleteAll();
+    }
+
+    // Toutes les inscriptions arrivent en même temps : exactement CAPACITY réussissent, les autres reçoivent 409
+    @Test
+    void participate_ShouldNeverOverbook() throws Exception {
+        Map<Integer, AtomicInteger> statuses = joinConcurrently("direct", candidate -> mockMvc
+                .perform(post("/api/session/{id}/participate/{userId}", session.getId(), candidate.getId())
+                        .header("Authorization", "Bearer " + token))
+                .andReturn().getResponse().getStatus());
+
+        assertSeatsAllocated(statuses);
+    }
+
+    // Même rafale en mode burst : les inscriptions sont résolues par lots, sans surréservation
+    @Test
+    void participate_BurstMode_ShouldNeverOverbook() throws Exception {
+        ParticipationBatcher batcher = new ParticipationBatcher(sessionService, 100, 5000, CANDIDATES, 4);
+        try {
+            Map<Integer, AtomicInteger> statuses = joinConcurrently("burst", candidate -> {
+                try {
+                    batcher.participate(session.getId(), candidate.getId());
+                    return 200;
+                } catch (ConflictException e) {
+                    return 409;
+                }
+            });
+
+            assertSeatsAllocated(statuses);
+        } finally {
+            batcher.destroy();
+        }
+    }
+
+    private Map<Integer, AtomicInteger> joinConcurrently(String mode, Join join) throws Exception {
+        Map<Integer, AtomicInteger> statuses = new ConcurrentHashMap<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (User candidate : candidates) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                statuses.computeIfAbsent(join.perform(candidate), key -> new AtomicInteger()).incrementAndGet();
+                return null;
+            }));
+        }
+
+        long startedAt = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        long elapsedNanos = System.nanoTime() - startedAt;
+        executor.shutdown();
+
+        // Reported for comparison between the modes and between runs, not asserted: it depends on the machine
+        logger.info("{}: {} concurrent joins on one session with {} threads: {} requests/s",
+                mode, CANDIDATES, THREADS, Math.round(CANDIDATES / (elapsedNanos / 1e9)));
+        return statuses;
+    }
+
+    private void assertSeatsAllocated(Map<Integer, AtomicInteger> statuses) {
+        assertThat(statuses.keySet()).containsOnly(200, 409);
+        assertThat(statuses.get(200).get()).isEqualTo(CAPACITY);
+        assertThat(statuses.get(409).get()).isEqualTo(CANDIDATES - CAPACITY);
+
+        assertThat(sessionRepository.findParticipants(session.getId())).hasSize(CAPACITY);
+        assertThat(jdbcTemplate.queryForObject("SELECT participant_count FROM SESSIONS WHERE id = ?", Integer.class, session.getId()))
+                .isEqualTo(CAPACITY);
+    }
+
+    @FunctionalInterface
+    private interface Join {
+        int perform(User candidate) throws Exception;
+    }
+}
@@ -0,0 +1,227 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.SessionParticipant;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.repository.WaitlistRepository;
+import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+
+/**
+ * Liste d'attente d'une session complète, sur une base H2 : positions, désistements et promotion
+ * du premier de la liste quand une place se libère.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect"
+})
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+public class SessionWaitlistTests {
+
+    private static final int CAPACITY = 2;
+
+    private static final int LONG_WAITLIST = 300;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private TeacherRepository teacherRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private WaitlistRepository waitlistRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Session session;
+
+    private List<User> users;
+
+    private String token;
+
+    @BeforeEach
+    void setUp() {
+        tearDown();
+
+        Teacher teacher = teacherRepository.save(new Teacher().setFirstName("Margot").setLastName("DELAHAYE"));
+        session = sessionRepository.save(new Session()
+                .setName("Full session")
+                .setDate(new Date())
+                .setDescription("Yoga")
+                .setCapacity(CAPACITY)
+                .setTeacher(teacher)
+                .setUsers(Collections.emptyList()));
+
+        List<User> candidates = new ArrayList<>();
+        for (int i = 0; i < LONG_WAITLIST + CAPACITY; i++) {
+            candidates.add(new User("waiting" + i + "@example.com", "Doe", "John", "hash", false));
+        }
+        users = userRepository.saveAll(candidates);
+
+        token = jwtUtils.generateJwtToken(UserDetailsImpl.builder()
+                .id(users.get(0).getId())
+                .username(users.get(0).getEmail())
+                .firstName("John")
+                .lastName("Doe")
+                .admin(false)
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        waitlistRepository.deleteAll();
+        sessionRepository.deleteAll();
+        userRepository.deleteAll();
+        teacherRepository.deleteAll();
+    }
+
+    // Parcours complet : session pleine, file d'attente, désistement puis promotion du premier
+    @Test
+    void leavingAFullSession_ShouldPromoteHeadOfWaitlist() throws Exception {
+        perform("post", "participate", 0).andExpect(status().isOk());
+        perform("post", "participate", 1).andExpect(status().isOk());
+        perform("post", "participate", 2).andExpect(status().isConflict());
+
+        perform("post", "waitlist", 2).andExpect(status().isOk()).andExpect(jsonPath("$.position").value(1));
+        perform("post", "waitlist", 3).andExpect(status().isOk()).andExpect(jsonPath("$.position").value(2));
+        perform("post", "waitlist", 4).andExpect(status().isOk()).andExpect(jsonPath("$.position").value(3));
+        perform("post", "waitlist", 4).andExpect(status().isBadRequest());
+        perform("post", "waitlist", 0).andExpect(status().isBadRequest());
+
+        // Un désistement au milieu de la file fait avancer les suivants
+        perform("delete", "waitlist", 3).andExpect(status().isOk());
+        perform("get", "waitlist", 4).andExpect(status().isOk()).andExpect(jsonPath("$.position").value(2));
+
+        // Une place se libère : le premier de la file entre dans la session
+        perform("delete", "participate", 0).andExpect(status().isOk());
+
+        assertThat(participantIds()).containsExactlyInAnyOrder(users.get(1).getId(), users.get(2).getId());
+        assertThat(participantCount()).isEqualTo(CAPACITY);
+        perform("get", "waitlist", 2).andExpect(status().isNotFound());
+        perform("get", "waitlist", 4).andExpect(status().isOk()).andExpect(jsonPath("$.position").value(1));
+
+        // La file se vide, la place suivante reste libre
+        perform("delete", "participate", 1).andExpect(status().isOk());
+        perform("delete", "participate", 2).andExpect(status().isOk());
+
+        assertThat(participantIds()).containsExactly(users.get(4).getId());
+        assertThat(participantCount()).isEqualTo(1);
+        perform("post", "waitlist", 5).andExpect(status().isBadRequest());
+    }
+
+    // Le premier de la file est entré par un autre chemin (mise à jour, inscription de groupe) : il quitte la file
+    // et le désistement fait entrer le suivant au lieu d'échouer sur la clé primaire de PARTICIPATE
+    @Test
+    void leaving_ShouldSkipHeadAlreadyParticipating() throws Exception {
+        perform("post", "participate", 0).andExpect(status().isOk());
+        perform("post", "participate", 1).andExpect(status().isOk());
+        perform("post", "waitlist", 2).andExpect(status().isOk());
+        perform("post", "waitlist", 3).andExpect(status().isOk());
+
+        jdbcTemplate.update("INSERT INTO PARTICIPATE (session_id, user_id) VALUES (?, ?)", session.getId(), users.get(2).getId());
+        jdbcTemplate.update("UPDATE SESSIONS SET capacity = 3, participant_count = 3 WHERE id = ?", session.getId());
+
+        perform("delete", "participate", 0).andExpect(status().isOk());
+
+        assertThat(participantIds()).containsExactlyInAnyOrder(users.get(1).getId(), users.get(2).getId(), users.get(3).getId());
+        assertThat(participantCount()).isEqualTo(3);
+        assertThat(waitlistRepository.count()).isZero();
+    }
+
+    // File de 300 personnes qui bouge : la position se lit en une requête et la promotion ne dépend pas de la longueur
+    @Test
+    void longWaitlist_ShouldStayCheapUnderChurn() throws Exception {
+        perform("post", "participate", 0).andExpect(status().isOk());
+        perform("post", "participate", 1).andExpect(status().isOk());
+        for (int i = CAPACITY; i < users.size(); i++) {
+            perform("post", "waitlist", i).andExpect(status().isOk());
+        }
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        int last = users.size() - 1;
+
+        statistics.clear();
+        perform("get", "waitlist", last).andExpect(status().isOk()).andExpect(jsonPath("$.position").value(LONG_WAITLIST));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+        // Dix désistements en tête de file, puis dix promotions
+        for (int i = CAPACITY; i < CAPACITY + 10; i++) {
+            perform("delete", "waitlist", i).andExpect(status().isOk());
+        }
+        statistics.clear();
+        perform("delete", "participate", 0).andExpect(status().isOk());
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(7);
+
+        assertThat(participantIds()).contains(users.get(CAPACITY + 10).getId());
+        perform("get", "waitlist", last).andExpect(status().isOk()).andExpect(jsonPath("$.position").value(LONG_WAITLIST - 11));
+    }
+
+    private ResultActions perform(String method, String resource, int userIndex) throws Exception {
+        String url = "/api/session/{id}/" + resource + "/{userId}";
+        Long userId = users.get(userIndex).getId();
+        switch (method) {
+            case "post":
+                return mockMvc.perform(post(url, session.getId(), userId).header("Authorization", "Bearer " + token));
+            case "delete":
+                return mockMvc.perform(delete(url, session.getId(), userId).header("Authorization", "Bearer " + token));
+            default:
+                return mockMvc.perform(get(url, session.getId(), userId).header("Authorization", "Bearer " + token));
+        }
+    }
+
+    private List<Long> participantIds() {
+        return sessionRepository.findParticipants(session.getId()).stream()
+                .map(SessionParticipant::getUserId)
+                .collect(Collectors.toList());
+    }
+
+    private int participantCount() {
+        return jdbcTemplate.queryForObject("SELECT participant_count FROM SESSIONS WHERE id = ?", Integer.class, session.getId());
+    }
+}
@@ -0,0 +1,186 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.repository.WaitlistRepository;
+import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+
+/**
+ * Sessions réservées par un utilisateur, lues depuis PARTICIPATE par user_id sur une base H2 :
+ * sessions à venir puis passées, pagination et droits d'accès.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect"
+})
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+public class UserSessionsTests {
+
+    private static final int CATALOG = 60;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private TeacherRepository teacherRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private WaitlistRepository waitlistRepository;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private User john;
+
+    private User jane;
+
+    /** Sessions de John, de la plus ancienne à la plus lointaine. */
+    private List<Long> booked;
+
+    @BeforeEach
+    void setUp() {
+        tearDown();
+
+        Teacher teacher = teacherRepository.save(new Teacher().setFirstName("Margot").setLastName("DELAHAYE"));
+        john = userRepository.save(new User("john@example.com", "Doe", "John", "hash", false));
+        jane = userRepository.save(new User("jane@example.com", "Doe", "Jane", "hash", false));
+
+        // Un catalogue de sessions de J-30 à J+29, à midi passé : John en réserve une sur six, Jane toutes les autres
+        Instant now = Instant.now();
+        List<Session> catalog = new ArrayList<>();
+        for (int i = 0; i < CATALOG; i++) {
+            boolean byJohn = i % 6 == 0;
+            catalog.add(new Session()
+                    .setName("Session " + i)
+                    .setDate(Date.from(now.plus(i - CATALOG / 2, ChronoUnit.DAYS).plus(12, ChronoUnit.HOURS)))
+                    .setDescription("Yoga")
+                    .setTeacher(teacher)
+                    .setUsers(Collections.singletonList(byJohn ? john : jane)));
+        }
+        List<Session> sessions = sessionRepository.saveAll(catalog);
+        booked = new ArrayList<>();
+        for (int i = 0; i < CATALOG; i += 6) {
+            booked.add(sessions.get(i).getId());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        waitlistRepository.deleteAll();
+        sessionRepository.deleteAll();
+        userRepository.deleteAll();
+        teacherRepository.deleteAll();
+    }
+
+    // Sessions à venir dans l'ordre des dates, puis sessions passées de la plus récente à la plus ancienne
+    @Test
+    void mySessions_ShouldListUpcomingThenPastBookings() throws Exception {
+        List<Long> upcoming = readAllPages("/api/user/me/sessions?size=2", john);
+        List<Long> past = readAllPages("/api/user/me/sessions?size=2&past=true", john);
+
+        assertThat(upcoming).containsExactlyElementsOf(booked.subList(5, 10));
+        List<Long> pastExpected = new ArrayList<>(booked.subList(0, 5));
+        Collections.reverse(pastExpected);
+        assertThat(past).containsExactlyElementsOf(pastExpected);
+    }
+
+    // Deux requêtes par page, quelle que soit la taille du catalogue
+    @Test
+    void mySessions_ShouldStayWithinQueryBudget() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        statistics.clear();
+        read("/api/user/" + john.getId() + "/sessions?size=3", john);
+
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(2);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    // Les réservations d'un autre utilisateur ne sont lisibles que par un administrateur
+    @Test
+    void userSessions_ShouldOnlyBeReadableByOwnerOrAdmin() throws Exception {
+        mockMvc.perform(get("/api/user/{id}/sessions", john.getId()).header("Authorization", "Bearer " + token(jane, false)))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/api/user/{id}/sessions", "abc").header("Authorization", "Bearer " + token(jane, false)))
+                .andExpect(status().isBadRequest());
+
+        JsonNode page = read("/api/user/" + john.getId() + "/sessions?size=50", jane, true);
+        assertThat(page.get("sessions")).hasSize(5);
+    }
+
+    private List<Long> readAllPages(String url, User user) throws Exception {
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            JsonNode page = read(cursor == null ? url : url + "&cursor=" + cursor, user);
+            page.get("sessions").forEach(session -> ids.add(session.get("id").asLong()));
+            cursor = page.get("nextCursor").isNull() ? null : page.get("nextCursor").asText();
+        } while (cursor != null);
+        return ids;
+    }
+
+    private JsonNode read(String url, User user) throws Exception {
+        return read(url, user, false);
+    }
+
+    private JsonNode read(String url, User user, boolean admin) throws Exception {
+        String body = mockMvc.perform(get(url).header("Authorization", "Bearer " + token(user, admin)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body);
+    }
+
+    private String token(User user, boolean admin) {
+        return jwtUtils.generateJwtToken(UserDetailsImpl.builder()
+                .id(user.getId())
+                .username(user.getEmail())
+                .firstName(user.getFirstName())
+                .lastName(user.getLastName())
+                .admin(admin)
+                .build());
+    }
+}
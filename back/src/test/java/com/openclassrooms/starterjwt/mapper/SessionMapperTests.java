@@ -4,10 +4,12 @@ package com.openclassrooms.starterjwt.mapper;
 import com.openclassrooms.starterjwt.dto.SessionDto;
 import com.openclassrooms.starterjwt.exception.BadRequestException;
 import com.openclassrooms.starterjwt.exception.NotFoundException;
+import com.openclassrooms.starterjwt.exception.UnknownIdsException;
 import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.SessionSummary;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 import com.openclassrooms.starterjwt.services.SessionService;
 import com.openclassrooms.starterjwt.services.TeacherService;
@@ -21,10 +23,12 @@ import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
-import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import javax.validation.Validator;
 
@@ -112,6 +116,11 @@ class SessionMapperTests {
         // Mocks des services
         when(teacherService.findById(1L)).thenReturn(teacher);
         when(userService.findById(1L)).thenReturn(user1);
+        // Les participants sont résolus en une seule requête : seuls les utilisateurs 1 et 2 existent
+        when(userService.findAllById(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return Stream.of(user1, user2).filter(user -> ids.contains(user.getId())).collect(Collectors.toList());
+        });
     }
   
 
@@ -346,10 +355,10 @@ class SessionMapperTests {
     // Test d'intégration : Essayer de participer à une session déjà pleine
     @Test
     void testAlreadyParticipatedInSession() {
-        session.setUsers(Arrays.asList(user1)); // L'utilisateur 1 est déjà dans la session
-
-        when(sessionRepository.findById(1L)).thenReturn(Optional.of(session));
-        when(userRepository.findById(1L)).thenReturn(Optional.of(user1));
+        // L'utilisateur 1 est déjà dans la session
+        when(sessionRepository.existsById(1L)).thenReturn(true);
+        when(userRepository.existsById(1L)).thenReturn(true);
+        when(sessionRepository.isParticipant(1L, 1L)).thenReturn(true);
 
         // Vérifier que l'exception est levée
         assertThrows(BadRequestException.class, () -> sessionService.participate(1L, 1L));
@@ -358,7 +367,7 @@ class SessionMapperTests {
     // Test d'intégration : Essayer de participer à une session inexistante
     @Test
     void testSessionNotFound() {
-        when(sessionRepository.findById(1L)).thenReturn(Optional.empty());
+        when(sessionRepository.existsById(1L)).thenReturn(false);
 
         // Vérifier que l'exception est levée pour une session introuvable
         assertThrows(NotFoundException.class, () -> sessionService.participate(1L, 1L));
@@ -367,13 +376,13 @@ class SessionMapperTests {
     // Test d'intégration : Essayer de supprimer un utilisateur d'une session inexistante
     @Test
     void testSessionNotFoundForNoLongerParticipate() {
-        when(sessionRepository.findById(1L)).thenReturn(Optional.empty());
+        when(sessionRepository.existsById(1L)).thenReturn(false);
 
         // Vérifier que l'exception est levée pour une session introuvable
         assertThrows(NotFoundException.class, () -> sessionService.noLongerParticipate(1L, 1L));
     }
 
-    // Test unitaire : Conversion d'un DTO avec un ID d'utilisateur invalide
+    // Test unitaire : Conversion d'un DTO avec un ID d'utilisateur invalide, l'identifiant inconnu est signalé
     @Test
     void testToEntityWithInvalidUserId() {
         SessionDto sessionDto = new SessionDto();
@@ -381,18 +390,58 @@ class SessionMapperTests {
         sessionDto.setName("Yoga Session");
         sessionDto.setDescription("Relaxing yoga session.");
         sessionDto.setTeacher_id(1L);
-        sessionDto.setUsers(Arrays.asList(999L)); // ID d'utilisateur inexistant
+        sessionDto.setUsers(Arrays.asList(1L, 999L)); // ID d'utilisateur inexistant
 
         when(teacherService.findById(1L)).thenReturn(teacher);
-        when(userService.findById(999L)).thenReturn(null); // Utilisateur inexistant
 
         // Conversion du DTO en entité
+        UnknownIdsException exception = assertThrows(UnknownIdsException.class, () -> sessionMapper.toEntity(sessionDto));
+
+        // Vérifier que seul l'identifiant inexistant est signalé
+        assertEquals("user", exception.getEntity());
+        assertEquals(Collections.singletonList(999L), exception.getIds());
+    }
+
+    // Test unitaire : Un enseignant inexistant est signalé au lieu d'être remplacé par null
+    @Test
+    void testToEntityWithInvalidTeacherId() {
+        SessionDto sessionDto = createSessionDto(1L, "Yoga Session", 999L, Collections.singletonList(1L));
+
+        when(teacherService.findById(999L)).thenReturn(null);
+
+        UnknownIdsException exception = assertThrows(UnknownIdsException.class, () -> sessionMapper.toEntity(sessionDto));
+
+        assertEquals("teacher", exception.getEntity());
+        assertEquals(Collections.singletonList(999L), exception.getIds());
+    }
+
+    // Test unitaire : Les participants sont résolus en une seule requête, sans doublon et dans l'ordre du DTO
+    @Test
+    void testToEntityResolvesUsersWithOneQuery() {
+        SessionDto sessionDto = createSessionDto(1L, "Yoga Session", 1L, Arrays.asList(2L, 1L, 2L));
+
         Session session = sessionMapper.toEntity(sessionDto);
 
-        // Vérifier que la session ne contient aucun utilisateur
-        assertNotNull(session);
-      
+        verify(userService, times(1)).findAllById(anyCollection());
+        verify(userService, never()).findById(anyLong());
+        assertEquals(Arrays.asList(user2, user1), session.getUsers());
     }
+
+    // Test unitaire : Pour une liste de DTOs, chaque enseignant n'est cherché qu'une fois et les utilisateurs en une requête
+    @Test
+    void testToEntityListResolvesReferencesOnce() {
+        List<SessionDto> sessionDtos = Arrays.asList(
+                createSessionDto(1L, "Yoga Session", 1L, Arrays.asList(1L)),
+                createSessionDto(2L, "Meditation Session", 1L, Arrays.asList(1L, 2L)));
+
+        List<Session> sessions = sessionMapper.toEntity(sessionDtos);
+
+        verify(teacherService, times(1)).findById(1L);
+        verify(userService, times(1)).findAllById(anyCollection());
+        assertEquals(teacher, sessions.get(1).getTeacher());
+        assertEquals(2, sessions.get(1).getUsers().size());
+    }
+
     @Test
     void testToEntity() {
         // Conversion de SessionDto en Session
@@ -441,5 +490,29 @@ class SessionMapperTests {
         assertEquals(1, sessionDto.getUsers().size());
     }
 
- 
+    // Conversion d'une projection de session et de ses participants en SessionDto, sans entité
+    @Test
+    void testToDto_FromSummary() {
+        Date date = new Date();
+        SessionSummary summary = new SessionSummary() {
+            public Long getId() { return 3L; }
+            public String getName() { return "Yoga"; }
+            public Date getDate() { return date; }
+            public String getDescription() { return "Yoga session"; }
+            public Long getTeacherId() { return 2L; }
+            public Integer getCapacity() { return 20; }
+            public java.time.LocalDateTime getCreatedAt() { return null; }
+            public java.time.LocalDateTime getUpdatedAt() { return null; }
+        };
+
+        SessionDto dto = sessionMapper.toDto(summary, Arrays.asList(5L, 6L));
+
+        assertEquals(3L, dto.getId());
+        assertEquals("Yoga", dto.getName());
+        assertEquals(date, dto.getDate());
+        assertEquals(2L, dto.getTeacher_id());
+        assertEquals(20, dto.getCapacity());
+        assertEquals(Arrays.asList(5L, 6L), dto.getUsers());
+        verifyNoInteractions(teacherService, userService);
+    }
 }
@@ -0,0 +1,169 @@
+package com.openclassrooms.starterjwt.migration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.EncodedResource;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+/**
+ * Migrations du schéma sur une base H2 vide ou existante, puis vérification par EXPLAIN que les
+ * requêtes principales passent par l'index prévu par chaque migration.
+ */
+class SchemaMigratorTests {
+
+    private EmbeddedDatabase database;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).build();
+        jdbcTemplate = new JdbcTemplate(database);
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    // Base vide : toutes les versions sont appliquées dans l'ordre, puis plus rien au démarrage suivant
+    @Test
+    void migrate_ShouldApplyEveryVersionOnce() {
+        assertThat(new SchemaMigrator(database, 1).migrate()).containsExactly(1, 2, 3, 4, 5);
+        assertThat(new SchemaMigrator(database, 1).migrate()).isEmpty();
+
+        assertThat(jdbcTemplate.queryForList("SELECT version FROM SCHEMA_VERSION ORDER BY version", Integer.class))
+                .containsExactly(1, 2, 3, 4, 5);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM USERS WHERE email = 'yoga@studio.com'", Integer.class))
+                .isEqualTo(1);
+    }
+
+    // Base créée avec l'ancien script.sql : la version 1 est reprise telle quelle, les doublons de PARTICIPATE disparaissent
+    @Test
+    void migrate_ShouldBaselineExistingSchema() {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            ScriptUtils.executeSqlScript(connection,
+                    new EncodedResource(new ClassPathResource("db/migration/V1__baseline.sql"), StandardCharsets.UTF_8));
+            return null;
+        });
+        jdbcTemplate.update("INSERT INTO SESSIONS (name, description, date) VALUES ('Yoga', 'Yoga', CURRENT_TIMESTAMP)");
+        Long sessionId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM SESSIONS", Long.class);
+        Long userId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM USERS", Long.class);
+        jdbcTemplate.update("INSERT INTO PARTICIPATE (session_id, user_id) VALUES (?, ?)", sessionId, userId);
+        jdbcTemplate.update("INSERT INTO PARTICIPATE (session_id, user_id) VALUES (?, ?)", sessionId, userId);
+
+        assertThat(new SchemaMigrator(database, 1).migrate()).containsExactly(2, 3, 4, 5);
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM PARTICIPATE", Integer.class)).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT participant_count FROM SESSIONS WHERE id = ?", Integer.class, sessionId))
+                .isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT checksum FROM SCHEMA_VERSION WHERE version = 1", Long.class)).isNull();
+    }
+
+    // Un script déjà appliqué ne doit plus changer
+    @Test
+    void migrate_ShouldRefuseChangedScript() {
+        new SchemaMigrator(database, 1).migrate();
+        jdbcTemplate.update("UPDATE SCHEMA_VERSION SET checksum = checksum + 1 WHERE version = 2");
+
+        assertThatThrownBy(() -> new SchemaMigrator(database, 1).migrate())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("V2");
+    }
+
+    // Deux nœuds démarrant ensemble : un seul applique les versions, l'autre les trouve déjà appliquées
+    @Test
+    void migrate_ConcurrentNodesShouldApplyEachVersionOnce() throws Exception {
+        ExecutorService nodes = Executors.newFixedThreadPool(2);
+        try {
+            Future<List<Integer>> first = nodes.submit(() -> new SchemaMigrator(database, 1).migrate());
+            Future<List<Integer>> second = nodes.submit(() -> new SchemaMigrator(database, 1).migrate());
+
+            List<Integer> applied = new ArrayList<>(first.get(30, TimeUnit.SECONDS));
+            applied.addAll(second.get(30, TimeUnit.SECONDS));
+            assertThat(applied).containsExactly(1, 2, 3, 4, 5);
+        } finally {
+            nodes.shutdownNow();
+        }
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM SCHEMA_VERSION", Integer.class)).isEqualTo(5);
+    }
+
+    // Des emails en double empêcheraient V3 : refus avant d'exécuter quoi que ce soit de V3
+    @Test
+    void migrate_ShouldRefuseV3WithDuplicateEmails() {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            ScriptUtils.executeSqlScript(connection,
+                    new EncodedResource(new ClassPathResource("db/migration/V1__baseline.sql"), StandardCharsets.UTF_8));
+            return null;
+        });
+        jdbcTemplate.update("INSERT INTO USERS (first_name, last_name, admin, email, password) "
+                + "SELECT first_name, last_name, admin, email, password FROM USERS");
+
+        assertThatThrownBy(() -> new SchemaMigrator(database, 1).migrate())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("V3")
+                .hasMessageContaining("merge or rename");
+
+        assertThat(jdbcTemplate.queryForList("SELECT version FROM SCHEMA_VERSION ORDER BY version", Integer.class))
+                .containsExactly(1, 2);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS "
+                + "WHERE TABLE_NAME = 'SESSIONS' AND COLUMN_NAME = 'CAPACITY'", Integer.class)).isZero();
+    }
+
+    // V2 : participations lues par session via la clé primaire, et par utilisateur via l'index inverse
+    @Test
+    void participateLookups_ShouldUseKeyAndReverseIndex() {
+        new SchemaMigrator(database, 1).migrate();
+
+        assertThat(explain("SELECT user_id FROM PARTICIPATE WHERE session_id = 1")).contains("PRIMARY_KEY");
+        assertThat(explain("SELECT COUNT(*) FROM PARTICIPATE WHERE session_id = 1 AND user_id = 2")).contains("PRIMARY_KEY");
+        assertThat(explain("SELECT session_id FROM PARTICIPATE WHERE user_id = 2")).contains("IDX_PARTICIPATE_USER");
+        assertThat(explain("SELECT s.id FROM PARTICIPATE p JOIN SESSIONS s ON s.id = p.session_id WHERE p.user_id = 2 "
+                + "AND s.date >= CURRENT_TIMESTAMP ORDER BY s.date, s.id"))
+                .contains("IDX_PARTICIPATE_USER");
+    }
+
+    // V3 : la position dans la file d'attente se compte sur l'index (session_id, id)
+    @Test
+    void waitlistPosition_ShouldUseQueueIndex() {
+        new SchemaMigrator(database, 1).migrate();
+
+        assertThat(explain("SELECT COUNT(*) FROM WAITLIST WHERE session_id = 1 AND id <= 10"))
+                .contains("IDX_WAITLIST_SESSION_ORDER");
+    }
+
+    // V4 : listes de sessions par période et par enseignant, triées sans tri supplémentaire
+    @Test
+    void sessionListings_ShouldUseDateAndTeacherIndexes() {
+        new SchemaMigrator(database, 1).migrate();
+
+        assertThat(explain("SELECT id FROM SESSIONS WHERE date >= TIMESTAMP '2024-01-01 00:00:00' "
+                + "AND (date > TIMESTAMP '2024-01-01 00:00:00' OR id > 10) ORDER BY date, id"))
+                .contains("IDX_SESSIONS_DATE_ID")
+                .contains("index sorted");
+        assertThat(explain("SELECT id FROM SESSIONS WHERE teacher_id = 1 AND date >= TIMESTAMP '2024-01-01 00:00:00' ORDER BY date, id"))
+                .contains("IDX_SESSIONS_TEACHER_DATE");
+    }
+
+    private String explain(String query) {
+        return jdbcTemplate.queryForObject("EXPLAIN " + query, String.class);
+    }
+}
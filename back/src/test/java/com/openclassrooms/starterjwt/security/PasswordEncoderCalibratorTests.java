@@ -0,0 +1,78 @@
+package com.openclassrooms.starterjwt.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Tests du calibrage du coût de hachage des mots de passe.
+ */
+public class PasswordEncoderCalibratorTests {
+
+    // Chaque point de coût BCrypt double le temps : on garde le coût le plus élevé sous la cible
+    @Test
+    void testBcryptCost_PicksHighestCostUnderTarget() {
+        // 5 ms au coût 8 -> 10 ms (9), 20 (10), 40 (11), 80 (12), 160 (13)
+        assertThat(PasswordEncoderCalibrator.bcryptCost(80, 5, 8, 4, 16)).isEqualTo(12);
+        assertThat(PasswordEncoderCalibrator.bcryptCost(100, 5, 8, 4, 16)).isEqualTo(12);
+        assertThat(PasswordEncoderCalibrator.bcryptCost(79, 5, 8, 4, 16)).isEqualTo(11);
+    }
+
+    // Le coût reste dans les bornes configurées
+    @Test
+    void testBcryptCost_IsClamped() {
+        assertThat(PasswordEncoderCalibrator.bcryptCost(80, 500, 8, 10, 16)).isEqualTo(10);
+        assertThat(PasswordEncoderCalibrator.bcryptCost(80, 0.001, 8, 10, 14)).isEqualTo(14);
+    }
+
+    // Deux nœuds mesurés différemment vérifient les hachages l'un de l'autre, PBKDF2 compris
+    @Test
+    void testBuild_HashesMatchAcrossCalibrations() {
+        PasswordEncoder fast = new PasswordEncoderCalibrator(80, 4, 6, 1000).build(PasswordEncoderCalibrator.PBKDF2, 0.1);
+        PasswordEncoder slow = new PasswordEncoderCalibrator(80, 4, 6, 1000).build(PasswordEncoderCalibrator.PBKDF2, 50);
+        PasswordEncoder bcryptFast = new PasswordEncoderCalibrator(80, 4, 6, 1000).build(PasswordEncoderCalibrator.BCRYPT, 0.1);
+        PasswordEncoder bcryptSlow = new PasswordEncoderCalibrator(80, 4, 6, 1000).build(PasswordEncoderCalibrator.BCRYPT, 50);
+
+        assertThat(slow.matches("test!1234", fast.encode("test!1234"))).isTrue();
+        assertThat(fast.matches("test!1234", slow.encode("test!1234"))).isTrue();
+        assertThat(bcryptSlow.matches("test!1234", bcryptFast.encode("test!1234"))).isTrue();
+        assertThat(bcryptFast.matches("test!1234", bcryptSlow.encode("test!1234"))).isTrue();
+    }
+
+    // Les anciens hachages sans préfixe restent valides et sont marqués pour réécriture
+    @Test
+    void testBuild_MatchesLegacyBcryptAndUpgradesIt() {
+        PasswordEncoder encoder = new PasswordEncoderCalibrator(1, 4, 5, 1000).build(PasswordEncoderCalibrator.BCRYPT);
+        String legacy = new BCryptPasswordEncoder(4).encode("test!1234");
+
+        assertThat(encoder.matches("test!1234", legacy)).isTrue();
+        assertThat(encoder.upgradeEncoding(legacy)).isTrue();
+
+        String encoded = encoder.encode("test!1234");
+        assertThat(encoded).startsWith("{bcrypt}");
+        assertThat(encoder.matches("test!1234", encoded)).isTrue();
+        assertThat(encoder.upgradeEncoding(encoded)).isFalse();
+    }
+
+    // PBKDF2 peut être choisi pour les nouveaux hachages, BCrypt reste vérifiable
+    @Test
+    void testBuild_Pbkdf2() {
+        PasswordEncoder encoder = new PasswordEncoderCalibrator(1, 4, 5, 1000).build(PasswordEncoderCalibrator.PBKDF2);
+
+        String encoded = encoder.encode("test!1234");
+        assertThat(encoded).startsWith("{pbkdf2}");
+        assertThat(encoder.matches("test!1234", encoded)).isTrue();
+        assertThat(encoder.matches("test!1234", new BCryptPasswordEncoder(4).encode("test!1234"))).isTrue();
+        assertThat(encoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode("test!1234"))).isTrue();
+    }
+
+    // Un identifiant d'encodage inconnu est refusé au démarrage
+    @Test
+    void testBuild_UnknownEncoding() {
+        assertThatThrownBy(() -> new PasswordEncoderCalibrator(1, 4, 5, 1000).build("md5"))
+                .isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -22,7 +22,7 @@ import static org.mockito.Mockito.when;
  * Test d'intégration pour la configuration de sécurité du Web (WebSecurityConfig).
  * Ce test vérifie l'accès à un endpoint sécurisé sans authentification.
  */
-@SpringBootTest
+@SpringBootTest(properties = {"oc.app.schemaMigrationEnabled=false", "oc.app.cacheCoherenceEnabled=false"}) // Pas de base MySQL pendant les tests : ni migration du schéma, ni journal des changements
 @AutoConfigureMockMvc  // Configuration de MockMvc pour simuler des requêtes HTTP
 public class WebSecurityConfigTests {
 
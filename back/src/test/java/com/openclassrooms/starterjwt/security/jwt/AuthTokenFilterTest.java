@@ -1,5 +1,6 @@
 package com.openclassrooms.starterjwt.security.jwt;
 
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -13,6 +14,7 @@ import org.springframework.security.core.userdetails.UserDetails;
 
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import javax.servlet.FilterChain;
 
@@ -55,8 +57,7 @@ class AuthTokenFilterTest {
         SecurityContextHolder.clearContext();
 
         // Simuler le comportement des dépendances
-        when(jwtUtils.validateJwtToken(jwt)).thenReturn(true);
-        when(jwtUtils.getUserNameFromJwtToken(jwt)).thenReturn(username);
+        when(jwtUtils.verify(jwt)).thenReturn(new VerifiedJwt(username, Long.MAX_VALUE, null, null, null, false));
         UserDetails userDetails = mock(UserDetails.class);
         when(userDetailsService.loadUserByUsername(username)).thenReturn(userDetails);
 
@@ -88,7 +89,7 @@ class AuthTokenFilterTest {
         MockHttpServletResponse response = new MockHttpServletResponse();
 
         // Simuler le comportement des dépendances
-        when(jwtUtils.validateJwtToken(jwt)).thenReturn(false);
+        when(jwtUtils.verify(jwt)).thenReturn(null);
 
         // Appeler le filtre
         authTokenFilter.doFilterInternal(request, response, filterChain);
@@ -113,4 +114,127 @@ class AuthTokenFilterTest {
         verify(filterChain).doFilter(request, response);
         assertNull(SecurityContextHolder.getContext().getAuthentication());
     }
+
+    /**
+     * Test unitaire : En mode principal sans état, le filtre construit l'utilisateur à partir du jeton
+     * sans interroger la base de données.
+     */
+    @Test
+    void testDoFilterInternal_StatelessPrincipal() throws Exception {
+        String jwt = "valid.jwt.token";
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/session");
+        request.addHeader("Authorization", "Bearer " + jwt);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        SecurityContextHolder.clearContext();
+
+        ReflectionTestUtils.setField(authTokenFilter, "statelessPrincipal", true);
+        ReflectionTestUtils.setField(authTokenFilter, "freshPrincipalPaths", new String[] {"DELETE /api/user/**"});
+        authTokenFilter.initFreshPrincipalMatchers();
+
+        when(jwtUtils.verify(jwt)).thenReturn(new VerifiedJwt("user1", Long.MAX_VALUE, 1L, "John", "Doe", false));
+
+        authTokenFilter.doFilterInternal(request, response, filterChain);
+
+        UserDetailsImpl principal = (UserDetailsImpl) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        assertEquals(1L, principal.getId());
+        assertEquals("user1", principal.getUsername());
+        verifyNoInteractions(userDetailsService);
+        verify(filterChain).doFilter(request, response);
+    }
+
+    /**
+     * Test unitaire : En mode principal sans état, un ancien jeton sans la revendication id est tout de même
+     * accepté : l'utilisateur est alors chargé depuis la base de données.
+     */
+    @Test
+    void testDoFilterInternal_StatelessPrincipal_LegacyToken() throws Exception {
+        String jwt = "legacy.jwt.token";
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/session");
+        request.addHeader("Authorization", "Bearer " + jwt);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        SecurityContextHolder.clearContext();
+
+        ReflectionTestUtils.setField(authTokenFilter, "statelessPrincipal", true);
+        authTokenFilter.initFreshPrincipalMatchers();
+
+        UserDetails userDetails = mock(UserDetails.class);
+        when(jwtUtils.verify(jwt)).thenReturn(new VerifiedJwt("user1", Long.MAX_VALUE, null, null, null, false));
+        when(userDetailsService.loadUserByUsername("user1")).thenReturn(userDetails);
+
+        authTokenFilter.doFilterInternal(request, response, filterChain);
+
+        assertEquals(userDetails, SecurityContextHolder.getContext().getAuthentication().getPrincipal());
+        verify(filterChain).doFilter(request, response);
+    }
+
+    /**
+     * Test unitaire : Les chemins sensibles revérifient toujours l'utilisateur en base de données.
+     */
+    @Test
+    void testDoFilterInternal_StatelessPrincipal_FreshPath() throws Exception {
+        String jwt = "valid.jwt.token";
+        MockHttpServletRequest request = new MockHttpServletRequest("DELETE", "/api/user/1");
+        request.setServletPath("/api/user/1");
+        request.addHeader("Authorization", "Bearer " + jwt);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        SecurityContextHolder.clearContext();
+
+        ReflectionTestUtils.setField(authTokenFilter, "statelessPrincipal", true);
+        ReflectionTestUtils.setField(authTokenFilter, "freshPrincipalPaths", new String[] {"DELETE /api/user/**"});
+        authTokenFilter.initFreshPrincipalMatchers();
+
+        UserDetails userDetails = mock(UserDetails.class);
+        when(jwtUtils.verify(jwt)).thenReturn(new VerifiedJwt("user1", Long.MAX_VALUE, 1L, "John", "Doe", false));
+        when(userDetailsService.loadFreshUserByUsername("user1")).thenReturn(userDetails);
+
+        authTokenFilter.doFilterInternal(request, response, filterChain);
+
+        assertEquals(userDetails, SecurityContextHolder.getContext().getAuthentication().getPrincipal());
+        verify(userDetailsService, never()).loadUserByUsername("user1");
+        verify(jwtUtils, times(1)).verify(jwt);
+        verify(filterChain).doFilter(request, response);
+    }
+
+    /**
+     * Test unitaire : Un jeton de rafraîchissement ne permet pas d'accéder à l'API.
+     */
+    @Test
+    void testDoFilterInternal_RefreshTokenRejected() throws Exception {
+        String jwt = "refresh.jwt.token";
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + jwt);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        SecurityContextHolder.clearContext();
+
+        when(jwtUtils.verify(jwt)).thenReturn(new VerifiedJwt("user1", Long.MAX_VALUE, 1L, null, null, false, "jti-1", 0, true));
+
+        authTokenFilter.doFilterInternal(request, response, filterChain);
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        verifyNoInteractions(userDetailsService);
+        verify(filterChain).doFilter(request, response);
+    }
+
+    /**
+     * Test unitaire : Un jeton révoqué (déconnexion) n'authentifie plus la requête.
+     */
+    @Test
+    void testDoFilterInternal_RevokedToken() throws Exception {
+        String jwt = "revoked.jwt.token";
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + jwt);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        SecurityContextHolder.clearContext();
+
+        VerifiedJwt verified = new VerifiedJwt("user1", Long.MAX_VALUE, 1L, "John", "Doe", false, "jti-1", 0, false);
+        TokenRevocationList revocationList = new TokenRevocationList(3600000, 900000);
+        revocationList.revoke(verified);
+        ReflectionTestUtils.setField(authTokenFilter, "revocationList", revocationList);
+        when(jwtUtils.verify(jwt)).thenReturn(verified);
+
+        authTokenFilter.doFilterInternal(request, response, filterChain);
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        verify(filterChain).doFilter(request, response);
+    }
 }
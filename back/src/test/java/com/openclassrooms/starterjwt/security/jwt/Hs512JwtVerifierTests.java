@@ -0,0 +1,134 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SignatureException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Base64;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests de parité entre le vérificateur HS512 et le parseur jjwt.
+ * Pour chaque jeton, le vérificateur ne doit accepter que ce que jjwt accepte, avec les mêmes claims.
+ */
+class Hs512JwtVerifierTests {
+
+    private static final String SECRET = "openclassrooms";
+
+    private final Hs512JwtVerifier verifier = new Hs512JwtVerifier(SECRET);
+
+    private String token(String secret, long expirationOffsetMs) {
+        return Jwts.builder()
+                .setSubject("user@example.com")
+                .claim(JwtUtils.CLAIM_ID, 42L)
+                .claim(JwtUtils.CLAIM_FIRST_NAME, "John")
+                .claim(JwtUtils.CLAIM_LAST_NAME, "Doe")
+                .claim(JwtUtils.CLAIM_ADMIN, true)
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + expirationOffsetMs))
+                .signWith(SignatureAlgorithm.HS512, secret)
+                .compact();
+    }
+
+    private Claims jjwt(String token) {
+        return Jwts.parser().setSigningKey(SECRET).parseClaimsJws(token).getBody();
+    }
+
+    // Jeton valide : mêmes claims que jjwt
+    @Test
+    void testVerify_ValidToken() {
+        String token = token(SECRET, 60000);
+
+        VerifiedJwt fast = verifier.verify(token);
+        VerifiedJwt reference = VerifiedJwt.from(jjwt(token));
+
+        assertNotNull(fast);
+        assertEquals(reference.getSubject(), fast.getSubject());
+        assertEquals(reference.getExpirationMs(), fast.getExpirationMs());
+        assertEquals(reference.getId(), fast.getId());
+        assertEquals(reference.getFirstName(), fast.getFirstName());
+        assertEquals(reference.getLastName(), fast.getLastName());
+        assertEquals(reference.isAdmin(), fast.isAdmin());
+    }
+
+    // Jeton de rafraîchissement : identifiant, date d'émission et type identiques à jjwt
+    @Test
+    void testVerify_RefreshToken() {
+        String token = Jwts.builder()
+                .setSubject("user@example.com")
+                .setId("0b8f3c1e-5d1a-4c59-9a53-0d2b6c6e7f10")
+                .claim(JwtUtils.CLAIM_ID, 42L)
+                .claim(JwtUtils.CLAIM_TYPE, JwtUtils.TYPE_REFRESH)
+                .claim(JwtUtils.CLAIM_ISSUED_AT_MS, 1700000000123L)
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + 60000))
+                .signWith(SignatureAlgorithm.HS512, SECRET)
+                .compact();
+
+        VerifiedJwt fast = verifier.verify(token);
+        VerifiedJwt reference = VerifiedJwt.from(jjwt(token));
+
+        assertNotNull(fast);
+        assertTrue(fast.isRefresh());
+        assertEquals(reference.isRefresh(), fast.isRefresh());
+        assertEquals(reference.getTokenId(), fast.getTokenId());
+        assertEquals(reference.getIssuedAtMs(), fast.getIssuedAtMs());
+        assertEquals(1700000000123L, fast.getIssuedAtMs());
+        assertNull(fast.toUserDetails());
+    }
+
+    // Jeton expiré : refusé par les deux
+    @Test
+    void testVerify_ExpiredToken() {
+        String token = token(SECRET, -5000);
+
+        assertNull(verifier.verify(token));
+        assertThrows(ExpiredJwtException.class, () -> jjwt(token));
+    }
+
+    // Jeton mal formé : refusé par les deux
+    @Test
+    void testVerify_MalformedToken() {
+        for (String token : new String[] {"invalid.token", "a.b.c", "eyJhbGciOiJIUzUxMiJ9.%%%.abc", "eyJhbGciOiJIUzUxMiJ9..", "..."}) {
+            assertNull(verifier.verify(token), token);
+            assertThrows(RuntimeException.class, () -> jjwt(token), token);
+        }
+    }
+
+    // Charge utile modifiée : refusée par les deux
+    @Test
+    void testVerify_TamperedPayload() {
+        String token = token(SECRET, 60000);
+        String[] parts = token.split("\\.");
+        String forgedPayload = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("{\"sub\":\"admin@example.com\",\"id\":1,\"admin\":true}".getBytes());
+        String tampered = parts[0] + "." + forgedPayload + "." + parts[2];
+
+        assertNull(verifier.verify(tampered));
+        assertThrows(SignatureException.class, () -> jjwt(tampered));
+    }
+
+    // Signature modifiée ou clé différente : refusée par les deux
+    @Test
+    void testVerify_WrongSignature() {
+        String token = token("anothersecret", 60000);
+
+        assertNull(verifier.verify(token));
+        assertThrows(SignatureException.class, () -> jjwt(token));
+    }
+
+    // Jeton non signé : refusé par les deux
+    @Test
+    void testVerify_UnsignedToken() {
+        String token = Jwts.builder().setSubject("user@example.com").compact();
+
+        assertNull(verifier.verify(token));
+        assertThrows(JwtException.class, () -> jjwt(token));
+    }
+}
@@ -147,5 +147,87 @@ class JwtUtilsTest {
         String usernameFromToken = jwtUtils.getUserNameFromJwtToken(token);
         assertEquals(username, usernameFromToken, "Le nom d'utilisateur dans le jeton doit correspondre à celui généré");
     }
-}
 
+    /**
+     * Test unitaire : Vérifier que le principal est reconstruit à partir des claims du jeton
+     * Ce test vérifie que l'id, le nom, le prénom et le statut admin sont portés par le JWT.
+     *
+     * Type de test : Unitaire
+     */
+    @Test
+    void testGetUserDetailsFromJwtToken() {
+        UserDetailsImpl userDetails = UserDetailsImpl.builder()
+                .id(7L)
+                .username("user1")
+                .firstName("John")
+                .lastName("Doe")
+                .admin(true)
+                .password("password")
+                .build();
+        when(authentication.getPrincipal()).thenReturn(userDetails);
+
+        String token = jwtUtils.generateJwtToken(authentication);
+        UserDetailsImpl fromToken = jwtUtils.getUserDetailsFromJwtToken(token);
+
+        assertNotNull(fromToken);
+        assertEquals(7L, fromToken.getId());
+        assertEquals("user1", fromToken.getUsername());
+        assertEquals("John", fromToken.getFirstName());
+        assertEquals("Doe", fromToken.getLastName());
+        assertTrue(fromToken.getAdmin());
+        assertNull(fromToken.getPassword(), "Le mot de passe ne doit jamais être porté par le jeton");
+    }
+
+    /**
+     * Test unitaire : Un jeton émis sans les claims du principal ne peut pas être utilisé sans base de données
+     *
+     * Type de test : Unitaire
+     */
+    @Test
+    void testGetUserDetailsFromJwtToken_LegacyToken() {
+        String token = Jwts.builder()
+                .setSubject("user1")
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + jwtExpirationMs))
+                .signWith(SignatureAlgorithm.HS512, jwtSecret)
+                .compact();
+
+        assertNull(jwtUtils.getUserDetailsFromJwtToken(token));
+    }
+
+    /**
+     * Test unitaire : Un jeton de rafraîchissement porte un identifiant et ne vaut pas jeton d'accès
+     *
+     * Type de test : Unitaire
+     */
+    @Test
+    void testGenerateRefreshToken() {
+        org.springframework.test.util.ReflectionTestUtils.setField(jwtUtils, "jwtRefreshExpirationMs", 3600000L);
+        UserDetailsImpl userDetails = UserDetailsImpl.builder()
+                .id(7L)
+                .username("user1")
+                .firstName("John")
+                .lastName("Doe")
+                .admin(true)
+                .build();
+
+        String refreshToken = jwtUtils.generateRefreshToken(userDetails);
+        VerifiedJwt verified = jwtUtils.verify(refreshToken);
+
+        assertNotNull(verified);
+        assertTrue(verified.isRefresh());
+        assertNotNull(verified.getTokenId());
+        assertEquals("user1", verified.getSubject());
+        assertFalse(jwtUtils.validateJwtToken(refreshToken), "Un jeton de rafraîchissement n'est pas un jeton d'accès");
+        assertNull(jwtUtils.getUserDetailsFromJwtToken(refreshToken));
+
+        VerifiedJwt access = jwtUtils.verify(jwtUtils.generateJwtToken(userDetails));
+        assertFalse(access.isRefresh());
+        assertNotNull(access.getTokenId());
+        assertNotEquals(verified.getTokenId(), access.getTokenId());
+        assertTrue(access.getIssuedAtMs() > 0);
+        // Instant d'émission à la milliseconde, pas tronqué à la seconde de iat
+        long before = System.currentTimeMillis();
+        assertTrue(jwtUtils.verify(jwtUtils.generateJwtToken(userDetails)).getIssuedAtMs() >= before);
+    }
+}
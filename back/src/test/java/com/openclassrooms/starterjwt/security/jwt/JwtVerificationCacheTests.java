@@ -0,0 +1,80 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires du cache de vérification des JWT.
+ */
+class JwtVerificationCacheTests {
+
+    private JwtVerificationCache cache;
+
+    private AtomicInteger verifications;
+
+    @BeforeEach
+    void setUp() {
+        cache = new JwtVerificationCache(100, 60000);
+        verifications = new AtomicInteger();
+    }
+
+    private VerifiedJwt verifyValid(String token) {
+        verifications.incrementAndGet();
+        return new VerifiedJwt("user1", System.currentTimeMillis() + 60000, 1L, "John", "Doe", false);
+    }
+
+    // Test unitaire : un jeton déjà vérifié est servi par le cache sans nouvelle vérification
+    @Test
+    void testGet_HitAfterFirstVerification() {
+        VerifiedJwt first = cache.get("a.b.c", this::verifyValid);
+        VerifiedJwt second = cache.get("a.b.c", this::verifyValid);
+
+        assertSame(first, second);
+        assertEquals(1, verifications.get());
+        assertEquals(1, cache.stats().hitCount());
+        assertEquals(1, cache.stats().missCount());
+    }
+
+    // Test unitaire : un jeton invalide n'est jamais mis en cache
+    @Test
+    void testGet_InvalidTokenIsNotCached() {
+        assertNull(cache.get("bad.token.x", token -> {
+            verifications.incrementAndGet();
+            return null;
+        }));
+        assertNull(cache.get("bad.token.x", token -> {
+            verifications.incrementAndGet();
+            return null;
+        }));
+
+        assertEquals(2, verifications.get());
+    }
+
+    // Test unitaire : une entrée ne survit jamais à l'expiration du jeton
+    @Test
+    void testGet_EntryDoesNotOutliveToken() {
+        cache.get("short.lived.token", token -> {
+            verifications.incrementAndGet();
+            return new VerifiedJwt("user1", System.currentTimeMillis() - 1, 1L, "John", "Doe", false);
+        });
+        cache.get("short.lived.token", this::verifyValid);
+
+        assertEquals(2, verifications.get());
+    }
+
+    // Test unitaire : la taille du cache est bornée
+    @Test
+    void testGet_IsBounded() {
+        JwtVerificationCache small = new JwtVerificationCache(10, 60000);
+        for (int i = 0; i < 1000; i++) {
+            small.get("token." + i, this::verifyValid);
+        }
+        small.cleanUp();
+
+        assertTrue(small.stats().evictionCount() > 0, "Le cache doit évincer au-delà de sa taille maximale");
+    }
+}
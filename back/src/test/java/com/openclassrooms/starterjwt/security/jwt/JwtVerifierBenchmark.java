@@ -0,0 +1,67 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark JMH : vérification d'un jeton HS512 par jjwt et par le vérificateur dédié.
+ *
+ * Lancement : mvn test-compile puis exécuter la méthode main depuis l'IDE,
+ * ou java -cp "target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout)"
+ * com.openclassrooms.starterjwt.security.jwt.JwtVerifierBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtVerifierBenchmark {
+
+    private static final String SECRET = "openclassrooms";
+
+    private String token;
+
+    private Hs512JwtVerifier verifier;
+
+    @Setup
+    public void setUp() {
+        token = Jwts.builder()
+                .setSubject("user@example.com")
+                .claim(JwtUtils.CLAIM_ID, 42L)
+                .claim(JwtUtils.CLAIM_FIRST_NAME, "John")
+                .claim(JwtUtils.CLAIM_LAST_NAME, "Doe")
+                .claim(JwtUtils.CLAIM_ADMIN, false)
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + 3600000))
+                .signWith(SignatureAlgorithm.HS512, SECRET)
+                .compact();
+        verifier = new Hs512JwtVerifier(SECRET);
+    }
+
+    @Benchmark
+    public Object jjwt() {
+        return VerifiedJwt.from(Jwts.parser().setSigningKey(SECRET).parseClaimsJws(token).getBody());
+    }
+
+    @Benchmark
+    public Object hs512Verifier() {
+        return verifier.verify(token);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(JwtVerifierBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+}
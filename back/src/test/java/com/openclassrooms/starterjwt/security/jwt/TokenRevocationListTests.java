@@ -0,0 +1,85 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import com.openclassrooms.starterjwt.events.UserChangedEvent;
+
+/**
+ * Tests de la liste de révocation des jetons.
+ */
+class TokenRevocationListTests {
+
+    private final TokenRevocationList revocationList = new TokenRevocationList(60000, 10000);
+
+    private static VerifiedJwt token(String tokenId, long userId, long issuedAtMs, long expirationMs) {
+        return new VerifiedJwt("user@example.com", expirationMs, userId, "John", "Doe", false, tokenId, issuedAtMs, false);
+    }
+
+    // Un jeton révoqué est refusé, les autres restent valides
+    @Test
+    void testRevoke() {
+        long now = System.currentTimeMillis();
+        VerifiedJwt revoked = token("jti-1", 1L, now, now + 10000);
+        VerifiedJwt other = token("jti-2", 1L, now, now + 10000);
+
+        assertTrue(revocationList.revoke(revoked));
+
+        assertTrue(revocationList.isRevoked(revoked));
+        assertFalse(revocationList.isRevoked(other));
+    }
+
+    // Un jeton ne peut être révoqué qu'une fois : c'est ce qui rend un jeton de rafraîchissement à usage unique
+    @Test
+    void testRevoke_OnlyOnce() {
+        long now = System.currentTimeMillis();
+        VerifiedJwt refresh = token("jti-1", 1L, now, now + 10000);
+
+        assertTrue(revocationList.revoke(refresh));
+        assertFalse(revocationList.revoke(refresh));
+    }
+
+    // Un changement de l'utilisateur révoque ses jetons émis avant lui
+    @Test
+    void testOnUserChanged() {
+        long now = System.currentTimeMillis();
+        VerifiedJwt before = token("jti-1", 1L, now - 5000, now + 10000);
+        VerifiedJwt otherUser = token("jti-2", 2L, now - 5000, now + 10000);
+
+        revocationList.onUserChanged(new UserChangedEvent(1L, null));
+
+        assertTrue(revocationList.isRevoked(before));
+        assertFalse(revocationList.isRevoked(otherUser));
+        assertFalse(revocationList.isRevoked(token("jti-3", 1L, now + 1000, now + 10000)));
+    }
+
+    // La révocation compare l'instant exact d'émission : un jeton émis juste avant est révoqué,
+    // celui émis juste après, par la connexion qui a provoqué le changement par exemple, reste valide
+    @Test
+    void testRevokeUser_ExactInstant() {
+        long before = System.currentTimeMillis() - 1;
+
+        revocationList.revokeUser(1L);
+        long after = System.currentTimeMillis();
+
+        assertTrue(revocationList.isRevoked(token("jti-1", 1L, before, after + 10000)));
+        assertFalse(revocationList.isRevoked(token("jti-2", 1L, after, after + 10000)));
+    }
+
+    // Les entrées expirées sont purgées : la mémoire reste bornée par les jetons vivants
+    @Test
+    void testPrune() {
+        long now = System.currentTimeMillis();
+        revocationList.revoke(token("jti-1", 1L, now, now + 10000));
+        revocationList.revoke(token("jti-2", 1L, now, now + 50000));
+        revocationList.revokeUser(3L);
+        assertEquals(3, revocationList.size());
+
+        revocationList.prune(now + 20000);
+        assertEquals(2, revocationList.size());
+
+        revocationList.prune(now + 70000);
+        assertEquals(0, revocationList.size());
+    }
+}
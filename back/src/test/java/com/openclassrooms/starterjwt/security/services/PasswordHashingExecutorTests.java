@@ -0,0 +1,97 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class PasswordHashingExecutorTests {
+
+    // Un seul thread et une file d'une place pour saturer facilement le pool
+    private final PasswordHashingExecutor executor = new PasswordHashingExecutor(1, 1, 2000, 3);
+
+    @AfterEach
+    public void tearDown() {
+        executor.destroy();
+    }
+
+    // Le résultat de la tâche est renvoyé au thread appelant
+    @Test
+    public void testExecute_ReturnsResult() {
+        assertThat(executor.execute(() -> "hash")).isEqualTo("hash");
+    }
+
+    // Les exceptions d'authentification remontent telles quelles
+    @Test
+    public void testExecute_RethrowsRuntimeException() {
+        assertThatThrownBy(() -> executor.execute(() -> {
+            throw new BadCredentialsException("Bad credentials");
+        })).isInstanceOf(BadCredentialsException.class);
+    }
+
+    // Pool occupé et file pleine : la tâche suivante est refusée immédiatement
+    @Test
+    public void testExecute_RejectsWhenSaturated() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<Object> running = CompletableFuture.supplyAsync(() -> executor.execute(() -> {
+            started.countDown();
+            return release.await(5, TimeUnit.SECONDS);
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        CompletableFuture<Object> queued = CompletableFuture.supplyAsync(() -> executor.execute(() -> "queued"));
+        while (executor.getQueueDepth() == 0) {
+            Thread.sleep(5);
+        }
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> executor.execute(() -> "rejected"))
+                .isInstanceOf(RejectedExecutionException.class);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1000);
+
+        release.countDown();
+        assertThat(running.get(5, TimeUnit.SECONDS)).isEqualTo(true);
+        assertThat(queued.get(5, TimeUnit.SECONDS)).isEqualTo("queued");
+        assertThat(executor.getRetryAfterSeconds()).isEqualTo(3);
+    }
+
+    // Une tâche trop longue est abandonnée et signalée comme refusée
+    @Test
+    public void testExecute_TimesOut() {
+        PasswordHashingExecutor slowExecutor = new PasswordHashingExecutor(1, 1, 50, 1);
+        try {
+            assertThatThrownBy(() -> slowExecutor.execute(() -> {
+                Thread.sleep(5000);
+                return null;
+            })).isInstanceOf(RejectedExecutionException.class);
+        } finally {
+            slowExecutor.destroy();
+        }
+    }
+
+    // Les métriques de file d'attente et de durée de hachage sont publiées
+    @Test
+    public void testBindTo_RegistersMetrics() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        executor.bindTo(registry);
+
+        executor.execute(() -> "hash");
+
+        assertThat(registry.get("auth.password.hashing.queue").gauge().value()).isEqualTo(0.0);
+        assertThat(registry.get("auth.password.hashing.active").gauge()).isNotNull();
+        FunctionTimer timer = registry.get("auth.password.hashing").functionTimer();
+        assertThat(timer.count()).isEqualTo(1.0);
+    }
+}
@@ -8,9 +8,21 @@ import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+
+import com.openclassrooms.starterjwt.events.PasswordRehashedEvent;
+import com.openclassrooms.starterjwt.events.UserChangedEvent;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 
@@ -20,6 +32,9 @@ public class UserDetailsServiceImplTests {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     // Injecte les mocks dans l'objet testé
     @InjectMocks
     private UserDetailsServiceImpl userDetailsServiceImpl;
@@ -114,6 +129,7 @@ public class UserDetailsServiceImplTests {
         assertEquals(mockUser.getFirstName(), userDetailsImpl.getFirstName());
         assertEquals(mockUser.getLastName(), userDetailsImpl.getLastName());
         assertEquals(mockUser.getPassword(), userDetailsImpl.getPassword());
+        assertEquals(mockUser.isAdmin(), userDetailsImpl.getAdmin());
     }
 
     /**
@@ -251,4 +267,101 @@ public class UserDetailsServiceImplTests {
         assertTrue(user.isCredentialsNonExpired());
         assertTrue(user.isEnabled());
     }
+
+    /**
+     * Test Unitaire : Vérifie qu'un utilisateur déjà chargé est servi par le cache sans requête.
+     */
+    @Test
+    void loadUserByUsername_ShouldUseCache_WhenCacheIsEnabled() {
+        UserDetailsCache cache = new UserDetailsCache(100, 60000);
+        ReflectionTestUtils.setField(userDetailsServiceImpl, "userDetailsCache", cache);
+        when(userRepository.findByEmail("user@example.com")).thenReturn(java.util.Optional.of(mockUser));
+
+        userDetailsServiceImpl.loadUserByUsername("user@example.com");
+        userDetailsServiceImpl.loadUserByUsername("user@example.com");
+
+        verify(userRepository, times(1)).findByEmail("user@example.com");
+        assertEquals(1, cache.stats().hitCount());
+    }
+
+    /**
+     * Test Unitaire : Vérifie que le chargement « frais » relit toujours la base, même avec le cache.
+     */
+    @Test
+    void loadFreshUserByUsername_ShouldBypassCache() {
+        UserDetailsCache cache = new UserDetailsCache(100, 60000);
+        ReflectionTestUtils.setField(userDetailsServiceImpl, "userDetailsCache", cache);
+        when(userRepository.findByEmail("user@example.com")).thenReturn(java.util.Optional.of(mockUser));
+
+        userDetailsServiceImpl.loadUserByUsername("user@example.com");
+        when(userRepository.findByEmail("user@example.com")).thenReturn(java.util.Optional.empty());
+
+        assertThrows(UsernameNotFoundException.class, () -> userDetailsServiceImpl.loadFreshUserByUsername("user@example.com"));
+        verify(userRepository, times(2)).findByEmail("user@example.com");
+    }
+
+    /**
+     * Test Unitaire : Vérifie qu'un utilisateur supprimé est retiré du cache immédiatement.
+     */
+    @Test
+    void loadUserByUsername_ShouldReload_AfterUserChangedEvent() {
+        UserDetailsCache cache = new UserDetailsCache(100, 60000);
+        ReflectionTestUtils.setField(userDetailsServiceImpl, "userDetailsCache", cache);
+        when(userRepository.findByEmail("user@example.com")).thenReturn(java.util.Optional.of(mockUser));
+
+        userDetailsServiceImpl.loadUserByUsername("user@example.com");
+        cache.onUserChanged(new UserChangedEvent(1L, null));
+        when(userRepository.findByEmail("user@example.com")).thenReturn(java.util.Optional.empty());
+
+        assertThrows(UsernameNotFoundException.class, () -> userDetailsServiceImpl.loadUserByUsername("user@example.com"));
+        verify(userRepository, times(2)).findByEmail("user@example.com");
+    }
+
+    /**
+     * Test Unitaire : Vérifie qu'un hachage ancien (sans préfixe, coût inférieur) est réécrit après une connexion réussie.
+     */
+    @Test
+    void authenticate_ShouldRehashLegacyPassword() {
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(5);
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder("bcrypt", Collections.singletonMap("bcrypt", bcrypt));
+        encoder.setDefaultPasswordEncoderForMatches(bcrypt);
+
+        mockUser.setPassword(new BCryptPasswordEncoder(4).encode("test!1234"));
+        when(userRepository.findByEmail("user@example.com")).thenReturn(java.util.Optional.of(mockUser));
+
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
+        provider.setUserDetailsService(userDetailsServiceImpl);
+        provider.setUserDetailsPasswordService(userDetailsServiceImpl);
+        provider.setPasswordEncoder(encoder);
+
+        provider.authenticate(new UsernamePasswordAuthenticationToken("user@example.com", "test!1234"));
+
+        verify(userRepository).save(mockUser);
+        // Les caches sont vidés via l'événement, après le commit et sur les autres nœuds, sans révoquer les jetons
+        verify(eventPublisher).publishEvent(argThat((Object event) -> event instanceof PasswordRehashedEvent
+                && "user@example.com".equals(((PasswordRehashedEvent) event).getEmail())));
+        verify(eventPublisher, never()).publishEvent(argThat((Object event) -> event instanceof UserChangedEvent));
+        assertThat(mockUser.getPassword()).startsWith("{bcrypt}$2a$05$");
+        assertTrue(encoder.matches("test!1234", mockUser.getPassword()));
+        assertFalse(encoder.upgradeEncoding(mockUser.getPassword()));
+    }
+
+    /**
+     * Test Unitaire : Vérifie qu'un hachage à jour n'est pas réécrit.
+     */
+    @Test
+    void authenticate_ShouldNotRehashCurrentPassword() {
+        PasswordEncoder encoder = new DelegatingPasswordEncoder("bcrypt", Collections.singletonMap("bcrypt", new BCryptPasswordEncoder(4)));
+        mockUser.setPassword(encoder.encode("test!1234"));
+        when(userRepository.findByEmail("user@example.com")).thenReturn(java.util.Optional.of(mockUser));
+
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
+        provider.setUserDetailsService(userDetailsServiceImpl);
+        provider.setUserDetailsPasswordService(userDetailsServiceImpl);
+        provider.setPasswordEncoder(encoder);
+
+        provider.authenticate(new UsernamePasswordAuthenticationToken("user@example.com", "test!1234"));
+
+        verify(userRepository, never()).save(any());
+    }
 }
@@ -0,0 +1,138 @@
+package com.openclassrooms.starterjwt.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.openclassrooms.starterjwt.events.PasswordRehashedEvent;
+import com.openclassrooms.starterjwt.events.SessionChangedEvent;
+import com.openclassrooms.starterjwt.events.UserChangedEvent;
+import com.openclassrooms.starterjwt.migration.SchemaMigrator;
+
+/**
+ * Journal des modifications sur une base H2 migrée : écriture dans la transaction de la
+ * modification, relecture dans l'ordre des ids, y compris quand un id arrive en retard.
+ */
+class CacheChangeLogTests {
+
+    private EmbeddedDatabase database;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<Object> events = new ArrayList<>();
+
+    private CacheChangeLog changeLog;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).build();
+        new SchemaMigrator(database, 1).migrate();
+        jdbcTemplate = new JdbcTemplate(database);
+        changeLog = new CacheChangeLog(jdbcTemplate, events::add, 1000, 3600000);
+
+        // Première lecture : position initiale
+        changeLog.poll();
+    }
+
+    @AfterEach
+    void tearDown() {
+        changeLog.destroy();
+        database.shutdown();
+    }
+
+    // Les modifications ne sont écrites qu'avec la transaction qui les porte
+    @Test
+    void changes_ShouldBeWrittenWithTheirTransaction() {
+        TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(database));
+
+        transaction.executeWithoutResult(status -> {
+            changeLog.onSessionChanged(new SessionChangedEvent(Arrays.asList(1L, 2L)));
+            status.setRollbackOnly();
+        });
+        assertThat(count()).isZero();
+
+        transaction.executeWithoutResult(status -> {
+            changeLog.onSessionChanged(new SessionChangedEvent(Arrays.asList(1L, 2L)));
+            changeLog.onUserChanged(new UserChangedEvent(7L, "john@example.com"));
+        });
+        assertThat(count()).isEqualTo(3);
+
+        // Hors transaction : une relecture ou une création de compte, rien à écrire
+        changeLog.onUserChanged(new UserChangedEvent(8L, null));
+        assertThat(count()).isEqualTo(3);
+    }
+
+    // Les modifications des autres noeuds sont rejouées, pas celles du noeud lui-même
+    @Test
+    void poll_ShouldReplayOtherNodesOnly() {
+        insert(1, CacheChangeLog.SESSION, 10, "other");
+        insert(2, CacheChangeLog.SESSION, 11, changeLog.getNodeId());
+        insert(3, CacheChangeLog.USER, 5, "other");
+        insert(4, CacheChangeLog.SESSION, 10, "other");
+
+        changeLog.poll();
+
+        assertThat(events).hasSize(2);
+        assertThat(((SessionChangedEvent) events.get(0)).getSessionIds()).containsExactly(10L);
+        assertThat(((UserChangedEvent) events.get(1)).getUserId()).isEqualTo(5L);
+
+        events.clear();
+        changeLog.poll();
+        assertThat(events).isEmpty();
+    }
+
+    // Une réécriture de hachage n'est rejouée que comme telle, les jetons des autres noeuds restent valides
+    @Test
+    void poll_ShouldReplayPasswordRehashes() {
+        TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(database));
+        transaction.executeWithoutResult(status -> changeLog.onPasswordRehashed(new PasswordRehashedEvent(7L, "john@example.com")));
+        assertThat(jdbcTemplate.queryForObject("SELECT entity FROM CACHE_CHANGE_LOG", String.class)).isEqualTo(CacheChangeLog.PASSWORD);
+
+        insert(100, CacheChangeLog.PASSWORD, 5, "other");
+        insert(101, CacheChangeLog.PASSWORD, 6, "other");
+        insert(102, CacheChangeLog.USER, 6, "other");
+        changeLog.poll();
+
+        assertThat(events).hasSize(2);
+        assertThat(((UserChangedEvent) events.get(0)).getUserId()).isEqualTo(6L);
+        assertThat(((PasswordRehashedEvent) events.get(1)).getUserId()).isEqualTo(5L);
+    }
+
+    // Un id validé après un id plus grand est tout de même relu
+    @Test
+    void poll_ShouldReadLateIds() {
+        insert(1, CacheChangeLog.SESSION, 10, "other");
+        insert(3, CacheChangeLog.SESSION, 30, "other");
+        changeLog.poll();
+        assertThat(events).hasSize(1);
+        assertThat(((SessionChangedEvent) events.get(0)).getSessionIds()).containsExactly(10L, 30L);
+
+        events.clear();
+        insert(2, CacheChangeLog.SESSION, 20, "other");
+        changeLog.poll();
+        assertThat(events).hasSize(1);
+        assertThat(((SessionChangedEvent) events.get(0)).getSessionIds()).containsExactly(20L);
+    }
+
+    private void insert(long id, String entity, long entityId, String nodeId) {
+        jdbcTemplate.update("INSERT INTO CACHE_CHANGE_LOG (id, entity, entity_id, node_id, changed_at) VALUES (?, ?, ?, ?, ?)",
+                id, entity, entityId, nodeId, new Timestamp(System.currentTimeMillis()));
+    }
+
+    private int count() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM CACHE_CHANGE_LOG", Integer.class);
+    }
+}
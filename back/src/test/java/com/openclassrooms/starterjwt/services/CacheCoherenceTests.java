@@ -0,0 +1,146 @@
+package com.openclassrooms.starterjwt.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import com.openclassrooms.starterjwt.SpringBootSecurityJwtApplication;
+import com.openclassrooms.starterjwt.exception.ConflictException;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+
+/**
+ * Deux instances de l'application sur la même base H2 : une écriture sur l'une est visible sur
+ * l'autre, malgré ses caches, dans la limite de fraîcheur configurée.
+ */
+class CacheCoherenceTests {
+
+    private static final long MAX_STALENESS_MS = 100;
+
+    private static ConfigurableApplicationContext nodeA;
+
+    private static ConfigurableApplicationContext nodeB;
+
+    @BeforeAll
+    static void startNodes() {
+        String url = "jdbc:h2:mem:coherence-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        nodeA = start(url);
+        nodeB = start(url);
+    }
+
+    @AfterAll
+    static void stopNodes() {
+        nodeB.close();
+        nodeA.close();
+    }
+
+    // Une inscription sur B est lue sur A, qui avait la session en cache
+    @Test
+    void participation_ShouldReachTheOtherNode() {
+        Teacher teacher = nodeA.getBean(TeacherRepository.class).save(new Teacher().setFirstName("Margot").setLastName("DELAHAYE"));
+        User john = nodeA.getBean(UserRepository.class).save(new User("john@example.com", "Doe", "John", "hash", false));
+        Session session = nodeA.getBean(SessionRepository.class).save(new Session()
+                .setName("Yoga")
+                .setDate(new Date())
+                .setDescription("Yoga")
+                .setTeacher(teacher)
+                .setUsers(Collections.emptyList()));
+
+        SessionService sessionsOfA = nodeA.getBean(SessionService.class);
+        assertThat(sessionsOfA.getDtoById(session.getId()).getUsers()).isEmpty();
+        assertThat(sessionsOfA.findAllDto()).hasSize(1);
+
+        nodeB.getBean(SessionService.class).participate(session.getId(), john.getId());
+
+        awaitWithinStaleness(() -> sessionsOfA.getDtoById(session.getId()).getUsers().contains(john.getId()));
+        assertThat(sessionsOfA.findAllDto().get(0).getUsers()).containsExactly(john.getId());
+    }
+
+    // Un compte supprimé sur B n'est plus chargé depuis le cache de A
+    @Test
+    void deletedUser_ShouldReachTheOtherNode() {
+        User jane = nodeA.getBean(UserRepository.class).save(new User("jane@example.com", "Doe", "Jane", "hash", false));
+        UserDetailsService usersOfA = nodeA.getBean(UserDetailsService.class);
+        assertThat(usersOfA.loadUserByUsername("jane@example.com").getUsername()).isEqualTo("jane@example.com");
+
+        nodeB.getBean(UserService.class).delete(jane.getId());
+
+        awaitWithinStaleness(() -> {
+            try {
+                usersOfA.loadUserByUsername("jane@example.com");
+                return false;
+            } catch (UsernameNotFoundException e) {
+                return true;
+            }
+        });
+    }
+
+    // Une écriture annulée ne laisse aucune trace dans le journal
+    @Test
+    void rolledBackWrite_ShouldNotBeLogged() {
+        Teacher teacher = nodeA.getBean(TeacherRepository.class).save(new Teacher().setFirstName("Hélène").setLastName("THIERCELIN"));
+        User paul = nodeA.getBean(UserRepository.class).save(new User("paul@example.com", "Doe", "Paul", "hash", false));
+        Session full = nodeA.getBean(SessionRepository.class).save(new Session()
+                .setName("Complet")
+                .setDate(new Date())
+                .setDescription("Yoga")
+                .setCapacity(1)
+                .setParticipantCount(1)
+                .setTeacher(teacher)
+                .setUsers(Collections.emptyList()));
+        JdbcTemplate jdbcTemplate = nodeA.getBean(JdbcTemplate.class);
+        Integer before = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM CACHE_CHANGE_LOG", Integer.class);
+
+        assertThatThrownBy(() -> nodeB.getBean(SessionService.class).participate(full.getId(), paul.getId()))
+                .isInstanceOf(ConflictException.class);
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM CACHE_CHANGE_LOG", Integer.class)).isEqualTo(before);
+    }
+
+    private static void awaitWithinStaleness(BooleanSupplier condition) {
+        // Une lecture en cours et le temps d'un cycle de plus au-delà de la limite
+        long deadline = System.currentTimeMillis() + 3 * MAX_STALENESS_MS + 1000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Change not seen by the other node in time");
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail("Interrupted");
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext start(String url) {
+        // Des arguments de ligne de commande, pour passer devant application.properties
+        return new SpringApplicationBuilder(SpringBootSecurityJwtApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=" + url,
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--spring.jpa.show-sql=false",
+                "--oc.app.cacheCoherenceEnabled=true",
+                "--oc.app.cacheCoherenceMaxStalenessMs=" + MAX_STALENESS_MS);
+    }
+}
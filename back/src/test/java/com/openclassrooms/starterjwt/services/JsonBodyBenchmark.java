@@ -0,0 +1,77 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark JMH : corps de GET /api/session pour un catalogue de sessions, encodé en JSON à chaque
+ * requête contre les octets gardés par {@link JsonBodyCache}, en clair ou compressés en gzip.
+ *
+ * Lancement : mvn test-compile puis exécuter la méthode main depuis l'IDE,
+ * ou java -cp "target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout)"
+ * com.openclassrooms.starterjwt.services.JsonBodyBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBodyBenchmark {
+
+    @Param({"serialize", "preserialized", "preserialized-gzip"})
+    public String mode;
+
+    @Param({"100"})
+    public int sessions;
+
+    private ObjectMapper objectMapper;
+
+    private JsonBodyCache cache;
+
+    private List<SessionDto> catalog;
+
+    @Setup
+    public void setUp() {
+        // Même configuration que l'ObjectMapper de Spring Boot
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        cache = new JsonBodyCache(objectMapper, 1000);
+
+        catalog = new ArrayList<>();
+        for (long i = 1; i <= sessions; i++) {
+            catalog.add(new SessionDto(i, "Session " + i, new Date(), 1L,
+                    "Séance de yoga pour tous niveaux, tapis fournis.", Arrays.asList(i, i + 1, i + 2),
+                    20, LocalDateTime.now(), LocalDateTime.now()));
+        }
+    }
+
+    @Benchmark
+    public Object body() throws JsonProcessingException {
+        if ("serialize".equals(mode)) {
+            return objectMapper.writeValueAsBytes(catalog);
+        }
+        JsonBodyCache.JsonBody body = cache.get("sessions", 1L, () -> catalog);
+        return "preserialized-gzip".equals(mode) ? body.toResponse("gzip") : body.toResponse(null);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(JsonBodyBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,136 @@
+package com.openclassrooms.starterjwt.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StreamUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.services.JsonBodyCache.JsonBody;
+
+/**
+ * Corps de réponse encodés une fois par version des données.
+ */
+class JsonBodyCacheTests {
+
+    private final JsonBodyCache cache = new JsonBodyCache(new ObjectMapper(), 100);
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    // Même version : les octets déjà encodés sont réutilisés ; nouvelle version : encodage à nouveau
+    @Test
+    void get_ShouldEncodeOncePerVersion() {
+        JsonBody first = cache.get("sessions", 1L, () -> load("Yoga"));
+        JsonBody again = cache.get("sessions", 1L, () -> load("Pilates"));
+        JsonBody changed = cache.get("sessions", 2L, () -> load("Pilates"));
+
+        assertThat(again).isSameAs(first);
+        assertThat(new String(first.getJson(), StandardCharsets.UTF_8)).isEqualTo("[\"Yoga\"]");
+        assertThat(new String(changed.getJson(), StandardCharsets.UTF_8)).isEqualTo("[\"Pilates\"]");
+        assertThat(loads).hasValue(2);
+    }
+
+    // Sans version, les données ne sont pas en cache : rien n'est gardé
+    @Test
+    void get_WithoutVersion_ShouldEncodeEveryTime() {
+        cache.get("sessions", null, () -> load("Yoga"));
+        cache.get("sessions", null, () -> load("Yoga"));
+
+        assertThat(loads).hasValue(2);
+    }
+
+    // Rien à encoder : pas de corps, et rien n'est gardé
+    @Test
+    void get_NullValue_ShouldNotBeCached() {
+        assertThat(cache.get("session:1", 1L, () -> null)).isNull();
+        assertThat(cache.get("session:1", 1L, () -> load("Yoga"))).isNotNull();
+    }
+
+    // Un grand corps est compressé pour les clients qui acceptent gzip, un petit ne l'est jamais
+    @Test
+    void toResponse_ShouldGzipLargeBodiesOnDemand() throws IOException {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            names.add("Session " + i);
+        }
+        JsonBody large = cache.encode(names);
+
+        ResponseEntity<byte[]> plain = large.toResponse(null);
+        ResponseEntity<byte[]> gzip = large.toResponse("gzip, deflate, br");
+
+        assertThat(plain.getBody()).isSameAs(large.getJson());
+        assertThat(plain.getHeaders().getVary()).containsExactly(HttpHeaders.ACCEPT_ENCODING);
+        assertThat(gzip.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        assertThat(gzip.getBody().length).isLessThan(large.getJson().length);
+        assertThat(StreamUtils.copyToByteArray(new GZIPInputStream(new ByteArrayInputStream(gzip.getBody()))))
+                .isEqualTo(large.getJson());
+
+        ResponseEntity<byte[]> small = cache.encode(Collections.singletonList("Yoga")).toResponse("gzip");
+        assertThat(small.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING)).isFalse();
+    }
+
+    // If-None-Match avec la version courante : 304 sans rien charger ; une autre version : corps complet
+    @Test
+    void respond_ShouldAnswerNotModifiedFromVersion() {
+        ResponseEntity<byte[]> first = cache.respond("sessions", 1L, () -> load("Yoga"), null, null);
+        String etag = first.getHeaders().getETag();
+
+        ResponseEntity<byte[]> same = cache.respond("sessions", 1L, () -> load("Yoga"), null, etag);
+        ResponseEntity<byte[]> weak = cache.respond("sessions", 1L, () -> load("Yoga"), null, "\"old\", W/" + etag);
+        ResponseEntity<byte[]> changed = cache.respond("sessions", 2L, () -> load("Pilates"), null, etag);
+
+        assertThat(first.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(etag).startsWith("\"").endsWith("\"");
+        assertThat(same.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(same.getHeaders().getETag()).isEqualTo(etag);
+        assertThat(same.getBody()).isNull();
+        assertThat(weak.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(changed.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(changed.getHeaders().getETag()).isNotEqualTo(etag);
+        assertThat(loads).hasValue(2);
+    }
+
+    // Sans version ni corps : ni ETag ni 304, et 404 quand il n'y a rien
+    @Test
+    void respond_WithoutVersionOrValue() {
+        ResponseEntity<byte[]> uncached = cache.respond("sessions", null, () -> load("Yoga"), null, "*");
+
+        assertThat(uncached.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(uncached.getHeaders().getETag()).isNull();
+        assertThat(cache.respond("session:1", 1L, () -> null, null, null).getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    // La variante gzip a son propre ETag, valable seulement pour un client qui accepte gzip
+    @Test
+    void respond_ShouldTagGzipVariantSeparately() {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            names.add("Session " + i);
+        }
+
+        String plain = cache.respond("sessions", 1L, () -> names, null, null).getHeaders().getETag();
+        String gzip = cache.respond("sessions", 1L, () -> names, "gzip", null).getHeaders().getETag();
+
+        assertThat(gzip).isNotEqualTo(plain);
+        assertThat(cache.respond("sessions", 1L, () -> names, "gzip", gzip).getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(cache.respond("sessions", 1L, () -> names, "gzip", plain).getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(cache.respond("sessions", 1L, () -> names, null, gzip).getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    private List<String> load(String name) {
+        loads.incrementAndGet();
+        return Collections.singletonList(name);
+    }
+}
@@ -0,0 +1,184 @@
+package com.openclassrooms.starterjwt.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.ConflictException;
+
+public class ParticipationBatcherTests {
+
+    private final SessionService sessionService = mock(SessionService.class);
+
+    private ParticipationBatcher batcher;
+
+    @AfterEach
+    public void tearDown() {
+        if (batcher != null) {
+            batcher.destroy();
+        }
+    }
+
+    // Chaque appelant reçoit le résultat de sa propre inscription
+    @Test
+    public void testParticipate_RaisesOutcome() {
+        batcher = new ParticipationBatcher(sessionService, 10, 2000, 100, 4);
+        when(sessionService.participateBatch(1L, Collections.singletonList(1L))).thenReturn(Collections.singletonList(ParticipationOutcome.JOINED));
+        when(sessionService.participateBatch(1L, Collections.singletonList(2L))).thenReturn(Collections.singletonList(ParticipationOutcome.FULL));
+        when(sessionService.participateBatch(1L, Collections.singletonList(3L))).thenReturn(Collections.singletonList(ParticipationOutcome.ALREADY_PARTICIPATING));
+
+        batcher.participate(1L, 1L);
+        assertThatThrownBy(() -> batcher.participate(1L, 2L)).isInstanceOf(ConflictException.class);
+        assertThatThrownBy(() -> batcher.participate(1L, 3L)).isInstanceOf(BadRequestException.class);
+
+        verify(sessionService, never()).participate(anyLong(), anyLong());
+    }
+
+    // Les demandes arrivées pendant une écriture forment le lot suivant
+    @Test
+    public void testParticipate_BatchesQueuedRequests() throws Exception {
+        batcher = new ParticipationBatcher(sessionService, 10, 5000, 100, 4);
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(sessionService.participateBatch(eq(1L), anyList())).thenAnswer(invocation -> {
+            List<Long> userIds = invocation.getArgument(1);
+            if (userIds.contains(0L)) {
+                writing.countDown();
+                release.await(5, TimeUnit.SECONDS);
+            }
+            return new ArrayList<>(Collections.nCopies(userIds.size(), ParticipationOutcome.JOINED));
+        });
+
+        List<CompletableFuture<Void>> calls = new ArrayList<>();
+        calls.add(CompletableFuture.runAsync(() -> batcher.participate(1L, 0L)));
+        assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+        for (long userId = 1; userId <= 5; userId++) {
+            long id = userId;
+            calls.add(CompletableFuture.runAsync(() -> batcher.participate(1L, id)));
+        }
+        while (batcher.queueDepth(1L) < 5) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+        CompletableFuture.allOf(calls.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Long>> batches = ArgumentCaptor.forClass(List.class);
+        verify(sessionService, times(2)).participateBatch(eq(1L), batches.capture());
+        assertThat(batches.getAllValues().get(1)).containsExactlyInAnyOrder(1L, 2L, 3L, 4L, 5L);
+    }
+
+    // File de la session pleine : la demande passe directement par le chemin habituel
+    @Test
+    public void testParticipate_FallsBackWhenQueueIsFull() {
+        batcher = new ParticipationBatcher(sessionService, 10, 2000, 0, 4);
+
+        batcher.participate(1L, 1L);
+
+        verify(sessionService, times(1)).participate(1L, 1L);
+        verify(sessionService, never()).participateBatch(anyLong(), anyList());
+    }
+
+    // Délai dépassé avant d'être pris en charge : chemin direct, et la demande n'est plus traitée par lot
+    @Test
+    public void testParticipate_FallsBackOnTimeout() throws Exception {
+        batcher = new ParticipationBatcher(sessionService, 1, 100, 100, 4);
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(sessionService.participateBatch(eq(1L), anyList())).thenAnswer(invocation -> {
+            writing.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return Collections.singletonList(ParticipationOutcome.JOINED);
+        });
+
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> batcher.participate(1L, 1L));
+        assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+
+        batcher.participate(1L, 2L);
+        verify(sessionService, times(1)).participate(1L, 2L);
+
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        while (batcher.queueDepth(1L) > 0) {
+            Thread.sleep(5);
+        }
+        verify(sessionService, times(1)).participateBatch(1L, Collections.singletonList(1L));
+        verify(sessionService, never()).participateBatch(1L, Collections.singletonList(2L));
+    }
+
+    // Échec du lot : chaque demande est rejouée seule et reçoit sa propre réponse
+    @Test
+    public void testParticipate_ReplaysFailedBatchOneByOne() {
+        batcher = new ParticipationBatcher(sessionService, 10, 2000, 100, 4);
+        when(sessionService.participateBatch(eq(1L), anyList())).thenThrow(new IllegalStateException("batch failed"));
+        doThrow(new BadRequestException()).when(sessionService).participate(1L, 2L);
+
+        batcher.participate(1L, 1L);
+        assertThatThrownBy(() -> batcher.participate(1L, 2L)).isInstanceOf(BadRequestException.class);
+
+        verify(sessionService, times(1)).participate(1L, 1L);
+        verify(sessionService, times(1)).participate(1L, 2L);
+    }
+
+    // Une file vidée est oubliée : des identifiants de session quelconques ne s'accumulent pas
+    @Test
+    public void testParticipate_DropsIdleLanes() throws Exception {
+        batcher = new ParticipationBatcher(sessionService, 10, 2000, 100, 4);
+        when(sessionService.participateBatch(anyLong(), anyList())).thenReturn(Collections.singletonList(ParticipationOutcome.JOINED));
+
+        for (long sessionId = 1; sessionId <= 50; sessionId++) {
+            batcher.participate(sessionId, 1L);
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (batcher.laneCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+
+        assertThat(batcher.laneCount()).isZero();
+    }
+
+    // Tous les rédacteurs occupés par d'autres sessions : chemin direct sans attendre le délai
+    @Test
+    public void testParticipate_FallsBackWhenWritersAreBusy() throws Exception {
+        batcher = new ParticipationBatcher(sessionService, 10, 5000, 100, 1);
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(sessionService.participateBatch(eq(1L), anyList())).thenAnswer(invocation -> {
+            writing.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return Collections.singletonList(ParticipationOutcome.JOINED);
+        });
+
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> batcher.participate(1L, 1L));
+        assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+
+        long start = System.currentTimeMillis();
+        batcher.participate(2L, 2L);
+        assertThat(System.currentTimeMillis() - start).isLessThan(2000);
+        verify(sessionService, times(1)).participate(2L, 2L);
+        verify(sessionService, never()).participateBatch(eq(2L), anyList());
+
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,116 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.SpringBootSecurityJwtApplication;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Benchmark JMH : rafale d'inscriptions sur une seule session, chemin direct contre mode burst,
+ * sur une base H2 en mémoire. La session n'a pas de limite de places pour que chaque appel écrive une ligne.
+ *
+ * Lancement : mvn test-compile puis exécuter la méthode main depuis l'IDE,
+ * ou java -cp "target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout)"
+ * com.openclassrooms.starterjwt.services.ParticipationBurstBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(64)
+@Fork(1)
+public class ParticipationBurstBenchmark {
+
+    private static final int USERS = 100000;
+
+    @Param({"direct", "burst"})
+    public String mode;
+
+    private ConfigurableApplicationContext context;
+
+    private SessionService sessionService;
+
+    private ParticipationBatcher batcher;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private long sessionId;
+
+    private long firstUserId;
+
+    private final AtomicInteger nextUser = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(SpringBootSecurityJwtApplication.class)
+                // Command line arguments, so that they win over application.properties
+                .run("--spring.datasource.url=jdbc:h2:mem:burst;DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--spring.jpa.show-sql=false",
+                        "--spring.datasource.hikari.maximum-pool-size=16",
+                        "--server.port=0");
+        sessionService = context.getBean(SessionService.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        batcher = new ParticipationBatcher(sessionService, 100, 5000, 10000, 4);
+
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        jdbcTemplate.update("INSERT INTO SESSIONS (name, description, date, participant_count, created_at, updated_at) VALUES ('Burst', 'Yoga', ?, 0, ?, ?)", now, now, now);
+        sessionId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM SESSIONS", Long.class);
+
+        List<Object[]> users = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            users.add(new Object[]{"bench" + i + "@example.com", "Doe", "John", "hash", now, now});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO USERS (email, last_name, first_name, password, admin, created_at, updated_at) VALUES (?, ?, ?, ?, false, ?, ?)", users);
+        firstUserId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM USERS", Long.class);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetSession() {
+        jdbcTemplate.update("DELETE FROM PARTICIPATE");
+        jdbcTemplate.update("UPDATE SESSIONS SET participant_count = 0");
+        nextUser.set(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        batcher.destroy();
+        context.close();
+    }
+
+    @Benchmark
+    public void participate() {
+        long userId = firstUserId + nextUser.getAndIncrement() % USERS;
+        try {
+            if ("burst".equals(mode)) {
+                batcher.participate(sessionId, userId);
+            } else {
+                sessionService.participate(sessionId, userId);
+            }
+        } catch (RuntimeException e) {
+            // Already participating once the users wrap around
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ParticipationBurstBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,109 @@
+package com.openclassrooms.starterjwt.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.payload.response.UserImportResponse;
+import com.openclassrooms.starterjwt.payload.response.UserImportRowResult;
+import com.openclassrooms.starterjwt.payload.response.UserImportRowResult.Status;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+
+/**
+ * Tests d'intégration de l'import en masse sur une base H2.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "oc.app.userImportBatchSize=3",
+        "oc.app.passwordHashMinCost=4",
+        "oc.app.passwordHashTargetMs=1"
+})
+@AutoConfigureTestDatabase
+public class UserImportServiceTests {
+
+    @Autowired
+    private UserImportService userImportService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+    }
+
+    private static BufferedReader reader(String content) {
+        return new BufferedReader(new StringReader(content));
+    }
+
+    private static List<Status> statuses(UserImportResponse response) {
+        return response.getRows().stream().map(UserImportRowResult::getStatus).collect(Collectors.toList());
+    }
+
+    // Import CSV avec en-tête : les lignes valides sont créées sur plusieurs lots, les autres rapportées
+    @Test
+    void testImportCsv() {
+        userRepository.save(new User("taken@example.com", "Doe", "John", "hash", false));
+
+        UserImportResponse response = userImportService.importCsv(reader(
+                "lastName,firstName,email,password\n"
+                        + "Doe,Jane,jane@example.com,test!1234\n"
+                        + "Doe,Jo,short@example.com,test!1234\n"
+                        + "Doe,John,taken@example.com,test!1234\n"
+                        + "\n"
+                        + "\"O'Neil, Jr\",Paul,paul@example.com,\"pa,ss\"\"word\"\n"
+                        + "Doe,Jane,JANE@example.com,test!1234\n"
+                        + "only,three,columns\n"
+                        + "Smith,Anna,anna@example.com,test!1234\n"));
+
+        assertThat(statuses(response)).containsExactly(Status.CREATED, Status.INVALID, Status.DUPLICATE,
+                Status.CREATED, Status.DUPLICATE, Status.INVALID, Status.CREATED);
+        assertThat(response.getRows().get(1).getLine()).isEqualTo(3);
+        assertThat(response.getRows().get(1).getMessage()).contains("firstName");
+        assertThat(response.getTotal()).isEqualTo(7);
+        assertThat(response.getCreated()).isEqualTo(3);
+        assertThat(response.getRejected()).isEqualTo(4);
+
+        User paul = userRepository.findByEmail("paul@example.com").orElseThrow(IllegalStateException::new);
+        assertThat(paul.getLastName()).isEqualTo("O'Neil, Jr");
+        assertThat(paul.isAdmin()).isFalse();
+        assertThat(paul.getCreatedAt()).isNotNull();
+        assertThat(passwordEncoder.matches("pa,ss\"word", paul.getPassword())).isTrue();
+        assertThat(userRepository.count()).isEqualTo(4);
+    }
+
+    // Import NDJSON : une ligne mal formée n'interrompt pas l'import
+    @Test
+    void testImportNdjson() {
+        UserImportResponse response = userImportService.importNdjson(reader(
+                "{\"email\":\"jane@example.com\",\"firstName\":\"Jane\",\"lastName\":\"Doe\",\"password\":\"test!1234\"}\n"
+                        + "{not json\n"
+                        + "{\"email\":\"not-an-email\",\"firstName\":\"John\",\"lastName\":\"Doe\",\"password\":\"test!1234\"}\n"));
+
+        assertThat(statuses(response)).containsExactly(Status.CREATED, Status.INVALID, Status.INVALID);
+        assertThat(response.getRows().get(1).getMessage()).isEqualTo("Malformed JSON");
+        assertThat(userRepository.findByEmail("jane@example.com")).isPresent();
+    }
+
+    // Le pool d'import reste bien en dessous du nombre de cœurs, sauf valeur configurée
+    @Test
+    void testPoolSize() {
+        assertThat(UserImportService.poolSize(0, 16)).isEqualTo(4);
+        assertThat(UserImportService.poolSize(0, 2)).isEqualTo(1);
+        assertThat(UserImportService.poolSize(3, 16)).isEqualTo(3);
+    }
+}
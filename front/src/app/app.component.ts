@@ -22,6 +22,11 @@ export class AppComponent {
   }
 
   public logout(): void {
+    const sessionInformation = this.sessionService.sessionInformation;
+    if (sessionInformation) {
+      // Revokes the tokens server side, the local session is closed whatever the outcome
+      this.authService.logout(sessionInformation.refreshToken).subscribe({ error: () => undefined });
+    }
     this.sessionService.logOut();
     this.router.navigate([''])
   }
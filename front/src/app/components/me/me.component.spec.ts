@@ -31,6 +31,10 @@ describe('MeComponent', () => {
       createdAt: new Date(), 
       updatedAt: new Date() 
     })),
+    upcomingSessions: jest.fn().mockReturnValue(of({
+      sessions: [{ id: 1, name: 'Yoga', description: 'Yoga', date: new Date(), teacher_id: 1, users: [1] }],
+      nextCursor: null
+    })),
     delete: jest.fn().mockReturnValue(of(null))
   };
 
@@ -59,6 +63,11 @@ describe('MeComponent', () => {
     expect(component).toBeTruthy();
   });
 
+  it('should load the upcoming sessions of the user', () => {
+    expect(mockUserService.upcomingSessions).toHaveBeenCalled();
+    expect(component.upcomingSessions.length).toBe(1);
+  });
+
   it('should call delete() and show snackbar after deletion', () => {
     jest.spyOn(matSnackBar, 'open');  // Utiliser jest.spyOn() au lieu de spyOn()
 
@@ -1,6 +1,7 @@
 import { Component, OnInit } from '@angular/core';
 import { MatSnackBar } from '@angular/material/snack-bar';
 import { Router } from '@angular/router';
+import { Session } from '../../features/sessions/interfaces/session.interface';
 import { User } from '../../interfaces/user.interface';
 import { SessionService } from '../../services/session.service';
 import { UserService } from '../../services/user.service';
@@ -13,6 +14,7 @@ import { UserService } from '../../services/user.service';
 export class MeComponent implements OnInit {
 
   public user: User | undefined;
+  public upcomingSessions: Session[] = [];
 
   constructor(private router: Router,
               private sessionService: SessionService,
@@ -24,6 +26,9 @@ export class MeComponent implements OnInit {
     this.userService
       .getById(this.sessionService.sessionInformation!.id.toString())
       .subscribe((user: User) => this.user = user);
+    this.userService
+      .upcomingSessions()
+      .subscribe((page) => this.upcomingSessions = page.sessions);
   }
 
   public back(): void {
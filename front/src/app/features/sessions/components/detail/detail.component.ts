@@ -18,6 +18,8 @@ export class DetailComponent implements OnInit {
   public teacher: Teacher | undefined;
 
   public isParticipate = false;
+  public isFull = false;
+  public waitlistPosition: number | undefined;
   public isAdmin = false;
 
   public sessionId: string;
@@ -55,19 +57,42 @@ export class DetailComponent implements OnInit {
   }
 
   public participate(): void {
-    this.sessionApiService.participate(this.sessionId, this.userId).subscribe(_ => this.fetchSession());
+    // A 409 means the last seat was taken meanwhile: refresh to show the session as full
+    this.sessionApiService.participate(this.sessionId, this.userId).subscribe({
+      next: _ => this.fetchSession(),
+      error: _ => this.fetchSession()
+    });
   }
 
   public unParticipate(): void {
     this.sessionApiService.unParticipate(this.sessionId, this.userId).subscribe(_ => this.fetchSession());
   }
 
+  public joinWaitlist(): void {
+    this.sessionApiService.joinWaitlist(this.sessionId, this.userId).subscribe({
+      next: waitlist => this.waitlistPosition = waitlist.position,
+      error: _ => this.fetchSession()
+    });
+  }
+
+  public leaveWaitlist(): void {
+    this.sessionApiService.leaveWaitlist(this.sessionId, this.userId).subscribe(_ => this.fetchSession());
+  }
+
   private fetchSession(): void {
     this.sessionApiService
       .detail(this.sessionId)
       .subscribe((session: Session) => {
         this.session = session;
         this.isParticipate = session.users.some(u => u === this.sessionService.sessionInformation!.id);
+        this.isFull = !!session.capacity && session.users.length >= session.capacity;
+        this.waitlistPosition = undefined;
+        if (this.isFull && !this.isParticipate) {
+          // 404 when the user is not waiting
+          this.sessionApiService
+            .waitlistPosition(this.sessionId, this.userId)
+            .subscribe({ next: waitlist => this.waitlistPosition = waitlist.position, error: _ => {} });
+        }
         this.teacherService
           .detail(session.teacher_id.toString())
           .subscribe((teacher: Teacher) => this.teacher = teacher);
@@ -86,6 +86,7 @@ describe('FormComponent', () => {
       date: '', // Adapter pour accepter une chaîne vide
       teacher_id: '', // Adapter pour accepter une chaîne vide
       description: '',
+      capacity: null,
     });
   });
 
@@ -112,6 +113,7 @@ describe('FormComponent', () => {
       date: new Date('2023-12-10').toISOString().slice(0, 10), // Convertit la date en chaîne ISO sans heure
       teacher_id: 123,
       description: 'Default Description',
+      capacity: null,
     });
   });
 
@@ -141,6 +143,7 @@ describe('FormComponent', () => {
       description: 'Updated Description',
       date: new Date('2023-12-10'),
       teacher_id: 123,
+      capacity: 20,
     });
   
     // Appeler la méthode submit
@@ -160,6 +163,7 @@ describe('FormComponent', () => {
       description: 'Updated Description',
       date: new Date('2023-12-10'),
       teacher_id: 123,
+      capacity: 20,
     });
 
     // Soumettre le formulaire
@@ -81,6 +81,10 @@ export class FormComponent implements OnInit {
           Validators.max(2000)
         ]
       ],
+      capacity: [
+        session?.capacity ?? null,
+        [Validators.min(1)]
+      ],
     });
   }
 
@@ -5,6 +5,7 @@ export interface Session {
   date: Date;
   teacher_id: number;
   users: number[];
+  capacity?: number | null;
   createdAt?: Date;
   updatedAt?: Date;
 }
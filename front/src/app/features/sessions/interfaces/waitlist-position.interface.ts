@@ -0,0 +1,3 @@
+export interface WaitlistPosition {
+  position: number;
+}
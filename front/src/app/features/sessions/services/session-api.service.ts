@@ -2,6 +2,7 @@ import { HttpClient } from '@angular/common/http';
 import { Injectable } from '@angular/core';
 import { Observable } from 'rxjs';
 import { Session } from '../interfaces/session.interface';
+import { WaitlistPosition } from '../interfaces/waitlist-position.interface';
 
 @Injectable({
   providedIn: 'root'
@@ -41,4 +42,16 @@ export class SessionApiService {
     return this.httpClient.delete<void>(`${this.pathService}/${id}/participate/${userId}`);
   }
 
+  public joinWaitlist(id: string, userId: string): Observable<WaitlistPosition> {
+    return this.httpClient.post<WaitlistPosition>(`${this.pathService}/${id}/waitlist/${userId}`, null);
+  }
+
+  public waitlistPosition(id: string, userId: string): Observable<WaitlistPosition> {
+    return this.httpClient.get<WaitlistPosition>(`${this.pathService}/${id}/waitlist/${userId}`);
+  }
+
+  public leaveWaitlist(id: string, userId: string): Observable<void> {
+    return this.httpClient.delete<void>(`${this.pathService}/${id}/waitlist/${userId}`);
+  }
+
 }
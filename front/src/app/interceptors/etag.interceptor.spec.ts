@@ -0,0 +1,74 @@
+import { HTTP_INTERCEPTORS } from '@angular/common/http';
+import { HttpClientTestingModule, HttpTestingController } from '@angular/common/http/testing';
+import { TestBed } from '@angular/core/testing';
+import { expect } from '@jest/globals';
+import { Session } from '../features/sessions/interfaces/session.interface';
+import { SessionApiService } from '../features/sessions/services/session-api.service';
+import { SessionService } from '../services/session.service';
+import { EtagInterceptor } from './etag.interceptor';
+
+describe('EtagInterceptor', () => {
+  let sessionApiService: SessionApiService;
+  let sessionService: SessionService;
+  let httpMock: HttpTestingController;
+
+  const mockSessions: Session[] = [{
+    id: 1,
+    name: 'Test Session',
+    description: 'A test session description',
+    date: new Date('2024-12-10'),
+    teacher_id: 2,
+    users: [1, 2, 3],
+  }];
+
+  beforeEach(() => {
+    TestBed.configureTestingModule({
+      imports: [HttpClientTestingModule],
+      providers: [{ provide: HTTP_INTERCEPTORS, useClass: EtagInterceptor, multi: true }],
+    });
+
+    sessionApiService = TestBed.inject(SessionApiService);
+    sessionService = TestBed.inject(SessionService);
+    httpMock = TestBed.inject(HttpTestingController);
+  });
+
+  afterEach(() => {
+    httpMock.verify();
+  });
+
+  it('should send the ETag back and reuse the body on 304', () => {
+    sessionApiService.all().subscribe();
+    httpMock.expectOne('api/session').flush(mockSessions, { headers: { ETag: '"abc-1"' } });
+
+    let sessions: Session[] | undefined;
+    sessionApiService.all().subscribe((result) => sessions = result);
+    const req = httpMock.expectOne('api/session');
+    expect(req.request.headers.get('If-None-Match')).toBe('"abc-1"');
+    req.flush(null, { status: 304, statusText: 'Not Modified', headers: { ETag: '"abc-1"' } });
+
+    expect(sessions?.length).toBe(1);
+    expect(sessions?.[0].name).toBe('Test Session');
+  });
+
+  it('should not send a validator without ETag', () => {
+    sessionApiService.detail('1').subscribe();
+    httpMock.expectOne('api/session/1').flush(mockSessions[0]);
+
+    sessionApiService.detail('1').subscribe();
+    const req = httpMock.expectOne('api/session/1');
+    expect(req.request.headers.has('If-None-Match')).toBe(false);
+    req.flush(mockSessions[0]);
+  });
+
+  it('should forget the bodies on logout', () => {
+    sessionApiService.all().subscribe();
+    httpMock.expectOne('api/session').flush(mockSessions, { headers: { ETag: '"abc-1"' } });
+
+    sessionService.logOut();
+
+    sessionApiService.all().subscribe();
+    const req = httpMock.expectOne('api/session');
+    expect(req.request.headers.has('If-None-Match')).toBe(false);
+    req.flush(mockSessions);
+  });
+});
@@ -0,0 +1,64 @@
+import { HttpErrorResponse, HttpEvent, HttpHandler, HttpInterceptor, HttpRequest, HttpResponse } from "@angular/common/http";
+import { Injectable } from "@angular/core";
+import { Observable, catchError, of, tap, throwError } from 'rxjs';
+import { SessionService } from '../services/session.service';
+
+interface Validated {
+  etag: string;
+  body: string;
+}
+
+/**
+ * Revalidates the GET responses carrying an ETag, like the session and teacher lists: the next
+ * request for the same URL sends If-None-Match, and a 304 is answered with the body kept from the
+ * previous response, so unchanged data is not downloaded again.
+ */
+@Injectable({ providedIn: 'root' })
+export class EtagInterceptor implements HttpInterceptor {
+  private validated = new Map<string, Validated>();
+
+  constructor(sessionService: SessionService) {
+    // The kept bodies belong to the logged in user
+    sessionService.$isLogged().subscribe((isLogged) => {
+      if (!isLogged) {
+        this.validated.clear();
+      }
+    });
+  }
+
+  public intercept(request: HttpRequest<any>, next: HttpHandler): Observable<HttpEvent<any>> {
+    if (request.method !== 'GET' || request.responseType !== 'json') {
+      return next.handle(request);
+    }
+
+    const url = request.urlWithParams;
+    const validated = this.validated.get(url);
+    const sent = validated ? request.clone({ setHeaders: { 'If-None-Match': validated.etag } }) : request;
+
+    return next.handle(sent).pipe(
+      tap((event) => {
+        if (event instanceof HttpResponse) {
+          const etag = event.headers.get('ETag');
+          if (etag) {
+            // Kept as text, so that every caller gets its own copy
+            this.validated.set(url, { etag, body: JSON.stringify(event.body) });
+          } else {
+            this.validated.delete(url);
+          }
+        }
+      }),
+      catchError((error: unknown) => {
+        if (!validated || !(error instanceof HttpErrorResponse) || error.status !== 304) {
+          return throwError(() => error);
+        }
+        return of(new HttpResponse({
+          body: JSON.parse(validated.body),
+          headers: error.headers,
+          status: 200,
+          statusText: 'OK',
+          url: error.url ?? undefined,
+        }));
+      })
+    );
+  }
+}
@@ -1,19 +1,60 @@
-import { HttpHandler, HttpInterceptor, HttpRequest } from "@angular/common/http";
+import { HttpBackend, HttpClient, HttpErrorResponse, HttpEvent, HttpHandler, HttpInterceptor, HttpRequest } from "@angular/common/http";
 import { Injectable } from "@angular/core";
+import { Observable, catchError, finalize, shareReplay, switchMap, tap, throwError } from 'rxjs';
+import { SessionInformation } from '../interfaces/sessionInformation.interface';
 import { SessionService } from '../services/session.service';
 
 @Injectable({ providedIn: 'root' })
 export class JwtInterceptor implements HttpInterceptor {
-  constructor(private sessionService: SessionService) {}
+  private httpClient: HttpClient;
+  private refresh$: Observable<SessionInformation> | null = null;
 
-  public intercept(request: HttpRequest<any>, next: HttpHandler) {
-    if (this.sessionService.isLogged) {
-      request = request.clone({
-        setHeaders: {
-          Authorization: `Bearer ${this.sessionService.sessionInformation!.token}`,
-        },
-      });
+  constructor(private sessionService: SessionService, httpBackend: HttpBackend) {
+    // The refresh call goes straight to the backend, not through this interceptor
+    this.httpClient = new HttpClient(httpBackend);
+  }
+
+  public intercept(request: HttpRequest<any>, next: HttpHandler): Observable<HttpEvent<any>> {
+    if (!this.sessionService.isLogged) {
+      return next.handle(request);
+    }
+
+    return next.handle(this.withToken(request)).pipe(
+      catchError((error: unknown) => {
+        const refreshToken = this.sessionService.sessionInformation?.refreshToken;
+        if (!(error instanceof HttpErrorResponse) || error.status !== 401 || !refreshToken || request.url.includes('api/auth/')) {
+          return throwError(() => error);
+        }
+
+        // The access token has expired: get a new one and replay the request once
+        return this.refresh(refreshToken).pipe(
+          catchError(() => {
+            this.sessionService.logOut();
+            return throwError(() => error);
+          }),
+          switchMap(() => next.handle(this.withToken(request)))
+        );
+      })
+    );
+  }
+
+  private withToken(request: HttpRequest<any>): HttpRequest<any> {
+    return request.clone({
+      setHeaders: {
+        Authorization: `Bearer ${this.sessionService.sessionInformation!.token}`,
+      },
+    });
+  }
+
+  private refresh(refreshToken: string): Observable<SessionInformation> {
+    // Refresh tokens are single use: requests failing together share the same refresh call
+    if (!this.refresh$) {
+      this.refresh$ = this.httpClient.post<SessionInformation>('api/auth/refresh', { refreshToken }).pipe(
+        tap((sessionInformation) => this.sessionService.logIn(sessionInformation)),
+        finalize(() => this.refresh$ = null),
+        shareReplay(1)
+      );
     }
-    return next.handle(request);
+    return this.refresh$;
   }
 }
@@ -0,0 +1,6 @@
+import { Session } from '../features/sessions/interfaces/session.interface';
+
+export interface SessionPage {
+  sessions: Session[];
+  nextCursor: string | null;
+}
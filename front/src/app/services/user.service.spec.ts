@@ -56,6 +56,19 @@ describe('UserService', () => {
     req.flush(null); // Simule une réponse de l'API (ici une réponse vide ou null)
   });
 
+  it('should return the upcoming sessions of the current user', () => {
+    const page = { sessions: [], nextCursor: null };
+
+    service.upcomingSessions().subscribe(response => {
+      expect(response).toEqual(page); // Vérifie que la page renvoyée est celle de l'API
+    });
+
+    // Les réservations sont lues par l'endpoint dédié, sans télécharger toutes les sessions
+    const req = httpMock.expectOne('api/user/me/sessions');
+    expect(req.request.method).toBe('GET');
+    req.flush(page);
+  });
+
   afterEach(() => {
     httpMock.verify(); // Vérifie qu'aucune requête HTTP n'est en attente après chaque test
   });
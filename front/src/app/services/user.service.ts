@@ -1,6 +1,7 @@
 import { HttpClient } from '@angular/common/http';
 import { Injectable } from '@angular/core';
 import { Observable } from 'rxjs';
+import { SessionPage } from '../interfaces/session-page.interface';
 import { User } from '../interfaces/user.interface';
 
 @Injectable({
@@ -16,6 +17,10 @@ export class UserService {
     return this.httpClient.get<User>(`${this.pathService}/${id}`);
   }
 
+  public upcomingSessions(): Observable<SessionPage> {
+    return this.httpClient.get<SessionPage>(`${this.pathService}/me/sessions`);
+  }
+
   public delete(id: string): Observable<any> {
     return this.httpClient.delete(`${this.pathService}/${id}`);
   }